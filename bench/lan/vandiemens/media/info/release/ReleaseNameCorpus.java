@@ -0,0 +1,170 @@
+package lan.vandiemens.media.info.release;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Corpus of release names for the parser benchmarks.
+ * <p>
+ * The corpus mixes scene movie names, scene TV episode names, generic TV
+ * episode names and Addic7ed subtitle names, built from real titles, scene
+ * groups and tags. It is always built the same way, so results can be
+ * compared run after run.
+ * <p>
+ * NOTE: A corpus file, with one name per line, can be used instead by means
+ * of the <code>mediamanager.bench.corpus</code> system property. Beware that
+ * scene TV episode names without episode title make the parser query Addic7ed.
+ *
+ * @author vmurcia
+ */
+public class ReleaseNameCorpus {
+
+    public static final String CORPUS_FILE_PROPERTY = "mediamanager.bench.corpus";
+    public static final int DEFAULT_SIZE = 5000;
+    private static final long SEED = 20131027L;
+    private static final String[] movieTitles = {
+        "The.Hitchhiker's.Guide.to.the.Galaxy", "Despicable.Me.2", "Mad.Max", "Captain.Phillips",
+        "Sympathy.for.Lady.Vengeance", "Habemus.Papam", "Headhunters", "The.Insider", "Blade.Runner",
+        "Amelie", "Heat", "The.Dark.Knight", "Inception", "Gravity", "Drive", "Oldboy", "Alien", "Aliens",
+        "The.Thing", "Zodiac", "Fargo", "Se7en", "Memento", "Prisoners", "Rush", "Moon", "Looper",
+        "Skyfall", "Argo", "Her", "Nebraska", "Frozen", "Prometheus", "The.Hobbit.An.Unexpected.Journey",
+        "Star.Trek.Into.Darkness", "Pacific.Rim", "Elysium", "Oblivion", "Rear.Window", "Vertigo",
+        "The.Good.the.Bad.and.the.Ugly", "Pan's.Labyrinth", "Cidade.de.Deus", "Der.Untergang",
+        "Das.Leben.der.Anderen", "Jodaeiye.Nader.az.Simin", "Leon;d.The.Professional", "2001;c.A.Space.Odyssey"};
+    private static final String[] tvShows = {
+        "The.Walking.Dead", "Breaking.Bad", "The.Wire", "Game.of.Thrones", "Mad.Men", "Misfits",
+        "Dexter", "Homeland", "Boardwalk.Empire", "The.Sopranos", "Fringe", "Lost", "House.of.Cards",
+        "Sherlock", "Luther", "Doctor.Who.2005", "Community", "Parks.and.Recreation", "Sons.of.Anarchy",
+        "True.Blood", "Justified", "Suits", "Hannibal", "Orphan.Black", "The.Newsroom"};
+    private static final String[] episodeTitles = {
+        "Pilot", "Judge.Jury.Executioner", "Ozymandias", "Moral.Midgetry", "The.Rains.of.Castamere",
+        "Smoke.Gets.in.Your.Eyes", "Face.Off", "Blackwater", "The.Constant", "Nebraska", "A.Scandal.in.Belgravia",
+        "Blink", "Remedial.Chaos.Theory", "Pawnee.Rangers", "Hands.of.God", "Free.Fall", "Part.1", "Part.2"};
+    private static final String[] addic7edEpisodeTitles = {
+        "Pilot", "Judge, Jury, Executioner", "Ozymandias", "Moral Midgetry", "The Rains of Castamere",
+        "Face Off", "Blackwater", "The Constant", "Blink", "Remedial Chaos Theory"};
+    private static final String[] years = {"1968", "1979", "1982", "1995", "1999", "2001", "2005", "2010", "2011", "2012", "2013"};
+    private static final String[] extraTags = {"PROPER", "REPACK", "EXTENDED", "UNRATED", "LIMITED", "REMASTERED", "Extended.Cut", "DC", "INTERNAL"};
+    private static final String[] sources = {"BluRay", "Blu-ray", "BRRip", "BDRip", "HDDVD", "WEB-DL", "HDTV", "USA.BluRay", "GBR.Blu-ray.REMUX", "Hybrid"};
+    private static final String[] tvSources = {"BluRay", "WEB-DL", "HDTV", "HDiTunes", "BDRip"};
+    private static final String[] qualities = {"720p", "1080p", "1080", "720"};
+    private static final String[] audioCodecs = {"DTS", "AC3", "AAC", "DD5.1", "AAC2.0", "DTS-HD.MA.5.1", "FLAC", "TrueHD.7.1", "DTS-ES"};
+    private static final String[] videoCodecs = {"x264", "H.264", "XviD", "AVC", "VC-1"};
+    private static final String[] sceneGroups = {"REVEiLLE", "PublicHD", "Everlast", "CtrlHD", "AMIABLE", "BLOW", "ECI",
+        "Orenji", "IMMERSE", "DIMENSION", "ASAP", "LOL", "EbP", "HiFi", "DON", "CRiSC", "EPiK", "SiNNERS", "SPARKS", "DEFLATE"};
+    private static final String[] tvSceneGroups = {"CtrlHD", "IMMERSE", "DIMENSION", "ASAP", "LOL", "FQM", "mSD", "KiNGS", "EVOLVE", "2HD"};
+    private static final String[] subtitleVersions = {"LOL", "DIMENSION", "WEB-DL", "CtrlHD", "720p.HDTV", "IMMERSE"};
+
+    private ReleaseNameCorpus() {
+        // Do not instantiate
+    }
+
+    /**
+     * Gets the benchmark corpus, read from the corpus file if any.
+     *
+     * @return the release names, in a random but reproducible order
+     * @throws IOException if the corpus file can't be read
+     */
+    public static List<String> load() throws IOException {
+        String path = System.getProperty(CORPUS_FILE_PROPERTY);
+        if (path != null) {
+            List<String> names = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    names.add(line.trim());
+                }
+            }
+            return names;
+        }
+        return generate(DEFAULT_SIZE);
+    }
+
+    /**
+     * Builds a corpus made of 60% scene movie names, 25% scene TV episode
+     * names, 5% generic TV episode names and 10% Addic7ed subtitle names.
+     *
+     * @param size the number of names
+     * @return the release names, in a random but reproducible order
+     */
+    public static List<String> generate(int size) {
+        Random random = new Random(SEED);
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int kind = i % 20;
+            if (kind < 12) {
+                names.add(newSceneMovieName(random));
+            } else if (kind < 17) {
+                names.add(newSceneTvEpisodeName(random));
+            } else if (kind < 18) {
+                names.add(newGenericTvEpisodeName(random));
+            } else {
+                names.add(newAddic7edName(random));
+            }
+        }
+        Collections.shuffle(names, random);
+        return names;
+    }
+
+    private static String newSceneMovieName(Random random) {
+        StringBuilder name = new StringBuilder(pick(random, movieTitles));
+        if (random.nextInt(10) < 9) {
+            name.append('.').append(pick(random, years));
+        }
+        if (random.nextInt(4) == 0) {
+            name.append('.').append(pick(random, extraTags));
+        }
+        boolean isSourceFirst = random.nextInt(5) == 0;
+        if (isSourceFirst) {
+            name.append('.').append(pick(random, sources));
+        }
+        name.append('.').append(pick(random, qualities));
+        if (!isSourceFirst) {
+            name.append('.').append(pick(random, sources));
+        }
+        name.append('.').append(pick(random, audioCodecs));
+        name.append('.').append(pick(random, videoCodecs));
+        if (random.nextInt(20) == 0) {
+            name.append(".D-Z0N3");
+        } else {
+            name.append('-').append(pick(random, sceneGroups));
+        }
+        return name.toString();
+    }
+
+    private static String newSceneTvEpisodeName(Random random) {
+        StringBuilder name = new StringBuilder(pick(random, tvShows));
+        name.append(String.format(".S%02dE%02d", 1 + random.nextInt(9), 1 + random.nextInt(24)));
+        name.append('.').append(pick(random, episodeTitles)); // Avoids querying Addic7ed
+        name.append('.').append(pick(random, qualities));
+        name.append('.').append(pick(random, tvSources));
+        if (random.nextBoolean()) {
+            name.append('.').append(random.nextBoolean() ? "AAC2.0" : "DD5.1");
+        }
+        name.append('.').append(random.nextBoolean() ? "x264" : "H.264");
+        name.append('-').append(pick(random, tvSceneGroups));
+        return name.toString();
+    }
+
+    private static String newGenericTvEpisodeName(Random random) {
+        String show = pick(random, tvShows).toLowerCase();
+        return String.format("%s.%dx%02d.hdtv.xvid-%s", show, 1 + random.nextInt(9), 1 + random.nextInt(24),
+                             pick(random, tvSceneGroups).toLowerCase());
+    }
+
+    private static String newAddic7edName(Random random) {
+        return String.format("%s - %02dx%02d - %s.%s.%s.%sAddic7ed.com", pick(random, tvShows).replace('.', ' '),
+                             1 + random.nextInt(9), 1 + random.nextInt(24), pick(random, addic7edEpisodeTitles),
+                             pick(random, subtitleVersions), random.nextBoolean() ? "English" : "Spanish",
+                             random.nextBoolean() ? "orig." : "C.updated.");
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
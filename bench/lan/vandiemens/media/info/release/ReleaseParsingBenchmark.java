@@ -0,0 +1,107 @@
+package lan.vandiemens.media.info.release;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput benchmarks of the release name parsing, one release name per
+ * operation.
+ * <p>
+ * NOTE: Run with <code>ant bench</code>, which adds the GC profiler to report
+ * the allocation rates as well.
+ *
+ * @author vmurcia
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReleaseParsingBenchmark {
+
+    private List<String> names;
+    private int index = 0;
+    private ReleaseTokenizer tokenizer;
+    private PrintStream standardOutput;
+
+    @Setup
+    public void setUp() throws IOException {
+        names = ReleaseNameCorpus.load();
+        tokenizer = new ReleaseTokenizer();
+        standardOutput = System.out;
+        System.setOut(new PrintStream(new OutputStream() { // The parser is rather verbose
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(standardOutput);
+    }
+
+    /**
+     * Parses every name from scratch.
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + ReleaseInfoParser.CACHE_SIZE_PROPERTY + "=0")
+    public ReleaseInfo parse() {
+        return ReleaseInfoParser.parse(nextName());
+    }
+
+    /**
+     * Parses every name three times, as done for a media container and its
+     * subtitle and audio files.
+     */
+    @Benchmark
+    public ReleaseInfo parseContainerAndSidecars() {
+        String name = nextName();
+        ReleaseInfoParser.parse(name);
+        ReleaseInfoParser.parse(name);
+        return ReleaseInfoParser.parse(name);
+    }
+
+    @Benchmark
+    public boolean hasTvSeriesNamePattern() {
+        return ReleaseInfoParser.hasTvSeriesNamePattern(nextName());
+    }
+
+    @Benchmark
+    public ReleaseTokenizer tokenize() {
+        tokenizer.tokenize(nextName());
+        return tokenizer;
+    }
+
+    @Benchmark
+    public ReleaseTokenizer tokenizeAndConfirmSureTokens() {
+        tokenizer.tokenize(nextName());
+        tokenizer.confirmSureTokens();
+        return tokenizer;
+    }
+
+    private String nextName() {
+        String name = names.get(index);
+        index = (index + 1) % names.size();
+        return name;
+    }
+}
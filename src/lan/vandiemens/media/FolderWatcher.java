@@ -0,0 +1,249 @@
+package lan.vandiemens.media;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a set of folders (and all their subfolders) waiting for new files to
+ * be created or copied into them.
+ * <p>
+ * NOTE: A new file is not notified until its size and its last modification
+ * time have not changed for a while, so files still being downloaded or
+ * copied are never notified before they are complete. Files becoming ready at
+ * the same time are notified together.
+ *
+ * @author vmurcia
+ */
+public class FolderWatcher {
+
+    /**
+     * Receives the files which are ready to be processed.
+     */
+    public interface Listener {
+
+        /**
+         * Called when some new files are complete.
+         *
+         * @param files the new files, in the order they were detected
+         */
+        void filesReady(List<File> files);
+    }
+
+    /**
+     * Default time (in milliseconds) a new file has to stay unchanged to be
+     * considered complete.
+     */
+    public static final long DEFAULT_STABILITY_PERIOD = 5000;
+    private static final long POLL_INTERVAL = 1000;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+    private final Map<Path, PendingFile> pendingFiles = new LinkedHashMap<>();
+    private final FileFilter filter;
+    private final Listener listener;
+    private long stabilityPeriod = DEFAULT_STABILITY_PERIOD;
+
+    /**
+     * A new file which is not known to be complete yet.
+     */
+    private static class PendingFile {
+
+        private long size;
+        private long lastModified;
+        private long lastChangeTime;
+
+        PendingFile(File file, long now) {
+            size = file.length();
+            lastModified = file.lastModified();
+            lastChangeTime = now;
+        }
+
+        /**
+         * Checks if the file has been modified since the last time it was
+         * checked.
+         *
+         * @return <code>true</code> if the file seems unchanged,
+         *         <code>false</code> otherwise
+         */
+        boolean update(File file, long now) {
+            long currentSize = file.length();
+            long currentLastModified = file.lastModified();
+            if (currentSize == size && currentLastModified == lastModified) {
+                return true;
+            }
+            size = currentSize;
+            lastModified = currentLastModified;
+            lastChangeTime = now;
+            return false;
+        }
+    }
+
+    /**
+     * Creates a watcher for the given folders.
+     *
+     * @param folders the root folders to be watched
+     * @param filter the filter the new files must pass to be notified
+     * @param listener the listener to be notified about the new files
+     * @throws IOException if the folders can't be watched
+     */
+    public FolderWatcher(List<File> folders, FileFilter filter, Listener listener) throws IOException {
+        this.filter = filter;
+        this.listener = listener;
+        watchService = FileSystems.getDefault().newWatchService();
+        for (File folder : folders) {
+            if (!folder.isDirectory()) {
+                throw new IllegalArgumentException(folder + " is not a existing directory!");
+            }
+            registerAll(folder.toPath(), false);
+        }
+    }
+
+    public long getStabilityPeriod() {
+        return stabilityPeriod;
+    }
+
+    /**
+     * Sets the time a new file has to stay unchanged to be notified.
+     *
+     * @param millis the stability period in milliseconds
+     */
+    public void setStabilityPeriod(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Invalid stability period: " + millis);
+        }
+        stabilityPeriod = millis;
+    }
+
+    /**
+     * Watches the folders until the current thread is interrupted.
+     *
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public void run() throws InterruptedException {
+        try {
+            while (!watchedFolders.isEmpty()) {
+                WatchKey key = watchService.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handleEvents(key);
+                    key = watchService.poll();
+                }
+                notifyCompleteFiles();
+            }
+            System.out.println("No folders left to watch");
+        } finally {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                System.out.println("Folder watcher could not be closed: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        Path folder = watchedFolders.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                System.out.println("Too many file system events, some new files may have been missed");
+                continue;
+            }
+            if (folder == null) {
+                continue;
+            }
+            Path path = folder.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    registerAll(path, true);
+                }
+            } else {
+                addPendingFile(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedFolders.remove(key);
+        }
+    }
+
+    /**
+     * Registers a folder and all its subfolders.
+     *
+     * @param root the folder to be registered
+     * @param isNewFolder <code>true</code> if the folder has just been created,
+     *                    so the files it already contains are new files too
+     */
+    private void registerAll(Path root, final boolean isNewFolder) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchedFolders.put(key, dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (isNewFolder) {
+                        addPendingFile(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    System.out.println("Folder could not be watched: " + file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            System.out.println("Folder could not be watched: " + root + " (" + ex.getMessage() + ")");
+        }
+    }
+
+    private void addPendingFile(Path path) {
+        File file = path.toFile();
+        if (!pendingFiles.containsKey(path) && filter.accept(file)) {
+            pendingFiles.put(path, new PendingFile(file, System.currentTimeMillis()));
+        }
+    }
+
+    private void notifyCompleteFiles() {
+        long now = System.currentTimeMillis();
+        List<File> completeFiles = new ArrayList<>();
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            File file = entry.getKey().toFile();
+            if (!file.isFile()) {
+                iterator.remove(); // Deleted or moved away
+            } else if (entry.getValue().update(file, now) && now - entry.getValue().lastChangeTime >= stabilityPeriod) {
+                completeFiles.add(file);
+                iterator.remove();
+            }
+        }
+
+        if (!completeFiles.isEmpty()) {
+            try {
+                listener.filesReady(completeFiles);
+            } catch (RuntimeException ex) {
+                System.out.println("New files could not be processed: " + ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package lan.vandiemens.media;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import lan.vandiemens.media.analysis.MediaInfoException;
+import lan.vandiemens.media.process.ProcessExecutor;
+import lan.vandiemens.media.process.ProcessExecutor.Lane;
+
+/**
+ * Builds media files on a pool of worker threads, so that the containers are
+ * analysed by MediaInfo and their release names parsed at the same time.
+ * <p>
+ * NOTE: A container which can't be loaded never prevents the others from
+ * being loaded. Each container is reported as parsed or skipped, and the
+ * loaded media files are returned, in the same order they were submitted.
+ *
+ * @author vmurcia
+ */
+public class MediaFileLoader implements AutoCloseable {
+
+    private final ExecutorService workers;
+    private final Map<File, Future<MediaFile>> pendingFiles = new LinkedHashMap<>();
+
+    /**
+     * Receives each media file as soon as it has been loaded.
+     */
+    public interface Listener {
+
+        void mediaFileLoaded(MediaFile mediaFile);
+    }
+
+    /**
+     * Creates a loader using as many workers as MediaInfo processes are
+     * allowed to run at the same time.
+     */
+    public MediaFileLoader() {
+        this(ProcessExecutor.getDefault().getLimit(Lane.PROBE));
+    }
+
+    public MediaFileLoader(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+        }
+        workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Media file loader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts loading the given container in the background.
+     *
+     * @param file the media container
+     */
+    public void submit(final File file) {
+        if (pendingFiles.containsKey(file)) {
+            return;
+        }
+        pendingFiles.put(file, workers.submit(new Callable<MediaFile>() {
+            @Override
+            public MediaFile call() throws IOException, MediaInfoException {
+                return new MediaFile(file);
+            }
+        }));
+    }
+
+    /**
+     * Waits for every submitted container to be loaded.
+     *
+     * @return the media files which could be loaded, in submission order
+     */
+    public List<MediaFile> getMediaFiles() {
+        return getMediaFiles(null);
+    }
+
+    /**
+     * Waits for every submitted container to be loaded, handing each media
+     * file to the given listener as soon as it and the ones submitted before
+     * it have been loaded, so that they can be processed while the next ones
+     * are still being loaded.
+     *
+     * @param listener the listener of the loaded media files, or
+     *                 <code>null</code>
+     * @return the media files which could be loaded, in submission order
+     */
+    public List<MediaFile> getMediaFiles(Listener listener) {
+        List<MediaFile> mediaFiles = new ArrayList<>(pendingFiles.size());
+        for (Map.Entry<File, Future<MediaFile>> pendingFile : pendingFiles.entrySet()) {
+            String name = pendingFile.getKey().getName();
+            System.out.println("Candidate video file: " + name);
+            try {
+                MediaFile mediaFile = pendingFile.getValue().get();
+                mediaFiles.add(mediaFile);
+                System.out.println("Video file: " + name + "... parsed");
+                if (listener != null) {
+                    listener.mediaFileLoaded(mediaFile);
+                }
+            } catch (ExecutionException ex) {
+                System.out.println("Video file: " + name + "... skipped");
+                System.out.println("Reason: " + ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                System.out.println("Video file: " + name + "... skipped");
+                System.out.println("Reason: loading was interrupted");
+            }
+        }
+        pendingFiles.clear();
+        return mediaFiles;
+    }
+
+    /**
+     * Stops the workers once the submitted containers have been loaded.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,321 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads EBML elements, the binary building blocks of Matroska files, from a
+ * file channel.
+ * <p>
+ * NOTE: The reader keeps its own position and buffers the bytes around it, so
+ * skipping or seeking to an element never reads the data in between.
+ *
+ * @author vmurcia
+ */
+public class EbmlReader implements Closeable {
+
+    /**
+     * Size of the elements whose size is unknown, such as a live stream
+     * segment.
+     */
+    public static final long UNKNOWN_SIZE = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long bufferPosition = 0;
+    private long position = 0;
+    private long bytesRead = 0;
+
+    /**
+     * Header of an EBML element: its ID and the location of its data.
+     */
+    public static class ElementHeader {
+
+        private final int id;
+        private final long position;
+        private final long dataPosition;
+        private final long dataSize;
+
+        ElementHeader(int id, long position, long dataPosition, long dataSize) {
+            this.id = id;
+            this.position = position;
+            this.dataPosition = dataPosition;
+            this.dataSize = dataSize;
+        }
+
+        /**
+         * @return the element ID, including its length marker bits, such as
+         *         <code>0x1A45DFA3</code>
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return the position of the element itself, i.e. of its ID
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        public long getDataPosition() {
+            return dataPosition;
+        }
+
+        /**
+         * @return the data size, or <code>UNKNOWN_SIZE</code>
+         */
+        public long getDataSize() {
+            return dataSize;
+        }
+
+        public boolean hasUnknownSize() {
+            return dataSize == UNKNOWN_SIZE;
+        }
+
+        /**
+         * @return the position right after the element data
+         */
+        public long getEndPosition() {
+            return dataPosition + dataSize;
+        }
+
+        @Override
+        public String toString() {
+            return "0x" + Integer.toHexString(id).toUpperCase() + "@" + position + "[" + dataSize + "]";
+        }
+    }
+
+    public EbmlReader(FileChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    /**
+     * Opens the given file for reading.
+     *
+     * @param file the file to be read
+     * @return the EBML reader, positioned at the beginning of the file
+     * @throws IOException if the file can't be opened
+     */
+    public static EbmlReader open(File file) throws IOException {
+        return new EbmlReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void seek(long newPosition) {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Invalid position: " + newPosition);
+        }
+        position = newPosition;
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * @return the number of bytes read from the file so far, including the
+     *         buffered ones which have not been used
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public boolean hasRemaining() throws IOException {
+        return position < channel.size();
+    }
+
+    /**
+     * Reads the header of the element located at the current position,
+     * leaving the reader at the beginning of its data.
+     *
+     * @return the element header
+     * @throws IOException if the header is corrupt or the end of the file is
+     *                     reached
+     */
+    public ElementHeader readElementHeader() throws IOException {
+        long elementPosition = position;
+        int id = readId();
+        long dataSize = readSize();
+        return new ElementHeader(id, elementPosition, position, dataSize);
+    }
+
+    /**
+     * Reads the header of the next child of the given master element, leaving
+     * the reader at the beginning of its data.
+     * <p>
+     * NOTE: The reader must be located at the beginning of the parent data,
+     * before it, or at the end of a previous child.
+     *
+     * @param parent the master element
+     * @return the child element header, or <code>null</code> if there are no
+     *         more children
+     * @throws IOException if the child is corrupt or overflows its parent
+     */
+    public ElementHeader nextChild(ElementHeader parent) throws IOException {
+        if (position < parent.getDataPosition()) {
+            seek(parent.getDataPosition());
+        }
+        if (position >= parent.getEndPosition()) {
+            return null;
+        }
+        ElementHeader child = readElementHeader();
+        if (child.hasUnknownSize() || child.getEndPosition() > parent.getEndPosition()) {
+            throw new IOException("Invalid element " + child + " inside " + parent);
+        }
+        return child;
+    }
+
+    /**
+     * Moves the reader right after the data of the given element.
+     *
+     * @param header the element to be skipped
+     */
+    public void skip(ElementHeader header) {
+        if (header.hasUnknownSize()) {
+            throw new IllegalArgumentException("An element of unknown size can't be skipped: " + header);
+        }
+        seek(header.getEndPosition());
+    }
+
+    /**
+     * Reads an element ID, which is from one to four bytes long.
+     *
+     * @return the element ID, including its length marker bits
+     * @throws IOException if the ID is invalid
+     */
+    public int readId() throws IOException {
+        int first = readByte();
+        int length = getVintLength(first);
+        if (length > 4) {
+            throw new IOException("Invalid EBML element ID at position " + (position - 1));
+        }
+        int id = first;
+        for (int i = 1; i < length; i++) {
+            id = (id << 8) | readByte();
+        }
+        return id;
+    }
+
+    /**
+     * Reads an element data size, which is from one to eight bytes long.
+     *
+     * @return the data size, or <code>UNKNOWN_SIZE</code>
+     * @throws IOException if the size is invalid
+     */
+    public long readSize() throws IOException {
+        int first = readByte();
+        int length = getVintLength(first);
+        if (length > 8) {
+            throw new IOException("Invalid EBML element size at position " + (position - 1));
+        }
+        long size = first & (0xFF >> length);
+        boolean isAllOnes = size == (0xFF >> length);
+        for (int i = 1; i < length; i++) {
+            int next = readByte();
+            isAllOnes &= next == 0xFF;
+            size = (size << 8) | next;
+        }
+        return isAllOnes ? UNKNOWN_SIZE : size;
+    }
+
+    public long readUnsigned(long length) throws IOException {
+        if (length < 0 || length > 8) {
+            throw new IOException("Invalid EBML unsigned integer length: " + length);
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    public long readSigned(long length) throws IOException {
+        long value = readUnsigned(length);
+        if (length > 0 && length < 8) {
+            int shift = 64 - 8 * (int) length;
+            value = (value << shift) >> shift; // Sign extension
+        }
+        return value;
+    }
+
+    public double readFloat(long length) throws IOException {
+        if (length == 0) {
+            return 0;
+        } else if (length == 4) {
+            return Float.intBitsToFloat((int) readUnsigned(4));
+        } else if (length == 8) {
+            return Double.longBitsToDouble(readUnsigned(8));
+        }
+        throw new IOException("Invalid EBML float length: " + length);
+    }
+
+    /**
+     * Reads an ASCII or UTF-8 string, ignoring its trailing zero padding.
+     */
+    public String readString(long length) throws IOException {
+        byte[] bytes = readBytes(length);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] == 0) {
+            end--;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+
+    public byte[] readBytes(long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid EBML binary length: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) readByte();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @param first the first byte of a variable length integer
+     * @return the integer length in bytes, or 9 if the first byte is 0
+     */
+    private static int getVintLength(int first) {
+        return Integer.numberOfLeadingZeros(first) - 23;
+    }
+
+    private int readByte() throws IOException {
+        if (position < bufferPosition || position >= bufferPosition + buffer.limit()) {
+            fill();
+        }
+        return buffer.get((int) (position++ - bufferPosition)) & 0xFF;
+    }
+
+    private void fill() throws IOException {
+        buffer.clear();
+        bufferPosition = position;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, bufferPosition + buffer.position());
+            if (count < 0) {
+                break;
+            }
+            bytesRead += count;
+        }
+        buffer.flip();
+        if (!buffer.hasRemaining()) {
+            throw new EOFException("Unexpected end of file at position " + position);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package lan.vandiemens.media.analysis;
+
+/**
+ * IDs of the EBML elements of a Matroska file needed to analyse it.
+ *
+ * @author vmurcia
+ */
+public class MatroskaElements {
+
+    // EBML header
+    public static final int EBML = 0x1A45DFA3;
+    public static final int DOC_TYPE = 0x4282;
+    public static final int DOC_TYPE_VERSION = 0x4287;
+    // Top level elements
+    public static final int SEGMENT = 0x18538067;
+    public static final int SEEK_HEAD = 0x114D9B74;
+    public static final int INFO = 0x1549A966;
+    public static final int TRACKS = 0x1654AE6B;
+    public static final int CHAPTERS = 0x1043A770;
+    public static final int CLUSTER = 0x1F43B675;
+    public static final int CUES = 0x1C53BB6B;
+    public static final int TAGS = 0x1254C367;
+    public static final int ATTACHMENTS = 0x1941A469;
+    // Common elements
+    public static final int VOID = 0xEC;
+    public static final int CRC_32 = 0xBF;
+    // Meta seek information
+    public static final int SEEK = 0x4DBB;
+    public static final int SEEK_ID = 0x53AB;
+    public static final int SEEK_POSITION = 0x53AC;
+    // Segment information
+    public static final int SEGMENT_UID = 0x73A4;
+    public static final int TIMECODE_SCALE = 0x2AD7B1;
+    public static final int DURATION = 0x4489;
+    public static final int DATE_UTC = 0x4461;
+    public static final int TITLE = 0x7BA9;
+    public static final int MUXING_APP = 0x4D80;
+    public static final int WRITING_APP = 0x5741;
+    // Tracks
+    public static final int TRACK_ENTRY = 0xAE;
+    public static final int TRACK_NUMBER = 0xD7;
+    public static final int TRACK_UID = 0x73C5;
+    public static final int TRACK_TYPE = 0x83;
+    public static final int FLAG_ENABLED = 0xB9;
+    public static final int FLAG_DEFAULT = 0x88;
+    public static final int FLAG_FORCED = 0x55AA;
+    public static final int NAME = 0x536E;
+    public static final int LANGUAGE = 0x22B59C;
+    public static final int LANGUAGE_IETF = 0x22B59D;
+    public static final int CODEC_ID = 0x86;
+    public static final int CODEC_PRIVATE = 0x63A2;
+    public static final int VIDEO = 0xE0;
+    public static final int PIXEL_WIDTH = 0xB0;
+    public static final int PIXEL_HEIGHT = 0xBA;
+    public static final int AUDIO = 0xE1;
+    public static final int CHANNELS = 0x9F;
+    public static final int CONTENT_ENCODINGS = 0x6D80;
+    public static final int CONTENT_ENCODING = 0x6240;
+    public static final int CONTENT_COMPRESSION = 0x5034;
+    public static final int CONTENT_COMP_ALGO = 0x4254;
+    public static final int CONTENT_COMP_SETTINGS = 0x4255;
+    // Clusters
+    public static final int CLUSTER_TIMECODE = 0xE7;
+    public static final int SIMPLE_BLOCK = 0xA3;
+    public static final int BLOCK_GROUP = 0xA0;
+    public static final int BLOCK = 0xA1;
+    public static final int BLOCK_DURATION = 0x9B;
+    // Cueing data
+    public static final int CUE_POINT = 0xBB;
+    public static final int CUE_TIME = 0xB3;
+    public static final int CUE_TRACK_POSITIONS = 0xB7;
+    public static final int CUE_TRACK = 0xF7;
+    public static final int CUE_CLUSTER_POSITION = 0xF1;
+    public static final int CUE_RELATIVE_POSITION = 0xF0;
+    // Track types
+    public static final int VIDEO_TRACK_TYPE = 0x01;
+    public static final int AUDIO_TRACK_TYPE = 0x02;
+    public static final int SUBTITLE_TRACK_TYPE = 0x11;
+    // Content compression algorithms
+    public static final int ZLIB_COMPRESSION = 0;
+    public static final int HEADER_STRIPPING_COMPRESSION = 3;
+
+    private MatroskaElements() {
+        // Do not instantiate
+    }
+}
@@ -0,0 +1,472 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import lan.vandiemens.media.analysis.EbmlReader.ElementHeader;
+import lan.vandiemens.util.file.FileUtils;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+
+/**
+ * Reads the segment information, the tracks and the chapters of a Matroska
+ * file straight from its headers, which is much faster than running the
+ * MediaInfo utility.
+ * <p>
+ * The track fields are named and formatted the way MediaInfo does, so they are
+ * parsed exactly like the MediaInfo XML output. Only the elements located
+ * before the first cluster, or referenced from a seek head, are read.
+ * <p>
+ * NOTE: The native reader can be disabled by setting the
+ * <code>mediamanager.mediainfo.native.disabled</code> system property to
+ * <code>true</code>, so MediaInfo is always used.
+ *
+ * @author vmurcia
+ */
+class MatroskaHeaderReader {
+
+    public static final String NATIVE_READER_DISABLED_PROPERTY = "mediamanager.mediainfo.native.disabled";
+    private static final long DEFAULT_TIMECODE_SCALE = 1000000;
+    private static final long MATROSKA_EPOCH = 978307200000L; // 2001-01-01T00:00:00 UTC
+    private final File file;
+    private String docType = null;
+    private long docTypeVersion = 1;
+    private final List<Integer> readElements = new ArrayList<>();
+    private byte[] segmentUid = null;
+    private long timecodeScale = DEFAULT_TIMECODE_SCALE;
+    private double duration = -1;
+    private Long dateUtc = null;
+    private String title = null;
+    private String muxingApp = null;
+    private String writingApp = null;
+    private final List<TrackEntry> trackEntries = new ArrayList<>();
+
+    /**
+     * Raw values of a Matroska track entry.
+     */
+    private static class TrackEntry {
+
+        private long number;
+        private long type;
+        private boolean isDefault = true;
+        private boolean isForced = false;
+        private String name = null;
+        private String language = "eng";
+        private String codecId = null;
+        private long pixelWidth = -1;
+        private long pixelHeight = -1;
+        private long channels = 1;
+        private long compressionAlgorithm = -1;
+    }
+
+    MatroskaHeaderReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Checks if the given file can be analysed by this reader.
+     *
+     * @param file the media file
+     * @return <code>true</code> if the file seems to be a Matroska file and
+     *         the native reader is enabled, <code>false</code> otherwise
+     */
+    static boolean canRead(File file) {
+        if (Boolean.getBoolean(NATIVE_READER_DISABLED_PROPERTY)) {
+            return false;
+        }
+        switch (FileUtils.getExtension(file).toLowerCase()) {
+            case "mkv":
+            case "mka":
+            case "mks":
+            case "webm":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads the Matroska headers.
+     *
+     * @return the general track followed by the video, audio, subtitle and
+     *         menu tracks, just like MediaInfo would list them
+     * @throws MediaInfoException if the file is not a valid Matroska file or
+     *                            its tracks can't be found
+     */
+    List<TrackFields> read() throws MediaInfoException {
+        try (EbmlReader reader = EbmlReader.open(file)) {
+            readSegment(reader);
+        } catch (IOException ex) {
+            throw new MediaInfoException("Matroska headers could not be read: " + ex.getMessage());
+        }
+        if (!readElements.contains(TRACKS)) {
+            throw new MediaInfoException("Matroska tracks not found before the first cluster");
+        }
+
+        return toTrackFields();
+    }
+
+    private void readSegment(EbmlReader reader) throws IOException {
+        MatroskaSegment segment = MatroskaSegment.find(reader);
+        reader.seek(segment.getEbmlHeader().getDataPosition());
+        readEbmlHeader(reader, segment.getEbmlHeader());
+        if (!"matroska".equals(docType) && !"webm".equals(docType)) {
+            throw new IOException("Unsupported EBML document type: " + docType);
+        }
+
+        ElementHeader info = segment.getElement(INFO);
+        if (info != null) {
+            reader.seek(info.getDataPosition());
+            readInfo(reader, info);
+            readElements.add(INFO);
+        }
+        ElementHeader tracks = segment.getElement(TRACKS);
+        if (tracks != null) {
+            reader.seek(tracks.getDataPosition());
+            readTracks(reader, tracks);
+            readElements.add(TRACKS);
+        }
+        if (segment.getElement(CHAPTERS) != null) {
+            readElements.add(CHAPTERS); // Just its presence is needed
+        }
+    }
+
+    private void readEbmlHeader(EbmlReader reader, ElementHeader header) throws IOException {
+        ElementHeader child;
+        while ((child = reader.nextChild(header)) != null) {
+            switch (child.getId()) {
+                case DOC_TYPE:
+                    docType = reader.readString(child.getDataSize());
+                    break;
+                case DOC_TYPE_VERSION:
+                    docTypeVersion = reader.readUnsigned(child.getDataSize());
+                    break;
+                default:
+                    break;
+            }
+            reader.seek(child.getEndPosition());
+        }
+    }
+
+    private void readInfo(EbmlReader reader, ElementHeader header) throws IOException {
+        ElementHeader child;
+        while ((child = reader.nextChild(header)) != null) {
+            switch (child.getId()) {
+                case SEGMENT_UID:
+                    segmentUid = reader.readBytes(child.getDataSize());
+                    break;
+                case TIMECODE_SCALE:
+                    timecodeScale = reader.readUnsigned(child.getDataSize());
+                    break;
+                case DURATION:
+                    duration = reader.readFloat(child.getDataSize());
+                    break;
+                case DATE_UTC:
+                    dateUtc = reader.readSigned(child.getDataSize());
+                    break;
+                case TITLE:
+                    title = reader.readString(child.getDataSize());
+                    break;
+                case MUXING_APP:
+                    muxingApp = reader.readString(child.getDataSize());
+                    break;
+                case WRITING_APP:
+                    writingApp = reader.readString(child.getDataSize());
+                    break;
+                default:
+                    break;
+            }
+            reader.seek(child.getEndPosition());
+        }
+    }
+
+    private void readTracks(EbmlReader reader, ElementHeader header) throws IOException {
+        ElementHeader child;
+        while ((child = reader.nextChild(header)) != null) {
+            if (child.getId() == TRACK_ENTRY) {
+                trackEntries.add(readTrackEntry(reader, child));
+            }
+            reader.seek(child.getEndPosition());
+        }
+    }
+
+    private TrackEntry readTrackEntry(EbmlReader reader, ElementHeader header) throws IOException {
+        TrackEntry entry = new TrackEntry();
+        ElementHeader child;
+        while ((child = reader.nextChild(header)) != null) {
+            switch (child.getId()) {
+                case TRACK_NUMBER:
+                    entry.number = reader.readUnsigned(child.getDataSize());
+                    break;
+                case TRACK_TYPE:
+                    entry.type = reader.readUnsigned(child.getDataSize());
+                    break;
+                case FLAG_DEFAULT:
+                    entry.isDefault = reader.readUnsigned(child.getDataSize()) != 0;
+                    break;
+                case FLAG_FORCED:
+                    entry.isForced = reader.readUnsigned(child.getDataSize()) != 0;
+                    break;
+                case NAME:
+                    entry.name = reader.readString(child.getDataSize());
+                    break;
+                case LANGUAGE:
+                    entry.language = reader.readString(child.getDataSize());
+                    break;
+                case CODEC_ID:
+                    entry.codecId = reader.readString(child.getDataSize());
+                    break;
+                case VIDEO:
+                    readVideoSettings(reader, child, entry);
+                    break;
+                case AUDIO:
+                    readAudioSettings(reader, child, entry);
+                    break;
+                case CONTENT_ENCODINGS:
+                    readContentEncodings(reader, child, entry);
+                    break;
+                default:
+                    break;
+            }
+            reader.seek(child.getEndPosition());
+        }
+        return entry;
+    }
+
+    private void readVideoSettings(EbmlReader reader, ElementHeader header, TrackEntry entry) throws IOException {
+        ElementHeader child;
+        while ((child = reader.nextChild(header)) != null) {
+            if (child.getId() == PIXEL_WIDTH) {
+                entry.pixelWidth = reader.readUnsigned(child.getDataSize());
+            } else if (child.getId() == PIXEL_HEIGHT) {
+                entry.pixelHeight = reader.readUnsigned(child.getDataSize());
+            }
+            reader.seek(child.getEndPosition());
+        }
+    }
+
+    private void readAudioSettings(EbmlReader reader, ElementHeader header, TrackEntry entry) throws IOException {
+        ElementHeader child;
+        while ((child = reader.nextChild(header)) != null) {
+            if (child.getId() == CHANNELS) {
+                entry.channels = reader.readUnsigned(child.getDataSize());
+            }
+            reader.seek(child.getEndPosition());
+        }
+    }
+
+    private void readContentEncodings(EbmlReader reader, ElementHeader header, TrackEntry entry) throws IOException {
+        ElementHeader encoding;
+        while ((encoding = reader.nextChild(header)) != null) {
+            ElementHeader child;
+            while (encoding.getId() == CONTENT_ENCODING && (child = reader.nextChild(encoding)) != null) {
+                if (child.getId() == CONTENT_COMPRESSION) {
+                    entry.compressionAlgorithm = ZLIB_COMPRESSION; // Default algorithm
+                    ElementHeader setting;
+                    while ((setting = reader.nextChild(child)) != null) {
+                        if (setting.getId() == CONTENT_COMP_ALGO) {
+                            entry.compressionAlgorithm = reader.readUnsigned(setting.getDataSize());
+                        }
+                        reader.seek(setting.getEndPosition());
+                    }
+                }
+                reader.seek(child.getEndPosition());
+            }
+            reader.seek(encoding.getEndPosition());
+        }
+    }
+
+    private List<TrackFields> toTrackFields() {
+        List<TrackFields> trackFields = new ArrayList<>();
+        trackFields.add(getGeneralTrack());
+        addTracks(trackFields, VIDEO_TRACK_TYPE, "Video");
+        addTracks(trackFields, AUDIO_TRACK_TYPE, "Audio");
+        addTracks(trackFields, SUBTITLE_TRACK_TYPE, "Text");
+        if (readElements.contains(CHAPTERS)) {
+            trackFields.add(new TrackFields("Menu", null));
+        }
+        return trackFields;
+    }
+
+    private TrackFields getGeneralTrack() {
+        TrackFields general = new TrackFields("General", null);
+        if (segmentUid != null && segmentUid.length > 0) {
+            BigInteger uid = new BigInteger(1, segmentUid);
+            put(general, "Unique_ID", uid + " (0x" + uid.toString(16).toUpperCase() + ")");
+        }
+        put(general, "Complete_name", file.getAbsolutePath());
+        put(general, "Format", docType.equals("webm") ? "WebM" : "Matroska");
+        put(general, "Format_version", "Version " + docTypeVersion);
+        put(general, "File_size", formatFileSize(file.length()));
+        if (duration > 0) {
+            double durationInMillis = duration * timecodeScale / 1000000;
+            put(general, "Duration", formatDuration((long) durationInMillis));
+            put(general, "Overall_bit_rate", formatBitrate(file.length() * 8 * 1000 / durationInMillis));
+        }
+        put(general, "Movie_name", title);
+        if (dateUtc != null) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat("'UTC' yyyy-MM-dd HH:mm:ss", Locale.ROOT);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            put(general, "Encoded_date", dateFormat.format(new Date(MATROSKA_EPOCH + dateUtc / 1000000)));
+        }
+        put(general, "Writing_application", writingApp);
+        put(general, "Writing_library", muxingApp);
+        return general;
+    }
+
+    private void addTracks(List<TrackFields> trackFields, int trackType, String typeName) {
+        int count = 0;
+        for (TrackEntry entry : trackEntries) {
+            if (entry.type == trackType) {
+                count++;
+            }
+        }
+        int streamId = 0;
+        for (TrackEntry entry : trackEntries) {
+            if (entry.type != trackType) {
+                continue;
+            }
+            // MediaInfo only numbers the streams of a type when there are several of them
+            streamId++;
+            TrackFields fields = new TrackFields(typeName, count > 1 ? Integer.toString(streamId) : null);
+            put(fields, "ID", Long.toString(entry.number));
+            String[] format = getFormat(entry.codecId);
+            put(fields, "Format", format[0]);
+            put(fields, trackType == SUBTITLE_TRACK_TYPE ? "Codec_ID_Info" : "Format_Info", format[1]);
+            if (entry.compressionAlgorithm == ZLIB_COMPRESSION) {
+                put(fields, "Muxing_mode", "zlib");
+            } else if (entry.compressionAlgorithm == HEADER_STRIPPING_COMPRESSION) {
+                put(fields, "Muxing_mode", "Header stripping");
+            }
+            put(fields, "Codec_ID", entry.codecId);
+            if (entry.pixelWidth >= 0) {
+                put(fields, "Width", formatPixels(entry.pixelWidth));
+            }
+            if (entry.pixelHeight >= 0) {
+                put(fields, "Height", formatPixels(entry.pixelHeight));
+            }
+            if (trackType == AUDIO_TRACK_TYPE) {
+                put(fields, "Channel_s_", entry.channels + (entry.channels == 1 ? " channel" : " channels"));
+            }
+            put(fields, "Title", entry.name);
+            put(fields, "Language", entry.language);
+            put(fields, "Default", entry.isDefault ? "Yes" : "No");
+            put(fields, "Forced", entry.isForced ? "Yes" : "No");
+            trackFields.add(fields);
+        }
+    }
+
+    private static void put(TrackFields fields, String name, String value) {
+        if (value != null) {
+            fields.put(name, value);
+        }
+    }
+
+    /**
+     * @return the MediaInfo format name and description of the given codec
+     */
+    private static String[] getFormat(String codecId) {
+        if (codecId == null) {
+            return new String[]{null, null};
+        }
+        if (codecId.startsWith("A_AAC")) {
+            return new String[]{"AAC", "Advanced Audio Codec"};
+        }
+        switch (codecId) {
+            case "V_MPEG4/ISO/AVC":
+                return new String[]{"AVC", "Advanced Video Codec"};
+            case "V_MPEGH/ISO/HEVC":
+                return new String[]{"HEVC", "High Efficiency Video Coding"};
+            case "V_MPEG4/ISO/ASP":
+                return new String[]{"MPEG-4 Visual", null};
+            case "V_MPEG2":
+                return new String[]{"MPEG Video", null};
+            case "V_VP8":
+                return new String[]{"VP8", null};
+            case "V_VP9":
+                return new String[]{"VP9", null};
+            case "A_AC3":
+                return new String[]{"AC-3", "Audio Coding 3"};
+            case "A_EAC3":
+                return new String[]{"E-AC-3", "Enhanced AC-3"};
+            case "A_DTS":
+                return new String[]{"DTS", "Digital Theater Systems"};
+            case "A_TRUEHD":
+                return new String[]{"TrueHD", null};
+            case "A_MPEG/L3":
+                return new String[]{"MPEG Audio", null};
+            case "A_FLAC":
+                return new String[]{"FLAC", "Free Lossless Audio Codec"};
+            case "A_VORBIS":
+                return new String[]{"Vorbis", null};
+            case "A_OPUS":
+                return new String[]{"Opus", null};
+            case "S_TEXT/UTF8":
+                return new String[]{"UTF-8", "UTF-8 Plain Text"};
+            case "S_TEXT/ASS":
+                return new String[]{"ASS", "Advanced Sub Station Alpha"};
+            case "S_TEXT/SSA":
+                return new String[]{"SSA", "Sub Station Alpha"};
+            case "S_HDMV/PGS":
+                return new String[]{"PGS", "The same subtitle format used on BDs/HD-DVDs"};
+            case "S_VOBSUB":
+                return new String[]{"VobSub", "The same subtitle format used on DVDs"};
+            default:
+                return new String[]{codecId, null};
+        }
+    }
+
+    private static String formatPixels(long length) {
+        return String.format(Locale.ROOT, "%,d", length).replace(',', ' ') + " pixels";
+    }
+
+    private static String formatFileSize(long size) {
+        String[] units = {"KiB", "MiB", "GiB", "TiB"};
+        if (size < 1024) {
+            return size + " Bytes";
+        }
+        double value = size / 1024.0;
+        int unit = 0;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return formatSignificantDigits(value) + " " + units[unit];
+    }
+
+    private static String formatDuration(long millis) {
+        long hours = millis / 3600000;
+        long minutes = (millis / 60000) % 60;
+        long seconds = (millis / 1000) % 60;
+        if (hours > 0) {
+            return hours + "h " + minutes + "mn";
+        } else if (minutes > 0) {
+            return minutes + "mn " + seconds + "s";
+        }
+        return seconds + "s " + (millis % 1000) + "ms";
+    }
+
+    private static String formatBitrate(double bitsPerSecond) {
+        if (bitsPerSecond >= 1000000) {
+            return formatSignificantDigits(bitsPerSecond / 1000000) + " Mbps";
+        }
+        return Math.round(bitsPerSecond / 1000) + " Kbps";
+    }
+
+    /**
+     * Formats a value with three significant digits, like MediaInfo does.
+     */
+    private static String formatSignificantDigits(double value) {
+        if (value >= 100) {
+            return String.format(Locale.ROOT, "%.0f", value);
+        } else if (value >= 10) {
+            return String.format(Locale.ROOT, "%.1f", value);
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
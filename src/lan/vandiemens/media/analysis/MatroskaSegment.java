@@ -0,0 +1,186 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lan.vandiemens.media.analysis.EbmlReader.ElementHeader;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+
+/**
+ * Top level layout of a Matroska file: its EBML header, the bounds of its
+ * segment and the location of the top level elements of the segment.
+ * <p>
+ * The top level elements located before the first cluster are found by
+ * walking through them. The other ones, such as the cues, are found through
+ * the seek heads, which are only followed when such an element is asked for.
+ * <p>
+ * NOTE: The first element of each kind is the one kept, and elements of
+ * unknown size are never returned, except for the segment itself.
+ *
+ * @author vmurcia
+ */
+public class MatroskaSegment {
+
+    private final EbmlReader reader;
+    private final ElementHeader ebmlHeader;
+    private long dataPosition;
+    private long end;
+    private long firstClusterPosition = -1;
+    private final Map<Integer, ElementHeader> elements = new HashMap<>();
+    private final Map<Integer, Long> seekPositions = new HashMap<>();
+    private final List<Long> seekHeadPositions = new ArrayList<>();
+    private int readSeekHeadCount = 0;
+
+    private MatroskaSegment(EbmlReader reader, ElementHeader ebmlHeader) {
+        this.reader = reader;
+        this.ebmlHeader = ebmlHeader;
+    }
+
+    /**
+     * Finds the segment of the file read by the given reader and walks
+     * through its top level elements up to the first cluster.
+     *
+     * @param reader the reader of the Matroska file, which is used by the
+     *               returned segment to look for elements later on
+     * @return the segment
+     * @throws IOException if the file is not an EBML file or is corrupt
+     */
+    public static MatroskaSegment find(EbmlReader reader) throws IOException {
+        reader.seek(0);
+        ElementHeader header = reader.readElementHeader();
+        if (header.getId() != EBML) {
+            throw new IOException("Not an EBML file");
+        }
+        MatroskaSegment segment = new MatroskaSegment(reader, header);
+        segment.walkTopLevelElements();
+        return segment;
+    }
+
+    private void walkTopLevelElements() throws IOException {
+        reader.skip(ebmlHeader);
+        ElementHeader segment = reader.readElementHeader();
+        while (segment.getId() != SEGMENT) {
+            reader.skip(segment);
+            segment = reader.readElementHeader();
+        }
+        dataPosition = segment.getDataPosition();
+        end = segment.hasUnknownSize() ? reader.size() : Math.min(segment.getEndPosition(), reader.size());
+
+        while (reader.getPosition() < end) {
+            ElementHeader child = reader.readElementHeader();
+            if (child.getId() == CLUSTER) {
+                firstClusterPosition = child.getPosition();
+                break;
+            }
+            if (child.hasUnknownSize()) {
+                break;
+            }
+            if (child.getId() == SEEK_HEAD && !seekHeadPositions.contains(child.getPosition())) {
+                seekHeadPositions.add(child.getPosition());
+            } else if (!elements.containsKey(child.getId())) {
+                elements.put(child.getId(), child);
+            }
+            reader.seek(child.getEndPosition());
+        }
+    }
+
+    /**
+     * @return the EBML header, which precedes the segment
+     */
+    public ElementHeader getEbmlHeader() {
+        return ebmlHeader;
+    }
+
+    public long getDataPosition() {
+        return dataPosition;
+    }
+
+    /**
+     * @return the position right after the segment data, which is the end of
+     *         the file if the segment size is unknown
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the position of the first cluster.
+     *
+     * @return the position, or -1 if the first cluster can't be found
+     * @throws IOException if the seek heads can't be read
+     */
+    public long getFirstClusterPosition() throws IOException {
+        if (firstClusterPosition == -1) {
+            ElementHeader cluster = getElement(CLUSTER);
+            firstClusterPosition = (cluster == null) ? -1 : cluster.getPosition();
+        }
+        return firstClusterPosition;
+    }
+
+    /**
+     * Gets the first top level element with the given ID, following the seek
+     * heads if it is not located before the first cluster.
+     * <p>
+     * NOTE: The reader is left at an unspecified position.
+     *
+     * @param id the element ID
+     * @return the element header, or <code>null</code> if not found
+     * @throws IOException if the seek heads can't be read
+     */
+    public ElementHeader getElement(int id) throws IOException {
+        if (elements.containsKey(id)) {
+            return elements.get(id);
+        }
+        while (!seekPositions.containsKey(id) && readSeekHeadCount < seekHeadPositions.size()) {
+            readSeekHead(seekHeadPositions.get(readSeekHeadCount++));
+        }
+        ElementHeader element = null;
+        Long position = seekPositions.get(id);
+        if (position != null && position < end) {
+            reader.seek(position);
+            element = reader.readElementHeader();
+            if (element.getId() != id || element.hasUnknownSize()) {
+                element = null;
+            }
+        }
+        elements.put(id, element);
+        return element;
+    }
+
+    /**
+     * Reads the seek head located at the given position, which may refer to
+     * further seek heads.
+     */
+    private void readSeekHead(long position) throws IOException {
+        if (position >= end) {
+            return;
+        }
+        reader.seek(position);
+        ElementHeader seekHead = reader.readElementHeader();
+        if (seekHead.getId() != SEEK_HEAD) {
+            return;
+        }
+        for (ElementHeader seek = reader.nextChild(seekHead); seek != null; seek = reader.nextChild(seekHead)) {
+            if (seek.getId() == SEEK) {
+                int seekId = 0;
+                long seekPosition = -1;
+                for (ElementHeader child = reader.nextChild(seek); child != null; child = reader.nextChild(seek)) {
+                    if (child.getId() == SEEK_ID) {
+                        seekId = (int) reader.readUnsigned(child.getDataSize());
+                    } else if (child.getId() == SEEK_POSITION) {
+                        seekPosition = dataPosition + reader.readUnsigned(child.getDataSize());
+                    }
+                    reader.seek(child.getEndPosition());
+                }
+                if (seekId == SEEK_HEAD && seekPosition >= 0 && !seekHeadPositions.contains(seekPosition)) {
+                    seekHeadPositions.add(seekPosition);
+                } else if (seekPosition >= 0 && !seekPositions.containsKey(seekId)) {
+                    seekPositions.put(seekId, seekPosition);
+                }
+            }
+            reader.seek(seek.getEndPosition());
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package lan.vandiemens.media.analysis;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lan.vandiemens.media.info.track.*;
+import lan.vandiemens.media.process.ManagedProcess;
+import lan.vandiemens.media.process.ProcessExecutor;
+import lan.vandiemens.media.process.ProcessExecutor.Lane;
 import lan.vandiemens.util.file.FileUtils;
 import lan.vandiemens.util.lang.Language;
 import nu.xom.*;
@@ -699,7 +708,35 @@ public class MediaInfo {
     private void parse(File file) throws MediaInfoException {
         System.out.println("Parsing \"" + file.getName() + "\" media information...");
         parseOriginalLanguage(file);
-        parse(getMediaInfoAsXmlDocument(file));
+        List<TrackFields> trackFields = readMatroskaHeaders(file);
+        if (trackFields != null) {
+            parse(null, trackFields); // No MediaInfo version involved
+        } else {
+            parse(parseMediaInfoXml(file));
+        }
+    }
+
+    /**
+     * Reads the tracks of a Matroska file natively, without running the
+     * MediaInfo utility.
+     *
+     * @param file the media file
+     * @return the track fields, or <code>null</code> if the media file is not
+     *         a Matroska file or its headers can't be read, so MediaInfo has
+     *         to be used instead
+     */
+    private List<TrackFields> readMatroskaHeaders(File file) {
+        if (!MatroskaHeaderReader.canRead(file)) {
+            return null;
+        }
+        try {
+            List<TrackFields> trackFields = new MatroskaHeaderReader(file).read();
+            System.out.println("Matroska headers read natively");
+            return trackFields;
+        } catch (MediaInfoException ex) {
+            System.out.println(ex.getMessage() + ", so falling back to MediaInfo");
+            return null;
+        }
     }
 
     /**
@@ -724,15 +761,15 @@ public class MediaInfo {
         System.out.println("Original language: " + originalLanguage.getLanguageName());
     }
 
-    private Document getMediaInfoAsXmlDocument(File file) throws MediaInfoException {
-        Document xmlDocument;
+    private MediaInfoStreamParser parseMediaInfoXml(File file) throws MediaInfoException {
+        MediaInfoStreamParser parser;
         if (hasMediaInfoFileExtension(file)) {
-            xmlDocument = readMediaInfoFile(file);
+            parser = readMediaInfoFile(file);
         } else {
-            xmlDocument = processWithMediaInfoUtility(file);
+            parser = processWithMediaInfoUtility(file);
         }
 
-        return xmlDocument;
+        return parser;
     }
 
     private boolean hasMediaInfoFileExtension(File file) {
@@ -740,51 +777,69 @@ public class MediaInfo {
         return extension.equalsIgnoreCase("xml");
     }
 
-    private Document readMediaInfoFile(File file) throws MediaInfoException {
-        Document xmlDocument = null;
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-            Builder parser = new Builder();
-            xmlDocument = parser.build(reader);
-        } catch (ParsingException ex) {
-            System.out.println(ex.getMessage());
-            throw new MediaInfoException("The XML document generated by MediaInfo is malformed");
+    private MediaInfoStreamParser readMediaInfoFile(File file) throws MediaInfoException {
+        MediaInfoStreamParser parser = new MediaInfoStreamParser();
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            parser.parse(input);
         } catch (IOException ex) {
             System.out.println(ex.getMessage());
             throw new MediaInfoException("I/O error when reading " + file);
-        } finally {
-            close(reader);
         }
 
-        return xmlDocument;
+        return parser;
     }
 
-    private Document processWithMediaInfoUtility(File file) throws MediaInfoException {
-        Document xmlDocument = null;
-        String[] commandArray = new String[]{MediaInfoHelper.getMediaInfoCliExecutablePath(),
-            XML_OUTPUT_OPTION,
-            file.getAbsolutePath()};
-        BufferedReader reader = null;
-        try {
-            Process process = Runtime.getRuntime().exec(commandArray);
-            reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            Builder parser = new Builder();
-            xmlDocument = parser.build(reader);
+    /**
+     * Parses the MediaInfo utility output on the fly, as it is being
+     * generated.
+     * <p>
+     * NOTE: The output is also captured to be cached, so it is not generated
+     * again while the media file is not modified.
+     */
+    private MediaInfoStreamParser processWithMediaInfoUtility(File file) throws MediaInfoException {
+        MediaInfoCache cache = MediaInfoCache.getDefault();
+        String cachedXml = (cache != null) ? cache.get(file) : null;
+        if (cachedXml != null) {
+            try {
+                MediaInfoStreamParser parser = new MediaInfoStreamParser();
+                parser.parse(new StringReader(cachedXml));
+                System.out.println("MediaInfo output found in cache");
+                return parser;
+            } catch (MediaInfoException ex) {
+                System.out.println("Invalid MediaInfo cache entry, so analysing again");
+            }
+        }
+
+        MediaInfoStreamParser parser = new MediaInfoStreamParser();
+        List<String> command = Arrays.asList(MediaInfoHelper.getMediaInfoCliExecutablePath(),
+                                             XML_OUTPUT_OPTION,
+                                             file.getAbsolutePath());
+        CapturingReader reader = null;
+        try (ManagedProcess process = ProcessExecutor.getDefault().start(command, Lane.PROBE, ProcessExecutor.DEFAULT_PROBE_TIMEOUT)) {
+            reader = new CapturingReader(new BufferedReader(new InputStreamReader(process.getInputStream())), cache != null);
+            parser.parse(reader);
+            reader.readRemaining(); // So MediaInfo never blocks on a full pipe
+            process.waitFor();
+            if (process.isTimedOut()) {
+                throw new MediaInfoException("The MediaInfo application took too long to analyse " + file.getName());
+            }
+            if (cache != null) {
+                cache.put(file, reader.getCapturedText());
+            }
         } catch (IOException ex) {
             System.out.println(ex.getMessage());
             throw new MediaInfoException("The MediaInfo application could not be executed");
-        } catch (ParsingException ex) {
-            System.out.println(ex.getMessage());
-            throw new MediaInfoException("The XML document generated by MediaInfo is malformed");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MediaInfoException("Interrupted while waiting for the MediaInfo application");
         } finally {
             close(reader);
         }
 
-        return xmlDocument;
+        return parser;
     }
 
-    private void close(BufferedReader reader) {
+    private void close(Reader reader) {
         if (reader != null) {
             try {
                 reader.close();
@@ -794,105 +849,155 @@ public class MediaInfo {
         }
     }
 
+    /**
+     * Reader keeping a copy of all the text read through it, if required.
+     */
+    private static class CapturingReader extends FilterReader {
+
+        private final StringBuilder capturedText;
+
+        CapturingReader(Reader reader, boolean isCaptureEnabled) {
+            super(reader);
+            capturedText = isCaptureEnabled ? new StringBuilder(16384) : null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1 && capturedText != null) {
+                capturedText.append((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0 && capturedText != null) {
+                capturedText.append(buffer, offset, count);
+            }
+            return count;
+        }
+
+        void readRemaining() throws IOException {
+            char[] buffer = new char[4096];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Just capture the rest of the text, if required
+            }
+        }
+
+        String getCapturedText() {
+            return (capturedText != null) ? capturedText.toString() : null;
+        }
+    }
+
     private void parse(Document xmlDocument) throws MediaInfoException {
         // TO-DO Check returned values
         Element root = xmlDocument.getRootElement();  // <Mediainfo>
-        version = root.getAttributeValue("version");
         Element fileElement = root.getFirstChildElement("File");
         if (fileElement == null) {
             throw new MediaInfoException("Invalid MediaInfo XML document: No <File> element found");
         }
         Elements trackElements = fileElement.getChildElements("track");
+        List<TrackFields> trackFields = new ArrayList<>(trackElements.size());
+        for (int i = 0; i < trackElements.size(); i++) {
+            trackFields.add(toTrackFields(trackElements.get(i)));
+        }
+        parse(root.getAttributeValue("version"), trackFields);
+    }
+
+    private TrackFields toTrackFields(Element trackElement) {
+        TrackFields fields = new TrackFields(trackElement.getAttributeValue("type"), trackElement.getAttributeValue("streamid"));
+        Elements fieldElements = trackElement.getChildElements();
+        for (int i = 0; i < fieldElements.size(); i++) {
+            fields.put(fieldElements.get(i).getLocalName(), fieldElements.get(i).getValue());
+        }
+        return fields;
+    }
+
+    private void parse(MediaInfoStreamParser parser) throws MediaInfoException {
+        if (!parser.isFileElementFound()) {
+            throw new MediaInfoException("Invalid MediaInfo XML document: No <File> element found");
+        }
+        parse(parser.getVersion(), parser.getTracks());
+    }
+
+    private void parse(String mediaInfoVersion, List<TrackFields> trackFields) throws MediaInfoException {
+        version = mediaInfoVersion;
         // MediaInfo provides only the General element with two fields when the file
         // analyzed is not a media file, especifically the file name and size info fields
-        if (trackElements.size() < 3) { // General, Video and Audio at least
+        if (trackFields.size() < 3) { // General, Video and Audio at least
             System.err.println("Not enough media tracks!");
-            throw new MediaInfoException(xmlDocument + " is not a valid MediaInfo XML document!");
+            throw new MediaInfoException("Invalid MediaInfo XML document: Only " + trackFields.size() + " tracks found");
         }
 
-        parseGeneralInfo(trackElements);
-        parseChapters(trackElements);
-        parseMediaTracks(trackElements);
+        parseGeneralInfo(trackFields);
+        parseChapters(trackFields);
+        parseMediaTracks(trackFields);
     }
 
-    private void parseGeneralInfo(Elements trackElements) throws MediaInfoException {
+    private void parseGeneralInfo(List<TrackFields> trackFields) throws MediaInfoException {
         // MediaInfo's general track, which has index 0, is not really a track.
         // Instead, it corresponds to Matroska segment info.
         System.out.println("Parsing general information...");
-        Element generalTrack = trackElements.get(0);
-        String type = generalTrack.getAttributeValue("type");
-        if (type == null || !type.equalsIgnoreCase("General")) {
+        TrackFields generalTrack = trackFields.get(0);
+        if (!generalTrack.hasType("General")) {
             throw new MediaInfoException("Invalid MediaInfo XML file: First <track> element is not \"General\"");
         }
-        Element element = generalTrack.getFirstChildElement("Unique_ID");
-        uniqueId = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Complete_name");
-        completeName = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Format");
-        format = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Format_version");
-        formatVersion = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("File_size");
-        fileSize = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Duration");
-        duration = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Overall_bit_rate");
-        overallBitrate = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Movie_name");
-        title = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Encoded_date");
-        encodedDate = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Writing_application");
-        writingApplication = (element != null) ? element.getValue() : null;
-        element = generalTrack.getFirstChildElement("Writing_library");
-        writingLibrary = (element != null) ? element.getValue() : null;
-    }
-
-    private void parseChapters(Elements trackElements) {
+        uniqueId = generalTrack.get("Unique_ID");
+        completeName = generalTrack.get("Complete_name");
+        format = generalTrack.get("Format");
+        formatVersion = generalTrack.get("Format_version");
+        fileSize = generalTrack.get("File_size");
+        duration = generalTrack.get("Duration");
+        overallBitrate = generalTrack.get("Overall_bit_rate");
+        title = generalTrack.get("Movie_name");
+        encodedDate = generalTrack.get("Encoded_date");
+        writingApplication = generalTrack.get("Writing_application");
+        writingLibrary = generalTrack.get("Writing_library");
+    }
+
+    private void parseChapters(List<TrackFields> trackFields) {
         System.out.println("Parsing menu chapters...");
-        Element element;
         // Skip general track, which has index 0
-        for (int i = 1; i < trackElements.size(); i++) {
-            element = trackElements.get(i);
-            if (element.getAttributeValue("type").equalsIgnoreCase("Menu")) {
+        for (int i = 1; i < trackFields.size(); i++) {
+            if (trackFields.get(i).hasType("Menu")) {
                 System.out.println("Menu chapters found");
-                chapters = getChapters(element);
+                chapters = getChapters(trackFields.get(i));
                 return;
             }
         }
     }
 
-    private Chapters getChapters(Element element) {
+    private Chapters getChapters(TrackFields menuTrack) {
         return new Chapters();
     }
 
-    private void parseMediaTracks(Elements trackElements) throws MediaInfoException {
+    private void parseMediaTracks(List<TrackFields> trackFields) throws MediaInfoException {
         System.out.println("Parsing media tracks...");
-        int mediaTrackCount = getMediaTrackCount(trackElements); // General track and menu track doesn't count
+        int mediaTrackCount = getMediaTrackCount(trackFields); // General track and menu track doesn't count
         tracks = new Track[mediaTrackCount];
         // Skip general track (first) and menu tracks (at the end), if any
         for (int i = 1; i <= mediaTrackCount; i++) {
-            tracks[i - 1] = parseTrack(trackElements.get(i));
+            tracks[i - 1] = parseTrack(trackFields.get(i));
             if (tracks[i - 1] == null) {
                 throw new MediaInfoException("Track #" + (i - 1) + " could not be parsed");
             }
         }
     }
 
-    private int getMediaTrackCount(Elements trackElements) {
+    private int getMediaTrackCount(List<TrackFields> trackFields) {
         int count = 0;
-        String type;
-        for (int i = 0; i < trackElements.size(); i++) {
-            type = trackElements.get(i).getAttributeValue("type");
-            if (type.equals("Video") || type.equals("Audio") || type.equals("Text")) {
+        for (TrackFields fields : trackFields) {
+            if (fields.hasType("Video") || fields.hasType("Audio") || fields.hasType("Text")) {
                 count++;
             }
         }
         return count;
     }
 
-    private Track parseTrack(Element trackElement) {
-        String type = trackElement.getAttributeValue("type");
+    private Track parseTrack(TrackFields fields) {
+        String type = fields.getType();
         if (type == null) {
             System.err.println("Invalid Mediainfo XML file: Found a <track> element with no type attribute");
             return null;
@@ -901,13 +1006,13 @@ public class MediaInfo {
         Track track = null;
         switch (type) {
             case "Video":
-                track = parseVideoTrack(trackElement);
+                track = parseVideoTrack(fields);
                 break;
             case "Audio":
-                track = parseAudioTrack(trackElement);
+                track = parseAudioTrack(fields);
                 break;
             case "Text":
-                track = parseSubtitleTrack(trackElement);
+                track = parseSubtitleTrack(fields);
                 break;
             case "Menu":
                 break;
@@ -918,102 +1023,90 @@ public class MediaInfo {
         return track;
     }
 
-    private VideoTrack parseVideoTrack(Element trackElement) {
+    private VideoTrack parseVideoTrack(TrackFields fields) {
         System.out.print("Parsing video track XML info...");
         VideoTrack track = new VideoTrack();
-        track.setStreamId((trackElement.getAttribute("streamid") != null) ? Integer.parseInt(trackElement.getAttributeValue("streamid")) : 0);
-        Element element = trackElement.getFirstChildElement("ID");
-        track.setTrackNumber(Integer.parseInt(element.getValue()));
-        element = trackElement.getFirstChildElement("Format");
-        track.setFormat(element.getValue());
-        element = trackElement.getFirstChildElement("Format_Info");
-        track.setFormatInfo((element != null) ? element.getValue() : null);
-        element = trackElement.getFirstChildElement("Codec_ID");
-        track.setCodecId(element.getValue());
-        Matcher resolutionMatcher;
-        element = trackElement.getFirstChildElement("Width");
-        resolutionMatcher = pixelPattern.matcher(element.getValue());
-        if (resolutionMatcher.matches()) {
-            track.setWidth(Integer.parseInt(resolutionMatcher.group("length").replaceAll(" ", "")));
-        }
-        element = trackElement.getFirstChildElement("Height");
-        resolutionMatcher = pixelPattern.matcher(element.getValue());
-        if (resolutionMatcher.matches()) {
-            track.setHeight(Integer.parseInt(resolutionMatcher.group("length").replaceAll(" ", "")));
-        }
-        element = trackElement.getFirstChildElement("Title");
-        track.setTitle((element != null) ? element.getValue() : null);
-        element = trackElement.getFirstChildElement("Language");
-        track.setLanguage(element == null ? null : element.getValue());
+        track.setStreamId(fields.getStreamId());
+        track.setTrackNumber(Integer.parseInt(fields.get("ID")));
+        track.setFormat(fields.get("Format"));
+        track.setFormatInfo(fields.get("Format_Info"));
+        track.setCodecId(fields.get("Codec_ID"));
+        int width = parsePixelLength(fields.get("Width"));
+        if (width >= 0) {
+            track.setWidth(width);
+        }
+        int height = parsePixelLength(fields.get("Height"));
+        if (height >= 0) {
+            track.setHeight(height);
+        }
+        track.setTitle(fields.get("Title"));
+        track.setLanguage(fields.get("Language"));
         if (track.getLanguage() != originalLanguage) {
             System.out.println("Video track language changed from " + track.getLanguage().getLanguageName() + " to " + originalLanguage.getLanguageName());
             track.setLanguage(originalLanguage);
         }
-        element = trackElement.getFirstChildElement("Default");
-        track.setAsDefault(element.getValue().equalsIgnoreCase("yes"));
-        element = trackElement.getFirstChildElement("Forced");
-        track.setForced(element.getValue().equalsIgnoreCase("yes"));
+        track.setAsDefault(fields.isYes("Default"));
+        track.setForced(fields.isYes("Forced"));
         System.out.println(" done");
 
         return track;
     }
 
-    private AudioTrack parseAudioTrack(Element trackElement) {
+    /**
+     * @param value a MediaInfo length, such as <code>1 920 pixels</code>
+     * @return the length in pixels, or -1 if it can't be parsed
+     */
+    private int parsePixelLength(String value) {
+        if (value != null) {
+            Matcher resolutionMatcher = pixelPattern.matcher(value);
+            if (resolutionMatcher.matches()) {
+                return Integer.parseInt(resolutionMatcher.group("length").replaceAll("[ ,]", ""));
+            }
+        }
+        return -1;
+    }
+
+    private AudioTrack parseAudioTrack(TrackFields fields) {
         System.out.print("Parsing audio track XML info...");
         AudioTrack track = new AudioTrack();
-        track.setStreamId((trackElement.getAttribute("streamid") != null) ? Integer.parseInt(trackElement.getAttributeValue("streamid")) : 0);
-        Element element = trackElement.getFirstChildElement("ID");
-        track.setTrackNumber(Integer.parseInt(element.getValue()));
-        element = trackElement.getFirstChildElement("Format");
-        track.setFormat(element.getValue());
-        element = trackElement.getFirstChildElement("Format_Info");
-        track.setFormatInfo(element == null ? null : element.getValue());
-        element = trackElement.getFirstChildElement("Codec_ID");
-        track.setCodecId(element.getValue());
-        element = trackElement.getFirstChildElement("Channel_s_");
-        Matcher channelsMatcher = AudioTrack.channelsPattern.matcher(element.getValue());
-        if (channelsMatcher.matches()) {
-            track.setChannelCount(Integer.parseInt(channelsMatcher.group("channels")));
-        }
-        element = trackElement.getFirstChildElement("Title");
-        track.setTitle((element != null) ? element.getValue() : null);
-        element = trackElement.getFirstChildElement("Language");
-        track.setLanguage(element == null ? null : element.getValue());
-        element = trackElement.getFirstChildElement("Default");
-        track.setAsDefault(element.getValue().equalsIgnoreCase("yes"));
-        element = trackElement.getFirstChildElement("Forced");
-        track.setForced(element.getValue().equalsIgnoreCase("yes"));
+        track.setStreamId(fields.getStreamId());
+        track.setTrackNumber(Integer.parseInt(fields.get("ID")));
+        track.setFormat(fields.get("Format"));
+        track.setFormatInfo(fields.get("Format_Info"));
+        track.setCodecId(fields.get("Codec_ID"));
+        String channels = fields.get("Channel_s_");
+        if (channels != null) {
+            Matcher channelsMatcher = AudioTrack.channelsPattern.matcher(channels);
+            if (channelsMatcher.matches()) {
+                track.setChannelCount(Integer.parseInt(channelsMatcher.group("channels")));
+            }
+        }
+        track.setTitle(fields.get("Title"));
+        track.setLanguage(fields.get("Language"));
+        track.setAsDefault(fields.isYes("Default"));
+        track.setForced(fields.isYes("Forced"));
         System.out.println(" done");
 
         return track;
     }
 
-    private SubtitleTrack parseSubtitleTrack(Element trackElement) {
+    private SubtitleTrack parseSubtitleTrack(TrackFields fields) {
         System.out.print("Parsing subtitle track XML info...");
         SubtitleTrack track = new SubtitleTrack();
-        track.setStreamId((trackElement.getAttribute("streamid") != null) ? Integer.parseInt(trackElement.getAttributeValue("streamid")) : 0);
-        Element element = trackElement.getFirstChildElement("ID");
-        track.setTrackNumber(Integer.parseInt(element.getValue()));
-        element = trackElement.getFirstChildElement("Format");
-        track.setFormat(element.getValue());
-        element = trackElement.getFirstChildElement("Muxing_mode");
-        track.setCompressionMode((element != null) ? element.getValue() : null);
-        element = trackElement.getFirstChildElement("Codec_ID");
-        track.setCodecId(element.getValue());
-        element = trackElement.getFirstChildElement("Codec_ID_Info");
-        track.setFormatInfo(element.getValue());
-        element = trackElement.getFirstChildElement("Title");
-        String trackTitle = (element != null) ? element.getValue() : null;
+        track.setStreamId(fields.getStreamId());
+        track.setTrackNumber(Integer.parseInt(fields.get("ID")));
+        track.setFormat(fields.get("Format"));
+        track.setCompressionMode(fields.get("Muxing_mode"));
+        track.setCodecId(fields.get("Codec_ID"));
+        track.setFormatInfo(fields.get("Codec_ID_Info"));
+        String trackTitle = fields.get("Title");
         track.setTitle(trackTitle);
         if (trackTitle != null && containsForHearingImpairedHint(trackTitle)) {
             track.setSubType(SubtitleTrackType.FOR_HEARING_IMPAIRED);
         }
-        element = trackElement.getFirstChildElement("Language");
-        track.setLanguage(element == null ? null : element.getValue());
-        element = trackElement.getFirstChildElement("Default");
-        track.setAsDefault(element.getValue().equalsIgnoreCase("yes"));
-        element = trackElement.getFirstChildElement("Forced");
-        track.setForced(element.getValue().equalsIgnoreCase("yes"));
+        track.setLanguage(fields.get("Language"));
+        track.setAsDefault(fields.isYes("Default"));
+        track.setForced(fields.isYes("Forced"));
         if (trackTitle != null && containsForcedTrackHint(trackTitle)) {
             track.setForced(true);
         }
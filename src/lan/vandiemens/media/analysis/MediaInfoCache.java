@@ -0,0 +1,255 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import lan.vandiemens.media.cache.LruCache;
+
+/**
+ * Cache of the XML documents generated by the MediaInfo utility, so the same
+ * media file is not analysed again run after run.
+ * <p>
+ * Each document is stored in a file of the cache directory whose name is
+ * derived from the absolute path, the size and the last modification time of
+ * the media file, as well as from the MediaInfo executable itself. Hence a
+ * modified media file or a MediaInfo upgrade simply makes the old entries
+ * unreachable. Such entries are pruned from disk on the first write and then
+ * periodically: the entries not used for a while are deleted, and so are the
+ * least recently used ones beyond the disk capacity. The most recently used
+ * documents are kept in memory too, which helps long-running modes such as
+ * watch mode.
+ * <p>
+ * NOTE: The cache directory can be changed with the
+ * <code>mediamanager.mediainfo.cache.dir</code> system property, its disk
+ * capacity and maximum entry age with the
+ * <code>mediamanager.mediainfo.cache.max.entries</code> and
+ * <code>mediamanager.mediainfo.cache.max.age.days</code> system properties,
+ * and the cache can be disabled by setting the
+ * <code>mediamanager.mediainfo.cache.disabled</code> system property to
+ * <code>true</code>.
+ *
+ * @author vmurcia
+ */
+public class MediaInfoCache {
+
+    public static final String CACHE_DIRECTORY_PROPERTY = "mediamanager.mediainfo.cache.dir";
+    public static final String CACHE_DISABLED_PROPERTY = "mediamanager.mediainfo.cache.disabled";
+    public static final String MAX_ENTRIES_PROPERTY = "mediamanager.mediainfo.cache.max.entries";
+    public static final String MAX_AGE_PROPERTY = "mediamanager.mediainfo.cache.max.age.days";
+    public static final int DEFAULT_MEMORY_CAPACITY = 64;
+    public static final int DEFAULT_DISK_CAPACITY = 4096;
+    public static final int DEFAULT_MAX_AGE_IN_DAYS = 180;
+    private static final int PRUNING_INTERVAL = 256; // Writes between prunings
+    private static final long MILLISECONDS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final String CACHE_FILE_EXTENSION = ".xml";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static MediaInfoCache defaultCache = null;
+    private final File directory;
+    private final String toolFingerprint;
+    private final LruCache<String, String> memoryCache;
+    private final int diskCapacity;
+    private final long maxAge;
+    private final AtomicInteger writeCount = new AtomicInteger();
+
+    /**
+     * Creates a cache storing its entries in the given directory, with the
+     * default disk capacity and maximum entry age.
+     *
+     * @param directory the cache directory, which is created if needed
+     * @param mediaInfoExecutable the MediaInfo executable generating the
+     *                            cached documents
+     * @param memoryCapacity the maximum number of documents kept in memory
+     */
+    public MediaInfoCache(File directory, File mediaInfoExecutable, int memoryCapacity) {
+        this(directory, mediaInfoExecutable, memoryCapacity, DEFAULT_DISK_CAPACITY, DEFAULT_MAX_AGE_IN_DAYS);
+    }
+
+    /**
+     * Creates a cache storing its entries in the given directory.
+     *
+     * @param directory the cache directory, which is created if needed
+     * @param mediaInfoExecutable the MediaInfo executable generating the
+     *                            cached documents
+     * @param memoryCapacity the maximum number of documents kept in memory
+     * @param diskCapacity the maximum number of documents kept on disk
+     * @param maxAgeInDays the number of days a document is kept on disk
+     *                     since it was last used
+     */
+    public MediaInfoCache(File directory, File mediaInfoExecutable, int memoryCapacity, int diskCapacity, int maxAgeInDays) {
+        if (diskCapacity < 1 || maxAgeInDays < 1) {
+            throw new IllegalArgumentException("Invalid disk limits: " + diskCapacity + ", " + maxAgeInDays);
+        }
+        this.directory = directory;
+        toolFingerprint = mediaInfoExecutable.getAbsolutePath() + "|" + mediaInfoExecutable.length()
+                + "|" + mediaInfoExecutable.lastModified();
+        memoryCache = new LruCache<>(memoryCapacity);
+        this.diskCapacity = diskCapacity;
+        this.maxAge = maxAgeInDays * MILLISECONDS_PER_DAY;
+    }
+
+    /**
+     * Gets the cache shared by all the MediaInfo instances.
+     *
+     * @return the default cache, or <code>null</code> if caching is disabled
+     */
+    public static synchronized MediaInfoCache getDefault() {
+        if (Boolean.getBoolean(CACHE_DISABLED_PROPERTY)) {
+            return null;
+        }
+        if (defaultCache == null) {
+            String path = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+            File directory = (path != null) ? new File(path)
+                             : new File(System.getProperty("user.home"), ".mediamanager/cache/mediainfo");
+            defaultCache = new MediaInfoCache(directory, MediaInfoHelper.getMediaInfoCliExecutable(), DEFAULT_MEMORY_CAPACITY,
+                                              Math.max(1, Integer.getInteger(MAX_ENTRIES_PROPERTY, DEFAULT_DISK_CAPACITY)),
+                                              Math.max(1, Integer.getInteger(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_IN_DAYS)));
+        }
+        return defaultCache;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the cached MediaInfo XML document of the given media file.
+     *
+     * @param mediaFile the media file
+     * @return the XML document, or <code>null</code> if it is not cached or
+     *         the media file has changed since it was cached
+     */
+    public String get(File mediaFile) {
+        String key = getKey(mediaFile);
+        String xml = memoryCache.get(key);
+        if (xml != null) {
+            return xml;
+        }
+
+        File cacheFile = new File(directory, key + CACHE_FILE_EXTENSION);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try {
+            xml = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            System.out.println("MediaInfo cache entry could not be read: " + ex.getMessage());
+            return null;
+        }
+        cacheFile.setLastModified(System.currentTimeMillis()); // Keeps used entries from being pruned
+        memoryCache.put(key, xml);
+        return xml;
+    }
+
+    /**
+     * Stores the MediaInfo XML document of the given media file.
+     * <p>
+     * NOTE: A failure writing the cache entry is reported but otherwise
+     * ignored, since the cache is just an optimization.
+     *
+     * @param mediaFile the analysed media file
+     * @param xml the XML document generated by MediaInfo
+     */
+    public void put(File mediaFile, String xml) {
+        String key = getKey(mediaFile);
+        memoryCache.put(key, xml);
+
+        File cacheFile = new File(directory, key + CACHE_FILE_EXTENSION);
+        File tempFile = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.createDirectories(directory.toPath());
+            Files.write(tempFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            System.out.println("MediaInfo cache entry could not be written: " + ex.getMessage());
+            tempFile.delete();
+        }
+        if (writeCount.getAndIncrement() % PRUNING_INTERVAL == 0) {
+            prune();
+        }
+    }
+
+    /**
+     * Deletes from disk the documents not used for longer than the maximum
+     * entry age, as well as the least recently used ones beyond the disk
+     * capacity.
+     */
+    public void prune() {
+        File[] cacheFiles = directory.listFiles();
+        if (cacheFiles == null) {
+            return;
+        }
+        long oldestAllowed = System.currentTimeMillis() - maxAge;
+        final Map<File, Long> lastUses = new HashMap<>();
+        List<File> keptFiles = new ArrayList<>(cacheFiles.length);
+        for (File cacheFile : cacheFiles) {
+            if (!cacheFile.getName().endsWith(CACHE_FILE_EXTENSION)) {
+                continue;
+            }
+            long lastUse = cacheFile.lastModified();
+            if (lastUse < oldestAllowed) {
+                cacheFile.delete();
+            } else {
+                lastUses.put(cacheFile, lastUse);
+                keptFiles.add(cacheFile);
+            }
+        }
+        if (keptFiles.size() <= diskCapacity) {
+            return;
+        }
+        Collections.sort(keptFiles, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return Long.compare(lastUses.get(file1), lastUses.get(file2));
+            }
+        });
+        for (File cacheFile : keptFiles.subList(0, keptFiles.size() - diskCapacity)) {
+            cacheFile.delete();
+        }
+    }
+
+    /**
+     * Removes every cached document, both from memory and from disk.
+     */
+    public void clear() {
+        memoryCache.clear();
+        File[] cacheFiles = directory.listFiles();
+        if (cacheFiles != null) {
+            for (File cacheFile : cacheFiles) {
+                if (cacheFile.getName().endsWith(CACHE_FILE_EXTENSION)) {
+                    cacheFile.delete();
+                }
+            }
+        }
+    }
+
+    private String getKey(File mediaFile) {
+        String fingerprint = mediaFile.getAbsolutePath() + "|" + mediaFile.length() + "|" + mediaFile.lastModified()
+                + "|" + toolFingerprint;
+        byte[] digest = createSha1Digest().digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    private static MessageDigest createSha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 algorithm not available", ex);
+        }
+    }
+}
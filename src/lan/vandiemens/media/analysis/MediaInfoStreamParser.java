@@ -0,0 +1,178 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parses a MediaInfo XML document in a single forward pass, without building
+ * the whole document tree.
+ * <p>
+ * Only the attributes and the direct child elements of every
+ * <code>&lt;track&gt;</code> element are collected. Any deeper content is
+ * skipped.
+ *
+ * @author vmurcia
+ */
+class MediaInfoStreamParser {
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    private String version = null;
+    private boolean fileElementFound = false;
+    private final List<TrackFields> tracks = new ArrayList<>();
+
+    /**
+     * Parses a MediaInfo XML document read as text, such as the MediaInfo
+     * utility output.
+     *
+     * @param reader the document reader, which is not closed
+     * @throws MediaInfoException if the document is malformed
+     */
+    void parse(Reader reader) throws MediaInfoException {
+        try {
+            parse(inputFactory.createXMLStreamReader(reader));
+        } catch (XMLStreamException ex) {
+            System.out.println(ex.getMessage());
+            throw new MediaInfoException("The XML document generated by MediaInfo is malformed");
+        }
+    }
+
+    /**
+     * Parses a MediaInfo XML document honouring its encoding declaration.
+     *
+     * @param input the document input stream, which is not closed
+     * @throws MediaInfoException if the document is malformed
+     */
+    void parse(InputStream input) throws MediaInfoException {
+        try {
+            parse(inputFactory.createXMLStreamReader(input));
+        } catch (XMLStreamException ex) {
+            System.out.println(ex.getMessage());
+            throw new MediaInfoException("The XML document generated by MediaInfo is malformed");
+        }
+    }
+
+    /**
+     * @return the MediaInfo version which generated the document
+     */
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return <code>true</code> if the document contains a
+     *         <code>&lt;File&gt;</code> element, <code>false</code> otherwise
+     */
+    boolean isFileElementFound() {
+        return fileElementFound;
+    }
+
+    /**
+     * @return the tracks of the first <code>&lt;File&gt;</code> element, in
+     *         document order
+     */
+    List<TrackFields> getTracks() {
+        return tracks;
+    }
+
+    private void parse(XMLStreamReader xml) throws XMLStreamException {
+        try {
+            // Skip everything before the <Mediainfo> root element
+            while (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                if (!xml.hasNext()) {
+                    return;
+                }
+            }
+            version = xml.getAttributeValue(null, "version");
+
+            int depth = 1;
+            TrackFields track = null;
+            while (depth > 0) {
+                switch (xml.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 2 && !fileElementFound && xml.getLocalName().equals("File")) {
+                            fileElementFound = true;
+                        } else if (depth == 3 && track == null && fileElementFound && xml.getLocalName().equals("track")) {
+                            track = new TrackFields(xml.getAttributeValue(null, "type"), xml.getAttributeValue(null, "streamid"));
+                        } else if (depth == 4 && track != null) {
+                            track.put(xml.getLocalName(), readText(xml));
+                            depth--; // The end tag has already been read
+                        } else {
+                            skipElement(xml);
+                            depth--;
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--;
+                        if (depth == 2 && track != null) {
+                            tracks.add(track);
+                            track = null;
+                        } else if (depth == 1 && fileElementFound) {
+                            // The remaining <File> elements, if any, are ignored
+                            return;
+                        }
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        return;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    /**
+     * Reads the whole text of the current element, including the text of its
+     * child elements, like <code>Node.getValue()</code> does.
+     */
+    private static String readText(XMLStreamReader xml) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (xml.next()) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(xml.getText());
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,73 @@
+package lan.vandiemens.media.analysis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fields of a single <code>&lt;track&gt;</code> element of a MediaInfo XML
+ * document, no matter how the document has been parsed.
+ * <p>
+ * NOTE: Only the first occurrence of each field is kept, just like
+ * <code>Element.getFirstChildElement()</code> does.
+ *
+ * @author vmurcia
+ */
+class TrackFields {
+
+    private final String type;
+    private final String streamId;
+    private final Map<String, String> fields = new HashMap<>();
+
+    TrackFields(String type, String streamId) {
+        this.type = type;
+        this.streamId = streamId;
+    }
+
+    /**
+     * @return the track type (<code>General</code>, <code>Video</code>,
+     *         <code>Audio</code>, <code>Text</code>, <code>Menu</code>...), or
+     *         <code>null</code> if the track element has no type attribute
+     */
+    String getType() {
+        return type;
+    }
+
+    boolean hasType(String expectedType) {
+        return type != null && type.equalsIgnoreCase(expectedType);
+    }
+
+    /**
+     * @return the stream ID, or 0 if the track element has no stream ID
+     */
+    int getStreamId() {
+        return (streamId != null) ? Integer.parseInt(streamId) : 0;
+    }
+
+    /**
+     * @param name the field element name, such as <code>Codec_ID</code>
+     * @return the field value, or <code>null</code> if the field is missing
+     */
+    String get(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * @param name the field element name
+     * @return <code>true</code> if the field value is <code>Yes</code>,
+     *         <code>false</code> otherwise (including a missing field)
+     */
+    boolean isYes(String name) {
+        return "yes".equalsIgnoreCase(fields.get(name));
+    }
+
+    void put(String name, String value) {
+        if (!fields.containsKey(name)) {
+            fields.put(name, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Track[type=" + type + ", fields=" + fields.keySet() + "]";
+    }
+}
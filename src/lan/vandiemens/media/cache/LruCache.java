@@ -0,0 +1,92 @@
+package lan.vandiemens.media.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe in-memory cache holding a bounded number of entries.
+ * <p>
+ * NOTE: When the cache is full, the least recently used entry is evicted to
+ * make room for the new one.
+ *
+ * @author vmurcia
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the maximum number of entries kept in the cache
+     */
+    public LruCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the value cached for the given key, marking it as recently used.
+     *
+     * @param key the key
+     * @return the cached value, or <code>null</code> if there is none
+     */
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Cache keys and values can't be null");
+        }
+        entries.put(key, value);
+    }
+
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LruCache[" + entries.size() + "/" + capacity + " entries, " + hitCount + " hits, " + missCount + " misses]";
+    }
+}
@@ -0,0 +1,344 @@
+package lan.vandiemens.media.cataloguer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent index of the media files already catalogued in a media library.
+ * <p>
+ * Each media file is identified by its path relative to the library
+ * directory, its size and its last modification time, so checking whether a
+ * media file is already catalogued takes constant time and does not require
+ * reading its media info file. The MediaInfo unique ID of the media file is
+ * recorded too.
+ * <p>
+ * NOTE: The index is stored in the library directory as an append-only log of
+ * binary records, where the last record of a given path wins. The log is
+ * compacted when it is opened if it contains too many obsolete records.
+ *
+ * @author Victor
+ */
+public class CatalogueIndex implements Closeable {
+
+    public static final String INDEX_FILE_NAME = ".catalogue.idx";
+    private static final int MAGIC_NUMBER = 0x4D4D4349; // "MMCI"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 5;
+    private static final int COMPACTION_THRESHOLD = 256;
+
+    /**
+     * Catalogue state of an indexed media file.
+     */
+    public enum State {
+
+        /**
+         * The media file has been catalogued.
+         */
+        CATALOGUED,
+        /**
+         * The media file has been reversed or removed from the catalogue.
+         */
+        REMOVED
+    }
+
+    /**
+     * Index entry of a single media file.
+     */
+    public static class Entry {
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final State state;
+        private final byte[] digest;
+        private final String uniqueId;
+
+        Entry(String path, long size, long lastModified, State state, byte[] digest, String uniqueId) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.state = state;
+            this.digest = digest;
+            this.uniqueId = uniqueId;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Gets the MD5 digest of the media file, if known.
+         *
+         * @return the MD5 digest, or an empty array if it is unknown
+         */
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+
+        /**
+         * Gets the unique ID reported by MediaInfo for the media file, if any.
+         *
+         * @return the unique ID, or an empty string if it is unknown
+         */
+        public String getUniqueId() {
+            return uniqueId;
+        }
+
+        /**
+         * Checks if the given file still has the size and the last
+         * modification time recorded in this entry.
+         *
+         * @param file the media file
+         * @return <code>true</code> if the file seems unchanged,
+         *         <code>false</code> otherwise
+         */
+        public boolean matches(File file) {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
+    }
+
+    private final File libraryDirectory;
+    private final Path libraryPath;
+    private final File indexFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private DataOutputStream log = null;
+    private int recordCount = 0;
+    private int loadedVersion = FORMAT_VERSION;
+
+    private CatalogueIndex(File libraryDirectory) {
+        this.libraryDirectory = libraryDirectory;
+        libraryPath = libraryDirectory.toPath().toAbsolutePath().normalize();
+        indexFile = new File(libraryDirectory, INDEX_FILE_NAME);
+    }
+
+    /**
+     * Opens the index of the given media library, creating it if it does not
+     * exist yet.
+     *
+     * @param libraryDirectory the root directory of the media library
+     * @return the catalogue index of the media library
+     * @throws IOException if the index file can't be read or written
+     */
+    public static CatalogueIndex open(File libraryDirectory) throws IOException {
+        CatalogueIndex index = new CatalogueIndex(libraryDirectory);
+        long validLength = index.load();
+        if (index.loadedVersion < FORMAT_VERSION
+                || index.recordCount > COMPACTION_THRESHOLD && index.recordCount > 2 * index.entries.size()) {
+            index.compact();
+        } else if (validLength < index.indexFile.length()) {
+            // Discard the last record, which was not completely written
+            try (RandomAccessFile file = new RandomAccessFile(index.indexFile, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+        index.openLog();
+        return index;
+    }
+
+    public File getLibraryDirectory() {
+        return libraryDirectory;
+    }
+
+    /**
+     * Checks if the given file is located inside this index media library.
+     *
+     * @param file the file to be checked
+     * @return <code>true</code> if the file belongs to the media library,
+     *         <code>false</code> otherwise
+     */
+    public boolean covers(File file) {
+        return file.toPath().toAbsolutePath().normalize().startsWith(libraryPath);
+    }
+
+    public synchronized Entry get(File mediaFile) {
+        return entries.get(getKey(mediaFile));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks if the given media file has been catalogued and has not been
+     * modified since then.
+     *
+     * @param mediaFile the media file to be checked
+     * @return <code>true</code> if the media file is already catalogued,
+     *         <code>false</code> otherwise
+     */
+    public synchronized boolean isCatalogued(File mediaFile) {
+        Entry entry = entries.get(getKey(mediaFile));
+        return entry != null && entry.getState() == State.CATALOGUED && entry.matches(mediaFile);
+    }
+
+    /**
+     * Records the given media file as catalogued.
+     *
+     * @param mediaFile the catalogued media file
+     * @param digest the MD5 digest of the media file, or <code>null</code> if
+     *               it is unknown
+     * @param uniqueId the unique ID reported by MediaInfo for the media file,
+     *                 or <code>null</code> if it is unknown
+     * @throws IOException if the record can't be written to the index file
+     */
+    public synchronized void putCatalogued(File mediaFile, byte[] digest, String uniqueId) throws IOException {
+        append(new Entry(getKey(mediaFile), mediaFile.length(), mediaFile.lastModified(), State.CATALOGUED,
+                         digest == null ? new byte[0] : digest.clone(), uniqueId == null ? "" : uniqueId));
+    }
+
+    /**
+     * Records the given media file as no longer catalogued.
+     *
+     * @param mediaFile the media file
+     * @throws IOException if the record can't be written to the index file
+     */
+    public synchronized void remove(File mediaFile) throws IOException {
+        String key = getKey(mediaFile);
+        if (entries.containsKey(key)) {
+            append(new Entry(key, 0, 0, State.REMOVED, new byte[0], ""));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private String getKey(File mediaFile) {
+        Path path = mediaFile.toPath().toAbsolutePath().normalize();
+        return libraryPath.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private void append(Entry entry) throws IOException {
+        if (log == null) {
+            throw new IOException("Catalogue index is closed: " + indexFile);
+        }
+        writeRecord(log, entry);
+        log.flush();
+        recordCount++;
+        update(entry);
+    }
+
+    private void update(Entry entry) {
+        if (entry.getState() == State.REMOVED) {
+            entries.remove(entry.getPath());
+        } else {
+            entries.put(entry.getPath(), entry);
+        }
+    }
+
+    /**
+     * Loads all the records stored in the index file.
+     *
+     * @return the length of the index file up to the last complete record
+     */
+    private long load() throws IOException {
+        if (!indexFile.exists()) {
+            return 0;
+        }
+
+        // The index is small enough to be read at once
+        byte[] contents = Files.readAllBytes(indexFile.toPath());
+        ByteArrayInputStream buffer = new ByteArrayInputStream(contents);
+        DataInputStream input = new DataInputStream(buffer);
+        long validLength = 0;
+        try {
+            if (input.readInt() != MAGIC_NUMBER) {
+                throw new IOException("Invalid catalogue index file: " + indexFile);
+            }
+            loadedVersion = input.readUnsignedByte();
+            if (loadedVersion < 1 || loadedVersion > FORMAT_VERSION) {
+                throw new IOException("Unsupported catalogue index version " + loadedVersion + ": " + indexFile);
+            }
+            validLength = HEADER_LENGTH;
+            while (true) {
+                Entry entry = readRecord(input, loadedVersion);
+                update(entry);
+                recordCount++;
+                validLength = contents.length - buffer.available();
+            }
+        } catch (EOFException ex) {
+            // End of the log reached
+        }
+        return validLength;
+    }
+
+    private void compact() throws IOException {
+        File tempFile = new File(libraryDirectory, INDEX_FILE_NAME + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            writeHeader(output);
+            for (Entry entry : entries.values()) {
+                writeRecord(output, entry);
+            }
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        recordCount = entries.size();
+        loadedVersion = FORMAT_VERSION;
+    }
+
+    private void openLog() throws IOException {
+        boolean isNewFile = !indexFile.exists() || indexFile.length() == 0;
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+        if (isNewFile) {
+            writeHeader(log);
+            log.flush();
+        }
+    }
+
+    private static void writeHeader(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC_NUMBER);
+        output.writeByte(FORMAT_VERSION);
+    }
+
+    private static void writeRecord(DataOutputStream output, Entry entry) throws IOException {
+        output.writeByte(entry.getState().ordinal());
+        output.writeUTF(entry.getPath());
+        output.writeLong(entry.getSize());
+        output.writeLong(entry.getLastModified());
+        output.writeByte(entry.digest.length);
+        output.write(entry.digest);
+        output.writeUTF(entry.getUniqueId());
+    }
+
+    private static Entry readRecord(DataInputStream input, int version) throws IOException {
+        int stateIndex = input.readUnsignedByte();
+        if (stateIndex >= State.values().length) {
+            throw new IOException("Invalid catalogue index record state: " + stateIndex);
+        }
+        String path = input.readUTF();
+        long size = input.readLong();
+        long lastModified = input.readLong();
+        byte[] digest = new byte[input.readUnsignedByte()];
+        input.readFully(digest);
+        String uniqueId = version > 1 ? input.readUTF() : ""; // Unique IDs are not recorded in version 1
+        return new Entry(path, size, lastModified, State.values()[stateIndex], digest, uniqueId);
+    }
+}
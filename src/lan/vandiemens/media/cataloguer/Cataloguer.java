@@ -1,9 +1,30 @@
 package lan.vandiemens.media.cataloguer;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import lan.vandiemens.media.FolderWatcher;
 import lan.vandiemens.media.analysis.MediaInfoHelper;
 import static lan.vandiemens.media.analysis.MediaInfoHelper.getMediaInfoCliExecutable;
 import lan.vandiemens.media.manager.VersionInfo;
+import lan.vandiemens.media.process.ManagedProcess;
+import lan.vandiemens.media.process.ProcessExecutor;
+import lan.vandiemens.media.process.ProcessExecutor.Lane;
 import lan.vandiemens.util.file.FileExtensionFilter;
 import lan.vandiemens.util.file.FileUtils;
 import lan.vandiemens.util.file.Md5FileGenerator;
@@ -43,6 +64,28 @@ public class Cataloguer {
      * the media file has been renamed.
      */
     private boolean reverseModeEnabled = false;
+    /**
+     * The number of media containers processed at the same time. A value of 1
+     * means the media containers are processed one after another.
+     */
+    private int workerCount = 1;
+    /**
+     * A flag indicating that the MD5 hash of each media container will be
+     * calculated while MediaInfo is analysing it, instead of reading the whole
+     * container again once the media info file has been saved.
+     */
+    private boolean pipelinedHashingEnabled = false;
+    /**
+     * A flag indicating that media files modified since they were catalogued
+     * (according to the catalogue index) will be catalogued again.
+     * NOTE: The media info file and the MD5 hash file are regenerated keeping
+     * the release information stored in the former media info file.
+     */
+    private boolean incrementalModeEnabled = false;
+    /**
+     * The catalogue indexes of the media libraries being catalogued.
+     */
+    private final List<CatalogueIndex> indexes = new ArrayList<>();
 
     public Cataloguer(File dir) {
         if (!dir.exists()) {
@@ -55,6 +98,15 @@ public class Cataloguer {
         moviesDirectory = dir;
     }
 
+    /**
+     * Creates a cataloguer with no media directory, intended to catalog media
+     * files gathered from several directories.
+     *
+     * @see #catalog(List)
+     */
+    Cataloguer() {
+    }
+
     public boolean isMediaInfoOnlyEnabled() {
         return mediaInfoOnlyEnabled;
     }
@@ -71,50 +123,330 @@ public class Cataloguer {
         reverseModeEnabled = enabled;
     }
 
+    public boolean isPipelinedHashingEnabled() {
+        return pipelinedHashingEnabled;
+    }
+
+    public void setPipelinedHashingEnabled(boolean enabled) {
+        pipelinedHashingEnabled = enabled;
+    }
+
+    public boolean isIncrementalModeEnabled() {
+        return incrementalModeEnabled;
+    }
+
+    public void setIncrementalModeEnabled(boolean enabled) {
+        incrementalModeEnabled = enabled;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void setWorkerCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Invalid worker count: " + count);
+        }
+        workerCount = count;
+    }
+
     /**
      * Begin to catalog all media containers located in the media directory.
      */
     public void start() {
 
         // Check if MediaInfo is installed on this system
-        if (getMediaInfoCliExecutable().exists()) {
+        if (isMediaInfoAvailable()) {
             System.out.println("MediaInfo found\n");
         } else {
             System.err.println("MediaInfo not found!");
             System.exit(0);
         }
 
-        // Get list of media files in the given movie directory
+        // Get lists of media files and media information files in the given movie directory
+        List<File> mediaFiles = new ArrayList<>();
+        Set<String> mediaInfoNames = new HashSet<>();
+        listDirectory(moviesDirectory, mediaFiles, mediaInfoNames);
+
         System.out.println("Media directory listing:");
-        File[] mediaFiles = moviesDirectory.listFiles(new FileExtensionFilter(supportedFormats));
         for (File mediaFile : mediaFiles) {
             System.out.println("Media: " + mediaFile.getName());
         }
         System.out.println();
-
-        // Get list of media information files in the given movie directory
-        File[] mediaInfoFiles = moviesDirectory.listFiles(new FileExtensionFilter(new String[]{ MEDIAINFO_FILE_EXTENSION }));
-        for (File mediaInfoFile : mediaInfoFiles) {
-            System.out.println("Media Info: " + mediaInfoFile.getName());
+        for (String mediaInfoName : mediaInfoNames) {
+            System.out.println("Media Info: " + mediaInfoName + "." + MEDIAINFO_FILE_EXTENSION);
         }
         System.out.println();
 
+        openIndex(moviesDirectory);
+        List<File> pendingFiles = new ArrayList<>();
+        List<File> skippedFiles = new ArrayList<>();
+        selectPendingFiles(mediaFiles, mediaInfoNames, pendingFiles, skippedFiles);
+        for (File skippedFile : skippedFiles) {
+            System.out.println("Skipped > " + skippedFile.getName());
+        }
+
+        catalog(pendingFiles);
+        closeIndexes();
+    }
+
+    /**
+     * Catalogs all media containers located in the media directory, and then
+     * keeps waiting for new media containers to catalog them as soon as they
+     * are complete.
+     * <p>
+     * NOTE: This method does not return unless the current thread is
+     * interrupted.
+     */
+    public void watch() {
+        start();
+        watchFolders(Collections.singletonList(moviesDirectory));
+    }
+
+    /**
+     * Waits for new media containers in the given folders (or their
+     * subfolders) to catalog them as soon as they are complete.
+     * <p>
+     * NOTE: The given files which are not directories are skipped.
+     *
+     * @param folders the root folders to be watched
+     */
+    void watchFolders(List<File> folders) {
+        List<File> watchedFolders = new ArrayList<>();
+        for (File folder : folders) {
+            if (folder.isDirectory()) {
+                openIndex(folder);
+                watchedFolders.add(folder);
+            } else {
+                System.out.println("Not a directory: " + folder);
+            }
+        }
+        if (watchedFolders.isEmpty()) {
+            System.out.println("No media folders to watch");
+            return;
+        }
+        try {
+            FolderWatcher watcher = new FolderWatcher(watchedFolders, new FileExtensionFilter(supportedFormats), new FolderWatcher.Listener() {
+                @Override
+                public void filesReady(List<File> files) {
+                    List<File> pendingFiles = new ArrayList<>();
+                    for (File file : files) {
+                        if (!isCataloged(file)) {
+                            System.out.println("New media file: " + file.getAbsolutePath());
+                            pendingFiles.add(file);
+                        }
+                    }
+                    catalog(pendingFiles);
+                }
+            });
+            System.out.println("Waiting for new media files...\n");
+            watcher.run();
+        } catch (IOException ex) {
+            System.out.println("Media folders could not be watched: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeIndexes();
+        }
+    }
+
+    /**
+     * Checks if MediaInfo is installed on this system.
+     *
+     * @return <code>true</code> if the MediaInfo CLI executable was found,
+     *         <code>false</code> otherwise
+     */
+    static boolean isMediaInfoAvailable() {
+        return getMediaInfoCliExecutable().exists();
+    }
+
+    /**
+     * Gets the media files located in the given directory which have to be
+     * catalogued, or reversed if the reverse mode is enabled.
+     * <p>
+     * NOTE: This method does not print anything, so it can be safely called
+     * from several threads at the same time.
+     *
+     * @param dir the directory to be scanned
+     * @param pendingFiles the list where the media files to be processed are
+     *                     added
+     * @param skippedFiles the list where the media files already catalogued
+     *                     are added
+     */
+    void scanDirectory(File dir, List<File> pendingFiles, List<File> skippedFiles) {
+        List<File> mediaFiles = new ArrayList<>();
+        Set<String> mediaInfoNames = new HashSet<>();
+        listDirectory(dir, mediaFiles, mediaInfoNames);
+        selectPendingFiles(mediaFiles, mediaInfoNames, pendingFiles, skippedFiles);
+    }
+
+    /**
+     * Lists the given directory only once, looking for both media files and
+     * media info files.
+     *
+     * @param dir the directory to be listed
+     * @param mediaFiles the list where the media files found are added
+     * @param mediaInfoNames the set where the names (without extension) of
+     *                       the media info files found are added
+     */
+    private static void listDirectory(File dir, List<File> mediaFiles, Set<String> mediaInfoNames) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        FileExtensionFilter mediaFilter = new FileExtensionFilter(supportedFormats);
+        FileExtensionFilter mediaInfoFilter = new FileExtensionFilter(new String[]{ MEDIAINFO_FILE_EXTENSION });
+        for (File file : files) {
+            if (mediaFilter.accept(file)) {
+                mediaFiles.add(file);
+            } else if (mediaInfoFilter.accept(file)) {
+                mediaInfoNames.add(FileUtils.getNameWithoutExtension(file));
+            }
+        }
+    }
+
+    private void selectPendingFiles(List<File> mediaFiles, Set<String> mediaInfoNames, List<File> pendingFiles, List<File> skippedFiles) {
         for (File mediaFile : mediaFiles) {
             // Process only the movies that hasn't been catalogued previously
-            if (!reverseModeEnabled && !isCataloged(mediaFile, mediaInfoFiles)) {
+            if (reverseModeEnabled || !isCataloged(mediaFile, mediaInfoNames)) {
+                pendingFiles.add(mediaFile);
+            } else {
+                skippedFiles.add(mediaFile);
+            }
+        }
+    }
+
+    /**
+     * Opens the catalogue index of the given media library, so it is used to
+     * know which media files are already catalogued.
+     * <p>
+     * NOTE: If the catalogue index can't be opened, the media info files are
+     * used instead.
+     *
+     * @param libraryDirectory the root directory of the media library
+     */
+    void openIndex(File libraryDirectory) {
+        try {
+            CatalogueIndex index = CatalogueIndex.open(libraryDirectory);
+            indexes.add(index);
+            System.out.println("Catalogue index of " + libraryDirectory + ": " + index.size() + " media files");
+        } catch (IOException ex) {
+            System.out.println("Catalogue index not available: " + ex.getMessage());
+        }
+    }
+
+    void closeIndexes() {
+        for (CatalogueIndex index : indexes) {
+            try {
+                index.close();
+            } catch (IOException ex) {
+                System.out.println("Catalogue index could not be closed: " + ex.getMessage());
+            }
+        }
+        indexes.clear();
+    }
+
+    /**
+     * Gets the catalogue index of the innermost media library containing the
+     * given media file.
+     *
+     * @param mediaFile the media file
+     * @return the catalogue index, or <code>null</code> if there is none
+     */
+    private CatalogueIndex getIndex(File mediaFile) {
+        CatalogueIndex result = null;
+        for (CatalogueIndex index : indexes) {
+            if (index.covers(mediaFile) && (result == null
+                    || index.getLibraryDirectory().getAbsolutePath().length() > result.getLibraryDirectory().getAbsolutePath().length())) {
+                result = index;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Catalogs the given media files, which may be located in different
+     * directories, or rebuilds their original names if the reverse mode is
+     * enabled.
+     *
+     * @param mediaFiles the media files to be processed
+     */
+    void catalog(List<File> mediaFiles) {
+        if (reverseModeEnabled) {
+            for (File mediaFile : mediaFiles) {
+                reverse(mediaFile);
+            }
+        } else if (workerCount > 1 && mediaFiles.size() > 1) {
+            processConcurrently(mediaFiles);
+        } else {
+            for (File mediaFile : mediaFiles) {
                 if (process(mediaFile)) {
                     System.out.println(mediaFile.getName() + " processed successfully");
                 } else {
                     System.out.println(mediaFile.getName() + " processed with errors");
                 }
-            } else {
-                if (reverseModeEnabled) {
-                    reverse(mediaFile);
+            }
+        }
+    }
+
+    /**
+     * Processes the given media containers using a pool of
+     * {@link #getWorkerCount()} threads.
+     * <p>
+     * NOTE: The result of each media container is reported once all of them
+     * have been processed, following the same order as the given list.
+     *
+     * @param containerFiles the media files to be processed
+     */
+    private void processConcurrently(List<File> containerFiles) {
+        int threadCount = Math.min(workerCount, containerFiles.size());
+        System.out.println("Processing " + containerFiles.size() + " media files using " + threadCount + " workers...\n");
+
+        Map<File, Future<Boolean>> results = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (final File containerFile : containerFiles) {
+                results.put(containerFile, executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return process(containerFile);
+                    }
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        printResultSummary(results);
+    }
+
+    private void printResultSummary(Map<File, Future<Boolean>> results) {
+        int processedCount = 0;
+        int failedCount = 0;
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<File, Future<Boolean>> result : results.entrySet()) {
+            String name = result.getKey().getName();
+            try {
+                if (result.getValue().get()) {
+                    summary.append(name).append(" processed successfully\n");
+                    processedCount++;
                 } else {
-                    System.out.println("Skipped > " + mediaFile.getName());
+                    summary.append(name).append(" processed with errors\n");
+                    failedCount++;
                 }
+            } catch (ExecutionException ex) {
+                summary.append(name).append(" processed with errors: ").append(ex.getCause()).append("\n");
+                failedCount++;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                summary.append(name).append(" not processed: cataloguing was interrupted\n");
+                failedCount++;
             }
         }
+        System.out.println("\nCataloguing summary:");
+        System.out.print(summary);
+        System.out.println(processedCount + " media files processed successfully, " + failedCount + " with errors");
     }
 
     /**
@@ -134,78 +466,107 @@ public class Cataloguer {
         // Check if the media file exists
         System.out.println("Processing " + containerFile.getName() + "...");
 
-        // Parse media container filename
-        String container = containerFile.getName();
-
-        boolean isTvSeries = false;
-
-        String movieName;
-        String fileExtension = null;
-        String originalTitle = null;
-        String sourceWeb = null;
-        String uploader = null;
-        String ripper = null;
-        String sourceType = null;
-
-        // Strip off the file extension
-        int index = container.lastIndexOf(".");
-        if (index > -1) {
-            fileExtension = container.substring(index + 1);
-            container = container.substring(0, index);
-        }
-
-        String[] tokens = container.split("_");
-        switch (tokens.length) {
-            case 6:
-                ripper = tokens[5];
-            case 5:
-                sourceType = tokens[4];
-            case 4:
-                originalTitle = tokens[3].replaceAll("--", "_");
-                if (originalTitle.equals("=")) {
-                    originalTitle = tokens[0];
-                }
-                if (isSemicolonToColonEnabled) {
-                    originalTitle = originalTitle.replace(';', ':');
-                }
-            case 3:
-                uploader = tokens[2].replaceAll("--", "_");
-            case 2:
-                sourceWeb = tokens[1].replaceAll("--", "_");
-                switch (sourceWeb) {
-                    case "v":
-                        sourceWeb = "www.vagos.es";
-                        break;
-                    case "tpb":
-                        sourceWeb = "thepiratebay.se";
-                        break;
-                    case "phd":
-                        sourceWeb = "publichd.eu";
-                        break;
-                }
-            case 1:
-                movieName = tokens[0];
-                if (movieName.lastIndexOf(" - [") >= 0) {
-                    isTvSeries = true;
-                }
-                break;
-            default:
-                System.out.println("Invalid container name");
-                return false;
-        }
-
         // Save media container information
         String[] commandArray = new String[]{ MediaInfoHelper.getMediaInfoCliExecutable().getAbsolutePath(),
                                               containerFile.getAbsolutePath()};
 
-        Process process; // The process to be spawned
+        ManagedProcess process = null; // The process to be spawned
         BufferedReader reader;
         StringBuilder builder;
 
+        // Start hashing the media container while MediaInfo is analysing it
+        FutureTask<byte[]> digestTask = null;
+        if (pipelinedHashingEnabled && !mediaInfoOnlyEnabled) {
+            digestTask = new FutureTask<>(new FileDigester(containerFile));
+            Thread digestThread = new Thread(digestTask, "MD5 " + containerFile.getName());
+            digestThread.setDaemon(true);
+            digestThread.start();
+        }
+
         try {
-            process = Runtime.getRuntime().exec(commandArray);
+            process = ProcessExecutor.getDefault().start(Arrays.asList(commandArray), Lane.PROBE, ProcessExecutor.DEFAULT_PROBE_TIMEOUT);
             reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
 
+            // The media info is read first, as its unique ID is needed to parse the container name
+            List<String> mediaInfoLines = new ArrayList<>(128);
+            String uniqueId = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("Unique ID")) {
+                    uniqueId = parseUniqueId(line);
+                } else {
+                    mediaInfoLines.add(line);
+                }
+            }
+            reader.close();
+            process.waitFor();
+            if (process.isTimedOut()) {
+                System.out.println("MediaInfo took too long to analyse " + containerFile.getName());
+                return false;
+            }
+            process.close(); // Frees the process lane before hashing and renaming
+
+            // Parse media container filename
+            CatalogueIndex catalogueIndex = getIndex(containerFile);
+            String container = getContainerName(containerFile, catalogueIndex, uniqueId);
+
+            boolean isTvSeries = false;
+
+            String movieName;
+            String fileExtension = null;
+            String originalTitle = null;
+            String sourceWeb = null;
+            String uploader = null;
+            String ripper = null;
+            String sourceType = null;
+
+            // Strip off the file extension
+            int index = container.lastIndexOf(".");
+            if (index > -1) {
+                fileExtension = container.substring(index + 1);
+                container = container.substring(0, index);
+            }
+
+            String[] tokens = container.split("_");
+            switch (tokens.length) {
+                case 6:
+                    ripper = tokens[5].replaceAll("--", "_");
+                case 5:
+                    sourceType = tokens[4].replaceAll("--", "_");
+                case 4:
+                    originalTitle = tokens[3].replaceAll("--", "_");
+                    if (originalTitle.equals("=")) {
+                        originalTitle = tokens[0];
+                    }
+                    if (isSemicolonToColonEnabled) {
+                        originalTitle = originalTitle.replace(';', ':');
+                    }
+                case 3:
+                    uploader = tokens[2].replaceAll("--", "_");
+                case 2:
+                    sourceWeb = tokens[1].replaceAll("--", "_");
+                    switch (sourceWeb) {
+                        case "v":
+                            sourceWeb = "www.vagos.es";
+                            break;
+                        case "tpb":
+                            sourceWeb = "thepiratebay.se";
+                            break;
+                        case "phd":
+                            sourceWeb = "publichd.eu";
+                            break;
+                    }
+                case 1:
+                    movieName = tokens[0];
+                    if (movieName.lastIndexOf(" - [") >= 0) {
+                        isTvSeries = true;
+                    }
+                    break;
+                default:
+                    System.out.println("Invalid container name");
+                    return false;
+            }
+
             // Add Release information
             builder = new StringBuilder(4096); // Typical media info file size
             builder.append("Release\r\n");
@@ -219,11 +580,8 @@ public class Cataloguer {
             builder.append(uploader == null ? "Unknown" : uploader);
             builder.append("\r\n\r\n");
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("Unique ID")) {
-                    // Do nothing
-                } else if (line.startsWith("Complete name")) {
+            for (String mediaInfoLine : mediaInfoLines) {
+                if (mediaInfoLine.startsWith("Complete name")) {
                     if (isTvSeries) {
                         builder.append("Complete name                            : /TV Series/");
                     } else {
@@ -236,13 +594,12 @@ public class Cataloguer {
                     builder.append(originalTitle == null ? movieName.replace(';', ':') : originalTitle);
                     builder.append("\r\n");
                 } else {
-                    builder.append(line);
+                    builder.append(mediaInfoLine);
                     builder.append("\r\n");
                 }
             }
             int length = builder.length();
             builder.delete(length - 2, length); // Deletes the last (and unnecessary) CRLF sequence
-            reader.close();
 
             // Save the generated media info
             String mediaInfo = builder.toString();
@@ -252,23 +609,48 @@ public class Cataloguer {
                 writer.print(mediaInfo);
             }
 
+            // The container can't be renamed while it is still being read
+            byte[] containerDigest = null;
+            if (digestTask != null) {
+                containerDigest = getDigest(digestTask);
+            }
+
             // Rename media container file
             movieName += (fileExtension == null ? "" : ("." + fileExtension));
             File desiredFile = new File(containerFile.getParent() + File.separator + movieName);
-            if (containerFile.renameTo(desiredFile)) {
+            if (desiredFile.equals(containerFile)) {
+                // Already renamed when it was catalogued
+            } else if (containerFile.renameTo(desiredFile)) {
                 System.out.println("\"" + containerFile.getName() + "\" has been renamed to \"" + movieName + "\"");
             } else {
                 System.out.println("\"" + containerFile.getName() + "\" could not be renamed to \"" + movieName + "\"");
-                System.exit(0);
+                return false;
             }
 
             // Calculate the MD5 digest
-            if (!mediaInfoOnlyEnabled) {
+            if (containerDigest != null) {
+                saveMediaHashFile(desiredFile, containerDigest, mediaInfoFile);
+            } else if (!mediaInfoOnlyEnabled) {
                 saveMediaHashFile(desiredFile, mediaInfoFile);
             }
+
+            if (catalogueIndex != null) {
+                updateIndex(catalogueIndex, desiredFile, containerDigest, uniqueId);
+            }
         } catch (IOException ex) {
             System.out.println(ex.getMessage());
             return false;
+        } catch (InterruptedException ex) {
+            System.out.println("Interrupted while processing " + containerFile.getName());
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (process != null) {
+                process.close();
+            }
+            if (digestTask != null) {
+                digestTask.cancel(true); // Stops hashing if an error happened
+            }
         }
 
         return true;
@@ -292,13 +674,145 @@ public class Cataloguer {
         if (!mediaInfoFile.exists()) {
             mediaInfoFile = new File(mkvFile.getParent(), containerName + ".mnfo");
         }
+        String originalName = rebuildOriginalName(mkvFile, mediaInfoFile);
+        if (originalName == null) {
+            return false;
+        }
+        System.out.println("Rebuild name: " + originalName);
+        mkvFile.renameTo(new File(mkvFile.getParent(), originalName + "." + FileUtils.getExtension(mkvFile)));
+
+        // Delete MD5 hash file
+        File md5HashFile = new File(mediaInfoFile.getParent(), containerName + "." + MD5_FILE_EXTENSION);
+        if (md5HashFile.exists()) {
+            if (md5HashFile.delete()) {
+                System.out.println(md5HashFile.getAbsolutePath() + " successfully deleted");
+            } else {
+                System.err.println(md5HashFile.getAbsolutePath() + " could not be deleted");
+                return false;
+            }
+        } else {
+            System.out.println("MD5 hash file not found: " + md5HashFile.getAbsolutePath());
+        }
+
+        // Delete media info file
+        if (mediaInfoFile.delete()) {
+            System.out.println(mediaInfoFile.getAbsolutePath() + " successfully deleted");
+        } else {
+            System.err.println(mediaInfoFile.getAbsolutePath() + " could not be deleted");
+            return false;
+        }
+
+        // Remove the media file from the catalogue index
+        CatalogueIndex index = getIndex(mkvFile);
+        if (index != null) {
+            try {
+                index.remove(mkvFile);
+            } catch (IOException ex) {
+                System.out.println("Catalogue index could not be updated: " + ex.getMessage());
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the catalogue index entry of a media file which is catalogued again
+     * because it has been modified since then.
+     *
+     * @param index the catalogue index of the media file, if any
+     * @param containerFile the media file
+     * @return the catalogue index entry, or <code>null</code> if the media file
+     *         was not catalogued
+     */
+    private static CatalogueIndex.Entry getPreviousEntry(CatalogueIndex index, File containerFile) {
+        if (index == null) {
+            return null;
+        }
+        CatalogueIndex.Entry entry = index.get(containerFile);
+        if (entry == null || entry.getState() != CatalogueIndex.State.CATALOGUED || entry.matches(containerFile)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the name to be parsed for the release information of a media file.
+     * <p>
+     * NOTE: Media files modified since they were catalogued, e.g. remuxed or
+     * with their headers edited, have already been renamed, so their original
+     * name is rebuilt from their media info file. That is not the case if they
+     * have been replaced by a different media file with the same name.
+     *
+     * @param containerFile the media file
+     * @param index the catalogue index of the media file, if any
+     * @param uniqueId the unique ID reported by MediaInfo for the media file,
+     *                 or <code>null</code> if there is none
+     * @return the media file name, including its extension
+     */
+    static String getContainerName(File containerFile, CatalogueIndex index, String uniqueId) {
+        CatalogueIndex.Entry previousEntry = getPreviousEntry(index, containerFile);
+        if (previousEntry == null) {
+            return containerFile.getName();
+        }
+        if (!isSameMedia(previousEntry, uniqueId)) {
+            System.out.println(containerFile.getName() + " has been replaced since it was catalogued");
+            return containerFile.getName();
+        }
+        File previousInfoFile = new File(containerFile.getParent(), FileUtils.getNameWithoutExtension(containerFile) + "." + MEDIAINFO_FILE_EXTENSION);
+        String originalName = previousInfoFile.exists() ? rebuildOriginalName(containerFile, previousInfoFile) : null;
+        if (originalName == null) {
+            return containerFile.getName();
+        }
+        System.out.println(containerFile.getName() + " has been modified since it was catalogued");
+        return originalName + "." + FileUtils.getExtension(containerFile);
+    }
+
+    /**
+     * Checks if a media file modified since it was catalogued still holds the
+     * same media, e.g. because only its headers have been edited, rather than
+     * having been replaced by a different media file with the same name.
+     *
+     * @param previousEntry the catalogue index entry of the media file
+     * @param uniqueId the unique ID now reported by MediaInfo for the media
+     *                 file, or <code>null</code> if there is none
+     * @return <code>false</code> if both unique IDs are known and differ,
+     *         <code>true</code> otherwise
+     */
+    static boolean isSameMedia(CatalogueIndex.Entry previousEntry, String uniqueId) {
+        return uniqueId == null || previousEntry.getUniqueId().isEmpty() || previousEntry.getUniqueId().equals(uniqueId);
+    }
+
+    /**
+     * Gets the value of a MediaInfo "Unique ID" line, without the hexadecimal
+     * representation enclosed in parentheses.
+     *
+     * @param line the MediaInfo output line
+     * @return the unique ID
+     */
+    static String parseUniqueId(String line) {
+        String value = line.substring(line.indexOf(':') + 1).trim();
+        int index = value.indexOf(" (");
+        return index < 0 ? value : value.substring(0, index);
+    }
+
+    /**
+     * Rebuilds the original name of a catalogued media file from the release
+     * information stored in its media info file.
+     *
+     * @param mkvFile the catalogued media file
+     * @param mediaInfoFile the media info file of the media file
+     * @return the original media file name without extension, or
+     *         <code>null</code> if the media info file is not valid
+     */
+    private static String rebuildOriginalName(File mkvFile, File mediaInfoFile) {
+        String containerName = FileUtils.getNameWithoutExtension(mkvFile);
         BufferedReader reader;
 
         try {
             reader = new BufferedReader(new FileReader(mediaInfoFile));
         } catch (FileNotFoundException ex) {
             System.out.println("Media Info file not found: " + mediaInfoFile.getAbsolutePath());
-            return false;
+            return null;
         }
 
         int i = 0;
@@ -311,11 +825,11 @@ public class Cataloguer {
 
             if (i != lines.length) {
                 System.err.println("Invalid media info file: " + mediaInfoFile.getAbsolutePath());
-                return false;
+                return null;
             }
         } catch (IOException ex) {
             System.err.println("Error when reading media info file: " + mediaInfoFile.getAbsolutePath());
-            return false;
+            return null;
         }
 
         // Rebuild media file name from media info data
@@ -327,11 +841,11 @@ public class Cataloguer {
                 sourceWeb = lines[1].substring(colonIndex + 2);
             } else {
                 System.err.println("Invalid source web line in " + mediaInfoFile.getAbsolutePath());
-                return false;
+                return null;
             }
         } else {
             System.err.println("Invalid source web line in " + mediaInfoFile.getAbsolutePath());
-            return false;
+            return null;
         }
 
         String sourceType;
@@ -341,11 +855,11 @@ public class Cataloguer {
                 sourceType = lines[2].substring(colonIndex + 2);
             } else {
                 System.err.println("Invalid source type line in " + mediaInfoFile.getAbsolutePath());
-                return false;
+                return null;
             }
         } else {
             System.err.println("Invalid source type line in " + mediaInfoFile.getAbsolutePath());
-            return false;
+            return null;
         }
 
         String ripper;
@@ -355,11 +869,11 @@ public class Cataloguer {
                 ripper = lines[3].substring(colonIndex + 2);
             } else {
                 System.err.println("Invalid ripper line in " + mediaInfoFile.getAbsolutePath());
-                return false;
+                return null;
             }
         } else {
             System.err.println("Invalid ripper line in " + mediaInfoFile.getAbsolutePath());
-            return false;
+            return null;
         }
 
         String uploader;
@@ -369,11 +883,11 @@ public class Cataloguer {
                 uploader = lines[4].substring(colonIndex + 2);
             } else {
                 System.err.println("Invalid uplouder line in " + mediaInfoFile.getAbsolutePath());
-                return false;
+                return null;
             }
         } else {
             System.err.println("Invalid uploader line in " + mediaInfoFile.getAbsolutePath());
-            return false;
+            return null;
         }
 
         String originalTitle;
@@ -383,61 +897,76 @@ public class Cataloguer {
                 originalTitle = lines[8].substring(colonIndex + 2).replace(':', ';');
             } else {
                 System.err.println("Invalid original title line in " + mediaInfoFile.getAbsolutePath());
-                return false;
+                return null;
             }
         } else {
             System.err.println("Invalid original title line in " + mediaInfoFile.getAbsolutePath());
-            return false;
-        }
-
-        System.out.println("Rebuild name: " + containerName + "_" + sourceWeb + "_" + uploader + "_" + originalTitle + "_" + sourceType + "_" + ripper);
-        StringBuilder builder = new StringBuilder(containerName).append("_").append(sourceWeb).append("_").append(uploader).append("_").append(originalTitle).append("_").append(sourceType).append("_").append(ripper).append(".").append(FileUtils.getExtension(mkvFile));
-        mkvFile.renameTo(new File(mkvFile.getParent(), new String(builder)));
-
-        // Delete MD5 hash file
-        File md5HashFile = new File(mediaInfoFile.getParent(), containerName + "." + MD5_FILE_EXTENSION);
-        if (md5HashFile.exists()) {
-            if (md5HashFile.delete()) {
-                System.out.println(md5HashFile.getAbsolutePath() + " successfully deleted");
-            } else {
-                System.err.println(md5HashFile.getAbsolutePath() + " could not be deleted");
-                return false;
-            }
-        } else {
-            System.out.println("MD5 hash file not found: " + md5HashFile.getAbsolutePath());
+            return null;
         }
 
-        // Delete media info file
-        if (mediaInfoFile.delete()) {
-            System.out.println(mediaInfoFile.getAbsolutePath() + " successfully deleted");
-        } else {
-            System.err.println(mediaInfoFile.getAbsolutePath() + " could not be deleted");
-            return false;
-        }
+        return containerName + "_" + toNameField(sourceWeb) + "_" + toNameField(uploader) + "_" + toNameField(originalTitle)
+               + "_" + toNameField(sourceType) + "_" + toNameField(ripper);
+    }
 
-        return true;
+    /**
+     * Encodes a release field to be part of a media file name, where
+     * underscores separate the fields and so are written as double dashes.
+     */
+    static String toNameField(String value) {
+        return value.replace("_", "--");
     }
 
     /**
      * Checks if a media file is already cataloged.
+     * <p>
+     * NOTE: The catalogue index is checked first. Media files catalogued before
+     * the catalogue index existed are recognised by their media info file and
+     * added to the catalogue index. In incremental mode, media files modified
+     * since they were catalogued are not considered as cataloged. Otherwise,
+     * they are, but their index entry is left as is, so that a later
+     * incremental run still finds them modified.
      *
      * @param mediaFile the file to be checked
-     * @param infoFiles the media info files corresponding to media files which
-     *                  are already cataloged
+     * @param infoNames the names (without extension) of the media info files
+     *                  corresponding to media files which are already cataloged
      * @return <code>true</code> if the given media file is already cataloged,
      *         <code>false</code> otherwise
      */
-    private boolean isCataloged(File mediaFile, File[] infoFiles) {
-        String mediaName = FileUtils.getNameWithoutExtension(mediaFile);
-        String infoName;
-        for (File infoFile : infoFiles) {
-            infoName = FileUtils.getNameWithoutExtension(infoFile);
-            if (infoName.equals(mediaName)) {
+    private boolean isCataloged(File mediaFile, Set<String> infoNames) {
+        CatalogueIndex index = getIndex(mediaFile);
+        CatalogueIndex.Entry entry = (index == null) ? null : index.get(mediaFile);
+        if (entry != null && entry.getState() == CatalogueIndex.State.CATALOGUED) {
+            if (entry.matches(mediaFile)) {
                 return true;
+            } else if (incrementalModeEnabled) {
+                return false; // Modified since it was catalogued
             }
         }
 
-        return false;
+        if (!infoNames.contains(FileUtils.getNameWithoutExtension(mediaFile))) {
+            return false;
+        }
+        if (index != null && entry == null) { // A stale entry is kept for a later incremental run
+            updateIndex(index, mediaFile, null, null);
+        }
+        return true;
+    }
+
+    private boolean isCataloged(File mediaFile) {
+        Set<String> infoNames = new HashSet<>();
+        String mediaName = FileUtils.getNameWithoutExtension(mediaFile);
+        if (new File(mediaFile.getParentFile(), mediaName + "." + MEDIAINFO_FILE_EXTENSION).exists()) {
+            infoNames.add(mediaName);
+        }
+        return isCataloged(mediaFile, infoNames);
+    }
+
+    private static void updateIndex(CatalogueIndex index, File mediaFile, byte[] digest, String uniqueId) {
+        try {
+            index.putCatalogued(mediaFile, digest, uniqueId);
+        } catch (IOException ex) {
+            System.out.println("Catalogue index could not be updated: " + ex.getMessage());
+        }
     }
 
     private void saveMediaHashFile(File mediaFile, File infoFile) throws IOException {
@@ -447,14 +976,122 @@ public class Cataloguer {
         generator.writeTo(outputFile);
     }
 
+    /**
+     * Writes a MD5 hash file using the already calculated digest of the media
+     * file, so it has not to be read again.
+     * <p>
+     * NOTE: Md5FileGenerator can only hash the files itself, so it just hashes
+     * the small media info file, and the media file line is then made from the
+     * media info file line in the same format. If that line is not found, the
+     * generator hashes both files instead.
+     *
+     * @param mediaFile the media file
+     * @param mediaDigest the MD5 digest of the media file
+     * @param infoFile the media info file
+     * @throws IOException if the media info file can't be read or the MD5
+     *         hash file can't be written
+     */
+    private void saveMediaHashFile(File mediaFile, byte[] mediaDigest, File infoFile) throws IOException {
+        Md5FileGenerator generator = new Md5FileGenerator(infoFile);
+        generator.setApplicationName(VersionInfo.getApplicationSuiteFullName());
+        File outputFile = new File(mediaFile.getParentFile(), FileUtils.getNameWithoutExtension(mediaFile) + "." + MD5_FILE_EXTENSION);
+        generator.writeTo(outputFile);
+
+        // Every byte is a single ISO-8859-1 character, so the generator encoding is kept as is
+        String content = new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.ISO_8859_1);
+        String newContent = addMediaFileLine(content, FileDigester.toHexString(FileDigester.digest(infoFile)), infoFile,
+                                             FileDigester.toHexString(mediaDigest), mediaFile);
+        if (newContent == null) {
+            System.out.println("Unknown MD5 hash file format, so " + mediaFile.getName() + " is hashed again");
+            saveMediaHashFile(mediaFile, infoFile);
+        } else {
+            Files.write(outputFile.toPath(), newContent.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * Adds the line of a media file to the contents of a MD5 hash file listing
+     * its media info file, right before the media info file line, as
+     * Md5FileGenerator lists them.
+     *
+     * @param content the MD5 hash file contents
+     * @param infoHash the MD5 hash of the media info file, in hexadecimal
+     * @param infoFile the media info file, named as the media file
+     * @param mediaHash the MD5 hash of the media file, in hexadecimal
+     * @param mediaFile the media file
+     * @return the new MD5 hash file contents, or <code>null</code> if the
+     *         media info file line is not found
+     */
+    static String addMediaFileLine(String content, String infoHash, File infoFile, String mediaHash, File mediaFile) {
+        String infoSuffix = "." + MEDIAINFO_FILE_EXTENSION;
+        String mediaSuffix = mediaFile.getName().substring(FileUtils.getNameWithoutExtension(mediaFile).length());
+        if (!infoFile.getName().equals(FileUtils.getNameWithoutExtension(mediaFile) + infoSuffix)) {
+            return null;
+        }
+        boolean isUpperCase = content.indexOf(infoHash.toLowerCase(Locale.ROOT)) < 0;
+        String hashInContent = isUpperCase ? infoHash.toUpperCase(Locale.ROOT) : infoHash.toLowerCase(Locale.ROOT);
+        int hashIndex = content.indexOf(hashInContent);
+        if (hashIndex < 0) {
+            return null;
+        }
+        int lineStart = content.lastIndexOf('\n', hashIndex) + 1;
+        int lineEnd = content.indexOf('\n', hashIndex);
+        lineEnd = (lineEnd < 0) ? content.length() : lineEnd + 1;
+        String infoLine = content.substring(lineStart, lineEnd);
+        int suffixIndex = infoLine.lastIndexOf(infoSuffix);
+        if (suffixIndex < 0) {
+            return null;
+        }
+
+        String mediaLine = infoLine.substring(0, suffixIndex) + mediaSuffix + infoLine.substring(suffixIndex + infoSuffix.length());
+        mediaLine = mediaLine.replace(hashInContent, isUpperCase ? mediaHash.toUpperCase(Locale.ROOT) : mediaHash.toLowerCase(Locale.ROOT));
+        if (!mediaLine.endsWith("\n")) { // The media info file line is the last one
+            mediaLine += content.contains("\r\n") ? "\r\n" : "\n";
+        }
+        return content.substring(0, lineStart) + mediaLine + content.substring(lineStart);
+    }
+
+    private static byte[] getDigest(FutureTask<byte[]> digestTask) throws IOException {
+        try {
+            return digestTask.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("MD5 hash could not be calculated: " + ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("MD5 hash calculation was interrupted");
+        }
+    }
+
     static void showUsage() {
         System.out.println("Usage:");
-        System.out.println("    Cataloguer [-i | -r] <movies_dir>");
+        System.out.println("    Cataloguer [-i | -r | -p] [-u] [-w] [-t <count>] <movies_dir>");
         System.out.println("");
         System.out.println("Options:");
         System.out.println("    -i, --info     Generates only the media info file, without MD5 hash (Faster).");
         System.out.println("    -r, --reverse  Rebuilds the original media file name from the media info file.");
         System.out.println("                   Also, deletes the media info file and the MD5 hash file, if any.");
+        System.out.println("    -p, --pipeline Calculates the MD5 hash while MediaInfo is analysing the media file.");
+        System.out.println("    -u, --update   Catalogs again the media files modified since they were catalogued.");
+        System.out.println("    -w, --watch    Keeps running, cataloguing new media files as soon as they are complete.");
+        System.out.println("    -t, --threads  Number of media files processed at the same time (1 by default).");
+    }
+
+    /**
+     * Parses the worker count given as a command line argument.
+     *
+     * @param value the command line argument
+     * @return the worker count, or -1 if the given value is not valid
+     */
+    static int parseWorkerCount(String value) {
+        try {
+            int count = Integer.parseInt(value);
+            return count > 0 ? count : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
     }
 
     /**
@@ -469,6 +1106,10 @@ public class Cataloguer {
 
         boolean isMediaInfoOnlyEnabled = false;
         boolean isReverseMode = false;
+        boolean isPipelinedHashingEnabled = false;
+        boolean isIncrementalMode = false;
+        boolean isWatchMode = false;
+        int workerCount = 1;
 
         // Parse argument list
         for (int i = 0; i < args.length - 1; i++) {
@@ -481,6 +1122,26 @@ public class Cataloguer {
                 case "--reverse":
                     isReverseMode = true;
                     break;
+                case "-p":
+                case "--pipeline":
+                    isPipelinedHashingEnabled = true;
+                    break;
+                case "-u":
+                case "--update":
+                    isIncrementalMode = true;
+                    break;
+                case "-w":
+                case "--watch":
+                    isWatchMode = true;
+                    break;
+                case "-t":
+                case "--threads":
+                    workerCount = i + 1 < args.length - 1 ? parseWorkerCount(args[++i]) : -1;
+                    if (workerCount < 1) {
+                        showUsage();
+                        System.exit(0);
+                    }
+                    break;
                 default:
                     showUsage();
                     System.exit(0);
@@ -492,6 +1153,11 @@ public class Cataloguer {
             showUsage();
             System.exit(0);
         }
+        if (isReverseMode && isWatchMode) {
+            System.out.println("Reverse mode and watch mode can't be used together.");
+            showUsage();
+            System.exit(0);
+        }
 
         // Parse the media directory
         File moviesDir = new File(args[args.length - 1]);
@@ -501,6 +1167,13 @@ public class Cataloguer {
         } else if (isMediaInfoOnlyEnabled) {
             cataloguer.setMediaInfoOnlyEnabled(true);
         }
-        cataloguer.start();
+        cataloguer.setPipelinedHashingEnabled(isPipelinedHashingEnabled);
+        cataloguer.setIncrementalModeEnabled(isIncrementalMode);
+        cataloguer.setWorkerCount(workerCount);
+        if (isWatchMode) {
+            cataloguer.watch();
+        } else {
+            cataloguer.start();
+        }
     }
 }
@@ -0,0 +1,87 @@
+package lan.vandiemens.media.cataloguer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+
+/**
+ * Calculates the MD5 digest of a file using large sequential reads through a
+ * file channel and a direct buffer, so even huge media containers are read at
+ * full disk speed.
+ * <p>
+ * NOTE: Being a {@link Callable}, the digest can be calculated on a separate
+ * thread while the same file is being analysed by MediaInfo.
+ *
+ * @author Victor
+ */
+public class FileDigester implements Callable<byte[]> {
+
+    /**
+     * Size of the direct buffer used for each sequential read.
+     */
+    public static final int BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final File file;
+
+    public FileDigester(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public byte[] call() throws IOException {
+        return digest(file);
+    }
+
+    /**
+     * Calculates the MD5 digest of the given file.
+     *
+     * @param file the file to be read
+     * @return the MD5 digest of the file contents
+     * @throws IOException if the file can't be read
+     */
+    public static byte[] digest(File file) throws IOException {
+        MessageDigest md5 = createMd5Digest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                md5.update(buffer);
+                buffer.clear();
+            }
+        }
+        return md5.digest();
+    }
+
+    /**
+     * Gets the hexadecimal representation of a digest, as used in MD5 files.
+     *
+     * @param digest the digest to be converted
+     * @return the digest in lower case hexadecimal digits
+     */
+    public static String toHexString(byte[] digest) {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            chars[2 * i + 1] = HEX_DIGITS[digest[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static MessageDigest createMd5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform implementation must support MD5
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package lan.vandiemens.media.cataloguer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import lan.vandiemens.util.file.DirectoryFilter;
 
 /**
@@ -8,24 +12,89 @@ import lan.vandiemens.util.file.DirectoryFilter;
  */
 public class MultiFolderCataloguer {
 
-    private static void catalogFolder(File folder, boolean isMediaInfoOnlyEnabled, boolean isReverseMode) {
-        if (folder.isDirectory()) {
+    /**
+     * Scans a folder and all its subfolders looking for media files to be
+     * catalogued. Subfolders are scanned in parallel, but the resulting lists
+     * keep the depth-first order: subfolder media files first, then the ones
+     * located in the folder itself.
+     */
+    private static class FolderScanTask extends RecursiveAction {
+
+        private final Cataloguer cataloguer;
+        private final File folder;
+        private final List<File> pendingFiles = new ArrayList<>();
+        private final List<File> skippedFiles = new ArrayList<>();
+        private int scannedFolderCount = 0;
+
+        FolderScanTask(Cataloguer cataloguer, File folder) {
+            this.cataloguer = cataloguer;
+            this.folder = folder;
+        }
+
+        @Override
+        protected void compute() {
             File[] subfolders = folder.listFiles(new DirectoryFilter());
-            for (File subfolder : subfolders) {
-                catalogFolder(subfolder, isMediaInfoOnlyEnabled, isReverseMode);
+            List<FolderScanTask> subtasks = new ArrayList<>();
+            if (subfolders != null) {
+                for (File subfolder : subfolders) {
+                    subtasks.add(new FolderScanTask(cataloguer, subfolder));
+                }
             }
+            invokeAll(subtasks);
 
-            // Do the actual cataloguing process
-            Cataloguer cataloguer = new Cataloguer(folder);
-            if (isReverseMode) {
-                cataloguer.setReverseModeEnabled(true);
-            } else if (isMediaInfoOnlyEnabled) {
-                cataloguer.setMediaInfoOnlyEnabled(true);
+            for (FolderScanTask subtask : subtasks) {
+                pendingFiles.addAll(subtask.pendingFiles);
+                skippedFiles.addAll(subtask.skippedFiles);
+                scannedFolderCount += subtask.scannedFolderCount;
             }
-            cataloguer.start();
+            cataloguer.scanDirectory(folder, pendingFiles, skippedFiles);
+            scannedFolderCount++;
         }
     }
 
+    /**
+     * Catalogs the media files located in the given folders and all their
+     * subfolders.
+     * <p>
+     * NOTE: All folders are scanned first, so every media file pending to be
+     * catalogued is put in a single queue shared by all the cataloguer
+     * workers, no matter which folder it comes from.
+     *
+     * @param folders the root folders to be catalogued
+     * @param cataloguer the cataloguer holding the chosen options
+     */
+    private static void catalogFolders(List<File> folders, Cataloguer cataloguer) {
+        List<File> pendingFiles = new ArrayList<>();
+        List<File> skippedFiles = new ArrayList<>();
+        int scannedFolderCount = 0;
+
+        ForkJoinPool scannerPool = new ForkJoinPool();
+        try {
+            for (File folder : folders) {
+                if (folder.isDirectory()) {
+                    cataloguer.openIndex(folder);
+                    FolderScanTask task = new FolderScanTask(cataloguer, folder);
+                    scannerPool.invoke(task);
+                    pendingFiles.addAll(task.pendingFiles);
+                    skippedFiles.addAll(task.skippedFiles);
+                    scannedFolderCount += task.scannedFolderCount;
+                } else {
+                    System.out.println("Not a directory: " + folder);
+                }
+            }
+        } finally {
+            scannerPool.shutdown();
+        }
+
+        for (File skippedFile : skippedFiles) {
+            System.out.println("Skipped > " + skippedFile.getAbsolutePath());
+        }
+        System.out.println(scannedFolderCount + " folders scanned, " + pendingFiles.size() + " media files pending\n");
+
+        cataloguer.catalog(pendingFiles);
+        cataloguer.closeIndexes();
+    }
+
     public static void main(String[] args) {
         // Check arguments entered by the user
         if (args.length == 0) {
@@ -35,6 +104,10 @@ public class MultiFolderCataloguer {
 
         boolean isMediaInfoOnlyEnabled = false;
         boolean isReverseMode = false;
+        boolean isPipelinedHashingEnabled = false;
+        boolean isIncrementalMode = false;
+        boolean isWatchMode = false;
+        int workerCount = 1;
 
         // Parse argument list
         int argi = 0;
@@ -49,6 +122,26 @@ public class MultiFolderCataloguer {
                 case "--reverse":
                     isReverseMode = true;
                     break;
+                case "-p":
+                case "--pipeline":
+                    isPipelinedHashingEnabled = true;
+                    break;
+                case "-u":
+                case "--update":
+                    isIncrementalMode = true;
+                    break;
+                case "-w":
+                case "--watch":
+                    isWatchMode = true;
+                    break;
+                case "-t":
+                case "--threads":
+                    workerCount = argi + 1 < args.length ? Cataloguer.parseWorkerCount(args[++argi]) : -1;
+                    if (workerCount < 1) {
+                        Cataloguer.showUsage();
+                        System.exit(0);
+                    }
+                    break;
                 default:
                     break OUTER;
             }
@@ -58,6 +151,11 @@ public class MultiFolderCataloguer {
             Cataloguer.showUsage();
             System.exit(0);
         }
+        if (isReverseMode && isWatchMode) {
+            System.out.println("Reverse mode and watch mode can't be used together.");
+            Cataloguer.showUsage();
+            System.exit(0);
+        }
 
         // Check if there is at least one directory
         if (argi == args.length) {
@@ -65,9 +163,32 @@ public class MultiFolderCataloguer {
             System.exit(0);
         }
 
-        // Recursively catalog each directory
+        // Check if MediaInfo is installed on this system (only once per run)
+        if (Cataloguer.isMediaInfoAvailable()) {
+            System.out.println("MediaInfo found\n");
+        } else {
+            System.err.println("MediaInfo not found!");
+            System.exit(0);
+        }
+
+        Cataloguer cataloguer = new Cataloguer();
+        if (isReverseMode) {
+            cataloguer.setReverseModeEnabled(true);
+        } else if (isMediaInfoOnlyEnabled) {
+            cataloguer.setMediaInfoOnlyEnabled(true);
+        }
+        cataloguer.setPipelinedHashingEnabled(isPipelinedHashingEnabled);
+        cataloguer.setIncrementalModeEnabled(isIncrementalMode);
+        cataloguer.setWorkerCount(workerCount);
+
+        // Recursively catalog all the given directories at once
+        List<File> folders = new ArrayList<>();
         for (; argi < args.length; argi++) {
-            catalogFolder(new File(args[argi]), isMediaInfoOnlyEnabled, isReverseMode);
+            folders.add(new File(args[argi]));
+        }
+        catalogFolders(folders, cataloguer);
+        if (isWatchMode) {
+            cataloguer.watchFolders(folders);
         }
     }
 }
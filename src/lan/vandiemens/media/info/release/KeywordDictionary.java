@@ -0,0 +1,162 @@
+package lan.vandiemens.media.info.release;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Case-insensitive dictionary of the known release keywords, such as scene
+ * groups, tracker IDs, uploaders or extra tags, each one tagged with the tag
+ * types it may be.
+ * <p>
+ * The keywords are kept in a trie, so looking up a tag takes a time
+ * proportional to its length, no matter how many keywords the dictionary
+ * holds.
+ * <p>
+ * NOTE: The default dictionary is loaded from the <code>keywords.txt</code>
+ * resource, and from the file given by the
+ * <code>mediamanager.keywords.file</code> system property, if any. Both files
+ * list one keyword per line under a <code>[TAG_TYPE]</code> section header,
+ * where lines starting with <code>#</code> are comments.
+ *
+ * @author vmurcia
+ */
+class KeywordDictionary {
+
+    public static final String KEYWORDS_FILE_PROPERTY = "mediamanager.keywords.file";
+    private static final String KEYWORDS_RESOURCE = "keywords.txt";
+    private static KeywordDictionary defaultDictionary = null;
+    private final Node root = new Node();
+    private int size = 0;
+    private volatile boolean isInUse = false;
+
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<>();
+        private int categories = 0;
+    }
+
+    /**
+     * Gets the dictionary shared by the whole application.
+     *
+     * @return the default dictionary
+     */
+    public static synchronized KeywordDictionary getDefault() {
+        if (defaultDictionary == null) {
+            KeywordDictionary dictionary = new KeywordDictionary();
+            try (InputStream input = KeywordDictionary.class.getResourceAsStream(KEYWORDS_RESOURCE)) {
+                if (input == null) {
+                    throw new IllegalStateException("Keyword resource not found: " + KEYWORDS_RESOURCE);
+                }
+                dictionary.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to read the keyword resource", ex);
+            }
+            String path = System.getProperty(KEYWORDS_FILE_PROPERTY);
+            if (path != null) {
+                try (InputStream input = new FileInputStream(new File(path))) {
+                    dictionary.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+                } catch (IOException ex) {
+                    System.out.println("Unable to read the keyword file " + path + ": " + ex.getMessage());
+                }
+            }
+            defaultDictionary = dictionary;
+        }
+        return defaultDictionary;
+    }
+
+    /**
+     * Adds a keyword to this dictionary.
+     *
+     * @param keyword the keyword, whose case is ignored
+     * @param tagType one of the tag types of the keyword
+     * @throws IllegalStateException if the dictionary has already been used
+     */
+    public void add(String keyword, TagType tagType) {
+        if (isInUse) {
+            throw new IllegalStateException("Keywords can't be added once the dictionary is in use");
+        }
+        if (keyword.isEmpty()) {
+            throw new IllegalArgumentException("Empty keyword");
+        }
+        Node node = root;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = Character.toLowerCase(keyword.charAt(i));
+            Node child = node.children.get(c);
+            if (child == null) {
+                child = new Node();
+                node.children.put(c, child);
+            }
+            node = child;
+        }
+        if (node.categories == 0) {
+            size++;
+        }
+        node.categories |= ReleaseTokenizer.category(tagType);
+    }
+
+    /**
+     * Adds the keywords listed by the given reader, one per line under a
+     * <code>[TAG_TYPE]</code> section header.
+     *
+     * @param reader the keyword list
+     * @throws IOException if the list can't be read or has an unknown section
+     */
+    public void load(Reader reader) throws IOException {
+        BufferedReader lineReader = new BufferedReader(reader);
+        TagType tagType = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = lineReader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                try {
+                    tagType = TagType.valueOf(line.substring(1, line.length() - 1).trim());
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException("Unknown tag type at line " + lineNumber + ": " + line);
+                }
+            } else if (tagType == null) {
+                throw new IOException("Keyword without tag type at line " + lineNumber + ": " + line);
+            } else {
+                add(line, tagType);
+            }
+        }
+    }
+
+    /**
+     * @return the number of different keywords
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up a whole tag.
+     *
+     * @param value the tag value
+     * @return the tag types of the keyword, as a bit mask made with
+     *         <code>ReleaseTokenizer.category(TagType)</code>, or 0 if the
+     *         value is not a known keyword
+     */
+    public int lookup(String value) {
+        if (!isInUse) {
+            isInUse = true;
+        }
+        Node node = root;
+        for (int i = 0; i < value.length() && node != null; i++) {
+            node = node.children.get(Character.toLowerCase(value.charAt(i)));
+        }
+        return node == null ? 0 : node.categories;
+    }
+}
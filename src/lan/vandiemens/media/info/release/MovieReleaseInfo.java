@@ -32,6 +32,14 @@ public class MovieReleaseInfo extends ReleaseInfo {
         this.type = type;
     }
 
+    @Override
+    public MovieReleaseInfo copy() {
+        MovieReleaseInfo copy = new MovieReleaseInfo(title);
+        copyFieldsTo(copy);
+        copy.type = type;
+        return copy;
+    }
+
     @Override
     public boolean hasCompleteBasicInfo() {
         return hasKnownReleaseDate();
@@ -173,4 +173,30 @@ public class ReleaseInfo {
     public boolean hasCompleteBasicInfo() {
         return true; // Title suffices for generic video
     }
+
+    /**
+     * Creates an independent copy of this release information, so that it can
+     * be modified without affecting the original.
+     *
+     * @return the copy
+     */
+    public ReleaseInfo copy() {
+        ReleaseInfo copy = new ReleaseInfo(title);
+        copyFieldsTo(copy);
+        return copy;
+    }
+
+    protected void copyFieldsTo(ReleaseInfo copy) {
+        copy.genre = genre;
+        copy.title = title;
+        copy.originalTitle = originalTitle;
+        copy.ripper = ripper;
+        copy.sceneGroup = sceneGroup;
+        copy.uploader = uploader;
+        copy.videoSource = videoSource;
+        copy.videoQuality = videoQuality;
+        copy.codecDescription = codecDescription;
+        copy.webSource = webSource;
+        copy.year = year;
+    }
 }
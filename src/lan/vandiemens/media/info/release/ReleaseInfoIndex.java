@@ -0,0 +1,67 @@
+package lan.vandiemens.media.info.release;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of items, such as media files, by their release information, so that
+ * the items corresponding to another release can be found without comparing
+ * it against every item.
+ * <p>
+ * NOTE: The items are indexed by title, ignoring case the same way
+ * <code>equalsIgnoreCase</code> does, and the items sharing the title are
+ * then checked with <code>equalsBasicInfoIgnoreSceneGroup</code>. Thus, a
+ * release without year, such as a generic video, still finds a TV episode
+ * with the same title.
+ *
+ * @param <T> the type of the indexed items
+ * @author vmurcia
+ */
+public class ReleaseInfoIndex<T> {
+
+    private final Map<String, List<IndexedItem<T>>> itemsByTitle = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private static class IndexedItem<T> {
+
+        private final ReleaseInfo releaseInfo;
+        private final T item;
+
+        IndexedItem(ReleaseInfo releaseInfo, T item) {
+            this.releaseInfo = releaseInfo;
+            this.item = item;
+        }
+    }
+
+    public void put(ReleaseInfo releaseInfo, T item) {
+        List<IndexedItem<T>> sameTitleItems = itemsByTitle.get(releaseInfo.getTitle());
+        if (sameTitleItems == null) {
+            sameTitleItems = new ArrayList<>(1);
+            itemsByTitle.put(releaseInfo.getTitle(), sameTitleItems);
+        }
+        sameTitleItems.add(new IndexedItem<>(releaseInfo, item));
+    }
+
+    /**
+     * Finds the items whose release information has the same basic info as
+     * the given one, ignoring the scene group.
+     *
+     * @param releaseInfo the release information to be looked up
+     * @return the matching items, in the order they were put
+     */
+    public List<T> find(ReleaseInfo releaseInfo) {
+        List<IndexedItem<T>> sameTitleItems = itemsByTitle.get(releaseInfo.getTitle());
+        if (sameTitleItems == null) {
+            return Collections.emptyList();
+        }
+        List<T> matchingItems = new ArrayList<>(1);
+        for (IndexedItem<T> indexedItem : sameTitleItems) {
+            if (releaseInfo.equalsBasicInfoIgnoreSceneGroup(indexedItem.releaseInfo)) {
+                matchingItems.add(indexedItem.item);
+            }
+        }
+        return matchingItems;
+    }
+}
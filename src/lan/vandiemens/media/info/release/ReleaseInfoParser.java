@@ -1,9 +1,11 @@
 package lan.vandiemens.media.info.release;
 
 import java.io.File;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lan.vandiemens.media.analysis.VideoSource;
+import lan.vandiemens.media.cache.LruCache;
 import lan.vandiemens.media.net.Addic7edWebScraper;
 import lan.vandiemens.media.net.MediaInfoProviderException;
 import lan.vandiemens.util.file.FileUtils;
@@ -11,15 +13,29 @@ import lan.vandiemens.util.file.FileUtils;
 /**
  * Simple factory of ReleaseInfo objects. The created objects exact class is
  * based on the media filename given.
+ * <p>
+ * NOTE: As the same filename is usually parsed several times (for a media
+ * container and for each of its subtitle and audio files), the release
+ * information of the most recently parsed filenames is kept in memory, so
+ * that parsing them again, even across watch mode scans, is free. The cache
+ * size can be changed with the <code>mediamanager.release.cache.size</code>
+ * system property, where 0 disables it. Incomplete release information, e.g.
+ * when an episode title lookup failed, is not cached.
  *
  * @author vmurcia
  */
 public class ReleaseInfoParser {
 
-    public static final String[] knownUploaders = {"rockobossman", "Nestai", "Straw", "funebrero", "Tallahassee"};
     public static final Pattern basicTvSeriesPattern = Pattern.compile("(?:[sS](?<season>\\d+)[eE](?<episode>\\d+))|(?:(?<season2>\\d+)x(?<episode2>\\d+))");
+    /**
+     * NOTE: The scene patterns are no longer used for parsing, as they may
+     * backtrack for ages on names with a lot of dots. The equivalent
+     * <code>SceneNameMatcher</code> is used instead.
+     */
     public static final Pattern sceneTvSeriesPattern = Pattern.compile("(?i)^(?<title>(?:[^\\.]+\\.)*(?:[^\\.]+))\\.s(?<season>\\d\\d)e(?<episode>\\d\\d)\\.(?:(?<episodetitle>.+?)\\.)??(?:(?<quality>720p?|1080p?)\\.)?(?:(?<source>bluray|b[dr]rip|bdremux|hddvd|web-dl|hditunes|hdtv|dvdr(?:ip)?)\\.)?(?<codecs>(?:(?:mkv|avc|h\\.?264|x264|xvid|divx|dxva|dts|dts-hd\\.ma\\.5\\.1|dd5\\.1|ac3|aac|aac2\\.0)\\.)*(?:mkv|avc|h\\.?264|x264|xvid|divx|dxva|dts|dts-hd\\.ma\\.5\\.1|dd5\\.1|ac3|aac|aac2\\.0))-(?<scenegroup>\\w+)$");
     public static final Pattern sceneMoviePattern = Pattern.compile("(?i)^(?<title>.+?)\\.(?:(?<year>(?:19|20)\\d\\d)\\.)?(?:(?<extratag>cee|collectors(?:\\.edition)?|dc|ext(?:ended)?(?:\\.cut)?|internal|limited|mgvc|p2p|proper|remastered|repack|retail|revisited|unrated(?:\\.cut)?)\\.)*(?:(?<source>(?:(?:aus|fra|gbr|usa)\\.)?blu-?ray(?:\\.remux)?|(?:(?:aus|fra|gbr|usa)\\.)?hybrid|b[dr]rip|bdremux|hddvd|web-dl|hditunes|hdtv(?:rip)?|dvdr(?:ip)?)\\.)?(?<quality>720p?|1080p?)\\.(?:(?<source2>(?:(?:aus|gbr|usa)\\.)?blu-?ray(?:\\.remux)?|b[dr]rip|bdremux|hddvd|web-dl|hditunes|hdtv(?:rip)?|dvdr(?:ip)?)\\.)?(?<codecs>(?:(?:dual|remux|revisited|mkv|avc|vc-?1|h\\.?264|x264|xvid|divx|dxva|dts(?:hd-|-)?ma|dts(?:-es|-hd\\.?(?:ma|hra)?)?|[57]\\.1|dd\\.?5\\.1|flac|ac3|aac|aac2\\.0|truehd)\\.)*(?:dual|remux|revisited|mkv|avc|vc-?1|h\\.?264|x264|xvid|divx|dxva|dts(?:hd-|-)?ma|dts(?:-es|-hd\\.?(?:ma|hra)?)?|[57]\\.1|dd\\.?5\\.1|flac|ac3|aac|aac2\\.0|truehd))(?:-(?<scenegroup>.+)|\\.(?<scenegroup2>D-Z0N3|FTW-HD)|\\.multisubs)$");
+    public static final String CACHE_SIZE_PROPERTY = "mediamanager.release.cache.size";
+    public static final int DEFAULT_CACHE_SIZE = 1024;
     private static final String COLON_SUBSTITUTE = ";c";
     private static final String ASTERISK_SUBSTITUTE = ";a";
     private static final String QUESTION_MARK_SUBSTITUTE = ";q";
@@ -27,7 +43,7 @@ public class ReleaseInfoParser {
     private static final String LESS_THAN_SUBSTITUTE = ";l";
     private static final String GREATER_THAN_SUBSTITUTE = ";g";
     private static final char SPACE_SUBSTITUTE = '.';
-
+    private static final LruCache<String, ReleaseInfo> cache = createCache();
 
     /**
      * Parses the release information specified in the given filename.
@@ -35,6 +51,34 @@ public class ReleaseInfoParser {
      * @return the release information which has been parsed and organized
      */
     public static ReleaseInfo parse(String filename) {
+        if (cache == null) {
+            return parseUncached(filename);
+        }
+        ReleaseInfo info = cache.get(filename);
+        if (info == null) {
+            info = parseUncached(filename);
+            if (info.hasCompleteBasicInfo()) { // Otherwise, a failed lookup would never be retried
+                cache.put(filename, info);
+            }
+        }
+        return info.copy(); // The cached instance is never handed out, as it is mutable
+    }
+
+    /**
+     * Empties the cache of parsed release information.
+     */
+    public static void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static LruCache<String, ReleaseInfo> createCache() {
+        int size = Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE);
+        return size > 0 ? new LruCache<String, ReleaseInfo>(size) : null;
+    }
+
+    private static ReleaseInfo parseUncached(String filename) {
         System.out.println("Parsing release information...");
         if (hasTvSeriesNamePattern(filename)) {
             return parseAsTvSeries(filename);
@@ -86,14 +130,14 @@ public class ReleaseInfoParser {
 
         // Check if the file name consists of a typical TV series scene pattern
         TvEpisodeReleaseInfo info;
-        Matcher tvSeriesMatcher = sceneTvSeriesPattern.matcher(filename);
-        if (tvSeriesMatcher.matches()) {
+        Map<String, String> tvSeriesGroups = SceneNameMatcher.matchTvSeries(filename);
+        if (tvSeriesGroups != null) {
             System.out.println("Parsing using the typical scene naming pattern...");
-            String title = replaceSubstitutesForSpecialTitleCharacters(tvSeriesMatcher.group("title"));
-            int season = Integer.parseInt(tvSeriesMatcher.group("season"));
-            int episode = Integer.parseInt(tvSeriesMatcher.group("episode"));
+            String title = replaceSubstitutesForSpecialTitleCharacters(tvSeriesGroups.get("title"));
+            int season = Integer.parseInt(tvSeriesGroups.get("season"));
+            int episode = Integer.parseInt(tvSeriesGroups.get("episode"));
             info = new TvEpisodeReleaseInfo(title, season, episode);
-            String episodeTitle = tvSeriesMatcher.group("episodetitle");
+            String episodeTitle = tvSeriesGroups.get("episodetitle");
             if (episodeTitle != null) {
                 info.setEpisodeTitle(replaceSubstitutesForSpecialTitleCharacters(episodeTitle));
             } else {
@@ -106,13 +150,13 @@ public class ReleaseInfoParser {
                     System.out.println(ex.getMessage());
                 }
             }
-            info.setVideoQuality(tvSeriesMatcher.group("quality"));
-            String source = tvSeriesMatcher.group("source");
+            info.setVideoQuality(tvSeriesGroups.get("quality"));
+            String source = tvSeriesGroups.get("source");
             if (source != null) {
                 info.setVideoSource(getCommonEquivalentSourceName(source));
             }
-            info.setCodecDescription(tvSeriesMatcher.group("codecs"));
-            info.setSceneGroup(tvSeriesMatcher.group("scenegroup"));
+            info.setCodecDescription(tvSeriesGroups.get("codecs"));
+            info.setSceneGroup(tvSeriesGroups.get("scenegroup"));
         } else {
             // TODO Add additional filename parsing patterns
             System.out.println("Parsing using the generic naming pattern...");
@@ -136,39 +180,39 @@ public class ReleaseInfoParser {
 
         // Check if the file name consists of a typical movie scene pattern
         MovieReleaseInfo info;
-        Matcher movieMatcher = sceneMoviePattern.matcher(filename);
-        if (movieMatcher.matches()) {
+        Map<String, String> movieGroups = SceneNameMatcher.matchMovie(filename);
+        if (movieGroups != null) {
             System.out.println("Parsing using the typical scene naming pattern...");
-            String title = replaceSubstitutesForSpecialTitleCharacters(movieMatcher.group("title"));
+            String title = replaceSubstitutesForSpecialTitleCharacters(movieGroups.get("title"));
             info = new MovieReleaseInfo(title);
-            String year = movieMatcher.group("year");
+            String year = movieGroups.get("year");
             if (year != null) {
                 info.setYear(Integer.parseInt(year));
             } else {
                 System.out.println("No year info");
             }
-            String type = movieMatcher.group("extratag");
+            String type = movieGroups.get("extratag");
             if (type != null) {
                 info.setType(ReleaseType.parse(type));
             }
 
-            info.setVideoQuality(movieMatcher.group("quality"));
-            String source = movieMatcher.group("source");
+            info.setVideoQuality(movieGroups.get("quality"));
+            String source = movieGroups.get("source");
             if (source != null) {
                 info.setVideoSource(getCommonEquivalentSourceName(source));
             } else {
-                source = movieMatcher.group("source2");
+                source = movieGroups.get("source2");
                 if (source != null) {
                     info.setVideoSource(getCommonEquivalentSourceName(source));
                 }
             }
-            info.setCodecDescription(movieMatcher.group("codecs"));
+            info.setCodecDescription(movieGroups.get("codecs"));
 
-            String sceneGroup = movieMatcher.group("scenegroup");
+            String sceneGroup = movieGroups.get("scenegroup");
             if (sceneGroup != null) {
                 info.setSceneGroup(sceneGroup);
             } else {
-                sceneGroup = movieMatcher.group("scenegroup2");
+                sceneGroup = movieGroups.get("scenegroup2");
                 if (sceneGroup != null) {
                     info.setSceneGroup(sceneGroup);
                 }
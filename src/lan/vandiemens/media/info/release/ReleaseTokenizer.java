@@ -1,8 +1,12 @@
 package lan.vandiemens.media.info.release;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lan.vandiemens.media.analysis.Codec;
@@ -13,6 +17,11 @@ import org.apache.commons.validator.routines.DomainValidator;
 
 
 /**
+ * Splits a release name into tags and delimiters and identifies them.
+ * <p>
+ * NOTE: A tokenizer keeps the state of the release name being processed, so
+ * it can be reused for any number of names, but it must not be shared between
+ * threads. Use <code>processAll</code> to process many names at once.
  *
  * @author vmurcia
  */
@@ -21,66 +30,121 @@ public class ReleaseTokenizer {
     private static final String delimiterRegex = "[ \\.\\-_\\(\\)\\[\\]]+";
     private static final String nonDelimiterRegex = "[^ \\.\\-_\\(\\)\\[\\]]+";
     private static final String movieYearRegex = "^(?:19|20)\\d\\d$";
-    private static final String[] bluraySceneGroups = {"AMIABLE, BLOW"};
-    private static final String[] hditunesSceneGroups = {"CtrlHD", "ECI"};
-    private static final String[] hdtvSceneGroups = {"Orenji", "IMMERSE", "DIMENSION"};
-    private static final String[] sdtvSceneGroups = {"ASAP", "FQM", "LOL", "P0W4", "mSD"};
-    private static final String[] webSourceIds = {"TRCKHD", "PublicHD", "eztv"};
-    private static final String[] extraInfoFields = {"Dual", "MKV", "Dubbed", "Subs", "Subtitled"};
-    private static ArrayList<ReleaseToken> releaseTokens = null;
-    private static String releaseName;
-    private static int safeZoneStartIndex;
-
-    public static ReleaseInfo process(String filename) {
+    private static final Pattern tokenPattern = Pattern.compile("(" + nonDelimiterRegex + ")|" + delimiterRegex);
+    private static final Pattern movieYearPattern = Pattern.compile(movieYearRegex);
+    /**
+     * Known scene groups, tracker IDs, extra tags, etc.
+     */
+    private static final KeywordDictionary keywords = KeywordDictionary.getDefault();
+    /**
+     * Tag category of the first part of a multi-token codec, such as "DD5" in
+     * "DD5.1", beyond the bits used by the tag types.
+     */
+    static final int PARTIAL_CODEC_CATEGORY = 1 << 31;
+    private static final int BATCH_THRESHOLD = 64;
+    private ArrayList<ReleaseToken> releaseTokens = null;
+    private String releaseName;
+    private int safeZoneStartIndex;
+
+    public ReleaseInfo process(String filename) {
         tokenize(filename);
         confirmSureTokens();
         parseRemainingCandidates();
         return null;
     }
 
+    /**
+     * Processes the given release names in parallel, each worker thread using
+     * its own tokenizer.
+     * <p>
+     * NOTE: The release tokens are returned rather than the release info, as
+     * the remaining candidate tokens are not parsed into release info yet.
+     *
+     * @param filenames the release names to be processed
+     * @return the release tokens of every name after processing it, in the
+     *         same order
+     */
+    static List<ReleaseToken[]> processAll(Collection<String> filenames) {
+        String[] names = filenames.toArray(new String[filenames.size()]);
+        ReleaseToken[][] results = new ReleaseToken[names.length][];
+        if (names.length <= BATCH_THRESHOLD) {
+            new ProcessTask(names, results, 0, names.length).compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(new ProcessTask(names, results, 0, names.length));
+        }
+        return Arrays.asList(results);
+    }
+
     /**
      * NOTE: For JUnit testing purposes.
      *
      * @return the release tokens after the processing previously done
      */
-    static ReleaseToken[] getReleaseTokens() {
+    ReleaseToken[] getReleaseTokens() {
         return releaseTokens.toArray(new ReleaseToken[releaseTokens.size()]);
     }
 
-    static void tokenize(String filename) {
+    void tokenize(String filename) {
         releaseName = filename;
-        releaseTokens = new ArrayList<> ();
-        addCandidateTags();
-        addCandidateDelimiters();
+        releaseTokens = new ArrayList<>();
+        Matcher matcher = tokenPattern.matcher(releaseName);
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                releaseTokens.add(new Tag(matcher.group(), matcher.start(), classify(matcher.group())));
+            } else {
+                releaseTokens.add(new Delimiter(matcher.group(), matcher.start()));
+            }
+        }
         safeZoneStartIndex = releaseTokens.size();
     }
 
-    private static void addCandidateTags() {
-        Matcher matcher = Pattern.compile(nonDelimiterRegex).matcher(releaseName);
-        boolean needsOrdering = !releaseTokens.isEmpty();
-        while (matcher.find()) {
-            releaseTokens.add(new Tag(matcher.group(), matcher.start()));
+    /**
+     * Finds every tag type the given tag value could be, so that each
+     * dictionary and pattern is checked only once per tag.
+     * <p>
+     * NOTE: For benchmarking purposes as well.
+     *
+     * @param value the tag value
+     * @return the tag categories, as a bit mask made with {@link #category(TagType)}
+     *         and {@link #PARTIAL_CODEC_CATEGORY}
+     */
+    static int classify(String value) {
+        int categories = keywords.lookup(value);
+        if (VideoMode.parse(value) != VideoMode.UNKNOWN) {
+            categories |= category(TagType.VIDEO_MODE);
         }
-        if (needsOrdering) {
-            Collections.sort(releaseTokens);
+        if (VideoSource.parse(value) != VideoSource.UNKNOWN) {
+            categories |= category(TagType.VIDEO_SOURCE);
         }
-    }
-
-    private static void addCandidateDelimiters() {
-        Matcher matcher = Pattern.compile(delimiterRegex).matcher(releaseName);
-        boolean needsOrdering = !releaseTokens.isEmpty();
-        while (matcher.find()) {
-            releaseTokens.add(new Delimiter(matcher.group(), matcher.start()));
+        if (isKnownCodec(value)) {
+            categories |= category(TagType.CODEC);
+        }
+        if (isPartialCodecName(value)) {
+            categories |= PARTIAL_CODEC_CATEGORY;
+        }
+        if (isReleaseType(value)) {
+            categories |= category(TagType.RELEASE_TYPE);
+        }
+        if (movieYearPattern.matcher(value).find()) {
+            categories |= category(TagType.YEAR);
+        }
+        if (Language.parseLanguage(value) != Language.UNDEFINED) {
+            categories |= category(TagType.LANGUAGE);
         }
-        if (needsOrdering) {
-            Collections.sort(releaseTokens);
+        if (ReleaseInfoParser.basicTvSeriesPattern.matcher(value).find()) {
+            categories |= category(TagType.EPISODE_NUMBER);
         }
+        return categories;
+    }
+
+    static int category(TagType tagType) {
+        return 1 << tagType.ordinal();
     }
 
     /**
      * Sets tokens which can be unmistakably identified as final.
      */
-    static void confirmSureTokens() {
+    void confirmSureTokens() {
         confirmSureTags();
         confirmSureDelimiters();
     }
@@ -90,7 +154,7 @@ public class ReleaseTokenizer {
      * <p>
      * Pre-condition: tags and delimiters are interspersed.
      */
-    private static void confirmSureDelimiters() {
+    private void confirmSureDelimiters() {
         if (releaseTokens.size() < 3) {
             return;
         }
@@ -129,88 +193,64 @@ public class ReleaseTokenizer {
 
     /**
      * Sets candidate tags as definitive if they are clearly identifiable tags.
+     * <p>
+     * NOTE: Consecutive steps which neither merge tokens nor depend on the
+     * safe zone being updated are done in a single pass, each tag getting the
+     * first matching type in the given order.
      */
-    private static void confirmSureTags() {
+    private void confirmSureTags() {
         // The confirmation order is important!
-        confirmVideoModeTags();
-        confirmVideoSourceTags();
-        confirmCodecTags();
+        confirmTechnicalTags();
+        confirmCompoundCodecTags();
         confirmSceneGroupTags();
         confirmWebSourceTags();
         confirmTrackerIdTags(); // Must go after web source confirmation to avoid overlapping
-        confirmReleaseTypeTags();
-        confirmExtraTags();
+        confirmTags(safeZoneStartIndex, false, TagType.RELEASE_TYPE, TagType.EXTRA_TAG);
         confirmUploaderTags();
-        confirmYearTags();
-        confirmLanguageTags();
+        confirmTags(safeZoneStartIndex, false, TagType.YEAR, TagType.LANGUAGE);
         confirmTvSeriesTags();
     }
 
     /**
-     * Sets identifiable video mode tags as final.
+     * Sets identifiable video mode, video source and single-token codec tags
+     * as final, in that order of priority.
      * <p>
-     * Typical values: 1080p, 720p, 480i, etc.
+     * Typical values: 1080p, 720p, BluRay, Web-DL, HDTVRip, AC3, DTS, x264,
+     * etc.
      * <p>
      * Post-condition: Safe zone for tag identification is updated.
      */
-    private static void confirmVideoModeTags() {
-        ReleaseToken token;
-        for (int i = 0; i < releaseTokens.size(); i++) {
-            token = releaseTokens.get(i);
-            if (token.isCandidateTag() && VideoMode.parse(token.getValue()) != VideoMode.UNKNOWN) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.VIDEO_MODE);
-                safeZoneStartIndex = Math.min(safeZoneStartIndex, i);
-            }
-        }
+    private void confirmTechnicalTags() {
+        confirmTags(0, true, TagType.VIDEO_MODE, TagType.VIDEO_SOURCE, TagType.CODEC);
     }
 
     /**
-     * Sets identifiable video source tags as final.
-     * <p>
-     * Typical values: BluRay, Web-DL, DVDRip, HDTVRip, etc.
-     * <p>
-     * Post-condition: Safe zone for tag identification is updated.
+     * Sets the candidate tags of any of the given categories as final.
+     *
+     * @param startIndex the index of the first token to be checked
+     * @param updatesSafeZone whether the safe zone starts at the first tag
+     *                        confirmed if it is before the current one
+     * @param tagTypes the tag types to be checked, in order of priority
      */
-    private static void confirmVideoSourceTags() {
-        ReleaseToken token;
-        for (int i = 0; i < releaseTokens.size(); i++) {
-            token = releaseTokens.get(i);
-            if (token.isCandidateTag() && VideoSource.parse(token.getValue()) != VideoSource.UNKNOWN) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.VIDEO_SOURCE);
-                safeZoneStartIndex = Math.min(safeZoneStartIndex, i);
-            }
+    private void confirmTags(int startIndex, boolean updatesSafeZone, TagType... tagTypes) {
+        int mask = 0;
+        for (TagType tagType : tagTypes) {
+            mask |= category(tagType);
         }
-    }
-
-    /**
-     * Sets identifiable codec tags as final.
-     * <p>
-     * Typical values: AC3, DTS, XviD, H.264, etc.
-     * <p>
-     * Post-condition: Safe zone for tag identification is updated.
-     */
-    private static void confirmCodecTags() {
-        confirmSimpleCodecTags();
-        confirmCompoundCodecTags();
-    }
-
-    /**
-     * Sets identifiable single-token codec tags as final.
-     * <p>
-     * Typical values: AC3, DTS, XviD, x264, etc.
-     * <p>
-     * Post-condition: Safe zone for tag identification is updated.
-     */
-    private static void confirmSimpleCodecTags() {
         ReleaseToken token;
-        for (int i = 0; i < releaseTokens.size(); i++) {
+        for (int i = startIndex; i < releaseTokens.size(); i++) {
             token = releaseTokens.get(i);
-            if (token.isCandidateTag() && isKnownCodec(token.getValue())) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.CODEC);
-                safeZoneStartIndex = Math.min(safeZoneStartIndex, i);
+            if (token.isCandidateTag() && ((Tag) token).isAnyOf(mask)) {
+                Tag tag = (Tag) token;
+                for (TagType tagType : tagTypes) {
+                    if (tag.isA(tagType)) {
+                        tag.setTagType(tagType);
+                        break;
+                    }
+                }
+                if (updatesSafeZone) {
+                    safeZoneStartIndex = Math.min(safeZoneStartIndex, i);
+                }
             }
         }
     }
@@ -222,18 +262,17 @@ public class ReleaseTokenizer {
      * <p>
      * Post-condition: Safe zone for tag identification is updated.
      */
-    private static void confirmCompoundCodecTags() {
+    private void confirmCompoundCodecTags() {
         ReleaseToken token;
         Delimiter nextDelimiter;
         Tag nextTag;
         for (int i = 0; i < releaseTokens.size() - 2; i++) {
             token = releaseTokens.get(i);
-            if (token.isCandidateTag() && isPartialCodecName(token.getValue())) {
+            if (token.isCandidateTag() && ((Tag) token).isAnyOf(PARTIAL_CODEC_CATEGORY)) {
                 nextDelimiter = (Delimiter) releaseTokens.get(i + 1);
                 if (nextDelimiter.isCandidate() && nextDelimiter.hasValue(".")) {
                     nextTag = (Tag) releaseTokens.get(i + 2);
-                    String potentialCodec = token.getValue() + nextDelimiter.getValue() + nextTag.getValue();
-                    if (nextTag.isCandidate() && isKnownCodec(potentialCodec)) {
+                    if (nextTag.isCandidate() && isKnownCodec(token.getValue() + nextDelimiter.getValue() + nextTag.getValue())) {
                         replaceWithComposition(i, i + 2, TagType.CODEC);
                         safeZoneStartIndex = Math.min(safeZoneStartIndex, i);
                     }
@@ -247,34 +286,18 @@ public class ReleaseTokenizer {
      * <p>
      * Typical values: CtrlHD, Orenji, IMMERSE, AMIABLE, etc.
      */
-    private static void confirmSceneGroupTags() {
-        confirmKnownSceneGroupTags();
+    private void confirmSceneGroupTags() {
+        confirmTags(safeZoneStartIndex, false, TagType.SCENE_GROUP); // Known scene groups
         confirmSpecialSceneGroupTags();
         confirmGenericSceneGroupTags();
     }
 
-    /**
-     * Sets known scene group tags as final.
-     * <p>
-     * Typical values: CtrlHD, Orenji, IMMERSION, AMIABLE, etc.
-     */
-    private static void confirmKnownSceneGroupTags() {
-        ReleaseToken token;
-        for (int i = safeZoneStartIndex; i < releaseTokens.size(); i++) {
-            token = releaseTokens.get(i);
-            if (token.isCandidateTag() && isKnownSceneGroup(token.getValue())) {
-                Tag tag = (Tag) token;
-                tag.setTagType(TagType.SCENE_GROUP);
-            }
-        }
-    }
-
     /**
      * Sets specific scene group tags whose uncommon position is known as final.
      * <p>
      * Special scene groups: aaF.
      */
-    private static void confirmSpecialSceneGroupTags() {
+    private void confirmSpecialSceneGroupTags() {
         ReleaseToken first = releaseTokens.get(0);
         ReleaseToken second = releaseTokens.get(1);
         if (first.hasValue("aaF") && second.hasValue("-")) {
@@ -291,7 +314,7 @@ public class ReleaseTokenizer {
      * <i>last_codec-scene_group</i> in the release token sequence.
      * <br>Ex. x264-BLOW
      */
-    private static void confirmGenericSceneGroupTags() {
+    private void confirmGenericSceneGroupTags() {
         ReleaseToken token;
         Delimiter nextDelimiter;
         Tag nextTag;
@@ -312,12 +335,15 @@ public class ReleaseTokenizer {
     /**
      * Sets identifiable uploader tags as final.
      * <p>
+     * NOTE: Known uploaders are only identified inside the safe zone, as they
+     * may be common words of a title as well.
+     * <p>
      * Post-condition: the number of tokens is reduced as several tags and
      * delimiters are merged in a resulting uploader tag.
      * <p>
-     * Ex: by.Nestai, by_SemperFi, etc.
+     * Ex: by.Nestai, by_SemperFi, Tallahassee, etc.
      */
-    private static void confirmUploaderTags() {
+    private void confirmUploaderTags() {
         ReleaseToken token;
         Delimiter nextDelimiter;
         Tag nextTag;
@@ -333,6 +359,7 @@ public class ReleaseTokenizer {
                 }
             }
         }
+        confirmTags(safeZoneStartIndex, false, TagType.UPLOADER); // Known uploaders not preceded by "by"
     }
 
     /**
@@ -343,7 +370,7 @@ public class ReleaseTokenizer {
      * <p>
      * Ex: www.trackerhd.com
      */
-    private static void confirmWebSourceTags() {
+    private void confirmWebSourceTags() {
         boolean isCaptureEnabled = false;
         int startCaptureIndex = 0;
         for (int i = 0; i < releaseTokens.size(); i++) {
@@ -366,13 +393,9 @@ public class ReleaseTokenizer {
         }
     }
 
-    private static boolean containsWebDomain(int startIndex, int endIndex) {
-        String candidateDomain = "";
-        for (int i = startIndex; i <= endIndex; i++) {
-            candidateDomain += releaseTokens.get(i).getValue();
-        }
+    private boolean containsWebDomain(int startIndex, int endIndex) {
         DomainValidator validator = DomainValidator.getInstance();
-        return validator.isValid(candidateDomain);
+        return validator.isValid(concatenateValues(startIndex, endIndex));
     }
 
     /**
@@ -382,89 +405,8 @@ public class ReleaseTokenizer {
      * <p>
      * Ex. PublicHD, eztv, etc.
      */
-    private static void confirmTrackerIdTags() {
-        for (ReleaseToken token : releaseTokens) {
-            if (token.isCandidateTag() && isTrackerId(token.getValue())) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.WEB_SOURCE);
-            }
-        }
-    }
-
-    /**
-     * Sets identifiable release type tags as final.
-     * <p>
-     * NOTE: the tags must be inside the safe zone in order to be unmistakably
-     * identified.
-     * <p>
-     * Typical values: proper, unrated, director's cut, extended edition, etc.
-     */
-    private static void confirmReleaseTypeTags() {
-        ReleaseToken token;
-        for (int i = safeZoneStartIndex; i < releaseTokens.size(); i++) {
-            token = releaseTokens.get(i);
-            if (token.isCandidateTag() && isReleaseType(token.getValue())) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.RELEASE_TYPE);
-            }
-        }
-    }
-
-    /**
-     * Sets identifiable extra tags as final.
-     * <p>
-     * NOTE: the tags must be inside the safe zone in order to be unmistakably
-     * identified.
-     * <p>
-     * Typical values: dual, subs, etc.
-     */
-    private static void confirmExtraTags() {
-        ReleaseToken token;
-        for (int i = safeZoneStartIndex; i < releaseTokens.size(); i++) {
-            token = releaseTokens.get(i);
-            if (token.isCandidateTag() && isExtraTag(token.getValue())) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.EXTRA_TAG);
-            }
-        }
-    }
-
-    /**
-     * Sets identifiable year tags as final.
-     * <p>
-     * NOTE: the tags must be inside the safe zone in order to be unmistakably
-     * identified. Also, only years from 1900 are valid.
-     * <p>
-     * Typical values: 1987, 1995, 2011, etc.
-     */
-    private static void confirmYearTags() {
-        ReleaseToken token;
-        for (int i = safeZoneStartIndex; i < releaseTokens.size(); i++) {
-            token = releaseTokens.get(i);
-            if (token.isCandidateTag() && isValidMovieYear(token.getValue())) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.YEAR);
-            }
-        }
-    }
-
-    /**
-     * Sets identifiable language tags as final.
-     * <p>
-     * NOTE: the tags must be inside the safe zone in order to be unmistakably
-     * identified.
-     * <p>
-     * Typical values: English, es, de, nor, Italian, etc.
-     */
-    private static void confirmLanguageTags() {
-        ReleaseToken token;
-        for (int i = safeZoneStartIndex; i < releaseTokens.size(); i++) {
-            token = releaseTokens.get(i);
-            if (token.isCandidateTag() && Language.parseLanguage(token.getValue()) != Language.UNDEFINED) {
-                Tag tag = (Tag)token;
-                tag.setTagType(TagType.LANGUAGE);
-            }
-        }
+    private void confirmTrackerIdTags() {
+        confirmTags(0, false, TagType.WEB_SOURCE);
     }
 
     /**
@@ -474,11 +416,11 @@ public class ReleaseTokenizer {
      * <p>
      * Typical values: S02E12, 5x08, etc.
      */
-    private static void confirmTvSeriesTags() {
+    private void confirmTvSeriesTags() {
         ReleaseToken token;
         for (int i = 0; i < releaseTokens.size(); i++) {
             token = releaseTokens.get(i);
-            if (token.isCandidateTag() && isFullTvEpisodeNumber(token.getValue())) {
+            if (token.isCandidateTag() && ((Tag) token).isA(TagType.EPISODE_NUMBER)) {
                 Tag tag = (Tag)token;
                 tag.setTagType(TagType.EPISODE_NUMBER);
                 if (safeZoneStartIndex == i + 2) {
@@ -488,40 +430,6 @@ public class ReleaseTokenizer {
         }
     }
 
-    private static boolean isFullTvEpisodeNumber(String value) {
-        Matcher matcher = ReleaseInfoParser.basicTvSeriesPattern.matcher(value);
-        return matcher.find();
-    }
-
-    private static boolean isValidMovieYear(String value) {
-        Matcher matcher = Pattern.compile(movieYearRegex).matcher(value);
-        return matcher.find();
-    }
-
-    private static boolean isKnownSceneGroup(String value) {
-        for (String group : bluraySceneGroups) {
-            if (group.equalsIgnoreCase(value)) {
-                return true;
-            }
-        }
-        for (String group : hditunesSceneGroups) {
-            if (group.equalsIgnoreCase(value)) {
-                return true;
-            }
-        }
-        for (String group : hdtvSceneGroups) {
-            if (group.equalsIgnoreCase(value)) {
-                return true;
-            }
-        }
-        for (String group : sdtvSceneGroups) {
-            if (group.equalsIgnoreCase(value)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     private static boolean isReleaseType(String value) {
         return ReleaseType.parse(value) != ReleaseType.COMMON;
     }
@@ -534,22 +442,12 @@ public class ReleaseTokenizer {
         return Codec.parse(value) != Codec.UNDEFINED;
     }
 
-    private static boolean isTrackerId(String value) {
-        for (String id : webSourceIds) {
-            if (id.equalsIgnoreCase(value)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static boolean isExtraTag(String value) {
-        for (String extra : extraInfoFields) {
-            if (extra.equalsIgnoreCase(value)) {
-                return true;
-            }
+    private String concatenateValues(int startIndex, int endIndex) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = startIndex; i <= endIndex; i++) {
+            builder.append(releaseTokens.get(i).getValue());
         }
-        return false;
+        return builder.toString();
     }
 
     /**
@@ -559,21 +457,18 @@ public class ReleaseTokenizer {
      * @param endIndex the index of the last tag to be merged and replaced
      * @param tagType the tag type of the resulting tag
      */
-    private static void replaceWithComposition(int startIndex, int endIndex, TagType tagType) {
+    private void replaceWithComposition(int startIndex, int endIndex, TagType tagType) {
         int startPosition = releaseTokens.get(startIndex).getStartPosition();
-        String webSource = "";
-        for (int i = startIndex; i <= endIndex; i++) {
-            webSource += releaseTokens.get(i).getValue();
-        }
+        String composition = concatenateValues(startIndex, endIndex);
         // Backwards removal for better performance
         for (int i = endIndex; i >= startIndex; i--) {
             releaseTokens.remove(i);
         }
-        releaseTokens.add(new Tag(tagType, webSource, startPosition));
-        Collections.sort(releaseTokens);
+        // The composition takes the place of its parts, so no sorting is needed
+        releaseTokens.add(startIndex, new Tag(tagType, composition, startPosition));
     }
 
-    private static void parseRemainingCandidates() {
+    private void parseRemainingCandidates() {
 
     }
 
@@ -584,7 +479,7 @@ public class ReleaseTokenizer {
      *         unique, <code>false</code> if there are different delimiters or
      *         there is not delimiter at all.
      */
-    private static boolean hasUniqueDelimiter() {
+    private boolean hasUniqueDelimiter() {
         String delimiter = null;
         for (ReleaseToken token : releaseTokens) {
             if (token.isDelimiter() && delimiter != null) {
@@ -606,7 +501,7 @@ public class ReleaseTokenizer {
      * zone are final, <code>false</> if there is still some candidate token or
      * there is no safe zone.
      */
-    private static boolean isSafeZoneFullyIdentified() {
+    private boolean isSafeZoneFullyIdentified() {
         for (int i = safeZoneStartIndex; i < releaseTokens.size(); i++) {
             if (releaseTokens.get(i).isCandidate()) {
                 return false;
@@ -615,6 +510,41 @@ public class ReleaseTokenizer {
         // No safe zone
         return safeZoneStartIndex < releaseTokens.size();
     }
+
+    /**
+     * Processes a range of release names, splitting it in halves until it is
+     * small enough to be processed by a single tokenizer.
+     */
+    private static class ProcessTask extends RecursiveTask<Void> {
+
+        private final String[] names;
+        private final ReleaseToken[][] results;
+        private final int start;
+        private final int end;
+
+        ProcessTask(String[] names, ReleaseToken[][] results, int start, int end) {
+            this.names = names;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Void compute() {
+            if (end - start <= BATCH_THRESHOLD) {
+                ReleaseTokenizer tokenizer = new ReleaseTokenizer();
+                for (int i = start; i < end; i++) {
+                    tokenizer.process(names[i]);
+                    results[i] = tokenizer.getReleaseTokens();
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ProcessTask(names, results, start, middle),
+                          new ProcessTask(names, results, middle, end));
+            }
+            return null;
+        }
+    }
 }
 
 class ReleaseToken implements Comparable<ReleaseToken> {
@@ -719,17 +649,45 @@ enum TokenType {
 class Tag extends ReleaseToken {
 
     private TagType tagType;
+    private final int categories;
 
     public Tag(TagType type, String value, int startPosition) {
         super(TokenType.TAG, value, startPosition);
         tagType = type;
+        categories = 0;
         if (tagType != TagType.UNKNOWN) {
             confirm();
         }
     }
 
     public Tag(String value, int startPosition) {
-        this(TagType.UNKNOWN, value, startPosition);
+        this(value, startPosition, 0);
+    }
+
+    /**
+     * Creates a candidate tag already classified.
+     *
+     * @param value the tag value
+     * @param startPosition the tag position in the release name
+     * @param categories the tag types this tag could be, as returned by
+     *                   <code>ReleaseTokenizer.classify(String)</code>
+     */
+    public Tag(String value, int startPosition, int categories) {
+        super(TokenType.TAG, value, startPosition);
+        tagType = TagType.UNKNOWN;
+        this.categories = categories;
+    }
+
+    /**
+     * @param type the tag type to be checked
+     * @return <code>true</code> if this tag could be of the given type
+     */
+    public boolean isA(TagType type) {
+        return isAnyOf(ReleaseTokenizer.category(type));
+    }
+
+    public boolean isAnyOf(int categoryMask) {
+        return (categories & categoryMask) != 0;
     }
 
     public TagType getTagType() {
@@ -0,0 +1,369 @@
+package lan.vandiemens.media.info.release;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Linear-time matcher of the typical scene release names, equivalent to the
+ * <code>sceneMoviePattern</code> and <code>sceneTvSeriesPattern</code>
+ * regular expressions of <code>ReleaseInfoParser</code>.
+ * <p>
+ * The name is split into its dot-separated fields, and every field is
+ * visited a bounded number of times: first backwards, finding from which
+ * fields the end of the name can be matched, then forwards, picking the same
+ * groups the regular expressions would. Hence, unlike the regular expressions,
+ * names with a lot of dots can't make the matcher backtrack for ages.
+ * <p>
+ * NOTE: The matched groups have the same names as those of the regular
+ * expressions. Fields are compared with the known keywords character by
+ * character, ignoring case, so the positions found in the name hold even if
+ * it has characters whose lower case form is longer, such as 'İ'.
+ *
+ * @author vmurcia
+ */
+class SceneNameMatcher {
+
+    private static final Set<String> qualities = newSet("720", "720p", "1080", "1080p");
+    private static final Set<String> movieExtraTags = newSet("cee", "collectors", "collectors.edition", "dc",
+            "ext", "extended", "ext.cut", "extended.cut", "internal", "limited", "mgvc", "p2p", "proper",
+            "remastered", "repack", "retail", "revisited", "unrated", "unrated.cut");
+    private static final Set<String> movieSources = newSourceSet(true, "", "aus.", "fra.", "gbr.", "usa.");
+    private static final Set<String> movieSecondSources = newSourceSet(false, "", "aus.", "gbr.", "usa.");
+    private static final Set<String> movieCodecs = newSet("dual", "remux", "revisited", "mkv", "avc", "vc1",
+            "vc-1", "h264", "h.264", "x264", "xvid", "divx", "dxva", "dtsma", "dtshd-ma", "dts-ma", "dts",
+            "dts-es", "dts-hd", "dts-hd.", "dts-hd.ma", "dts-hdma", "dts-hd.hra", "dts-hdhra", "5.1", "7.1", "dd5.1",
+            "dd.5.1", "flac", "ac3", "aac", "aac2.0", "truehd");
+    private static final Set<String> movieSpecialEndings = newSet("d-z0n3", "ftw-hd", "multisubs");
+    private static final Set<String> tvSources = newSet("bluray", "brrip", "bdrip", "bdremux", "hddvd",
+            "web-dl", "hditunes", "hdtv", "dvdr", "dvdrip");
+    private static final Set<String> tvCodecs = newSet("mkv", "avc", "h264", "h.264", "x264", "xvid", "divx",
+            "dxva", "dts", "dts-hd.ma.5.1", "dd5.1", "ac3", "aac", "aac2.0");
+    private static final int MAX_UNIT_FIELDS = 4; // Such as "DTS-HD.MA.5.1"
+    private static final int MAX_CODEC_LENGTH = getMaxLength(movieCodecs, tvCodecs);
+    private final String name;
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+    private final int fieldCount;
+    private final Map<String, String> groups = new HashMap<>();
+
+    private SceneNameMatcher(String name) {
+        this.name = name;
+        int count = 1;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) == '.') {
+                count++;
+            }
+        }
+        fieldCount = count;
+        fieldStarts = new int[count];
+        fieldEnds = new int[count];
+        int field = 0;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) == '.') {
+                fieldEnds[field] = i;
+                fieldStarts[++field] = i + 1;
+            }
+        }
+        fieldEnds[field] = name.length();
+    }
+
+    /**
+     * Matches the given name against the typical scene movie naming pattern.
+     *
+     * @param name the release name, without extension
+     * @return the matched groups by name (title, year, extratag, source,
+     *         quality, source2, codecs, scenegroup and scenegroup2), or
+     *         <code>null</code> if the name doesn't follow the pattern
+     */
+    public static Map<String, String> matchMovie(String name) {
+        SceneNameMatcher matcher = new SceneNameMatcher(name);
+        return matcher.findMovieGroups() ? matcher.groups : null;
+    }
+
+    /**
+     * Matches the given name against the typical scene TV series naming
+     * pattern.
+     *
+     * @param name the release name, without extension
+     * @return the matched groups by name (title, season, episode,
+     *         episodetitle, quality, source, codecs and scenegroup), or
+     *         <code>null</code> if the name doesn't follow the pattern
+     */
+    public static Map<String, String> matchTvSeries(String name) {
+        SceneNameMatcher matcher = new SceneNameMatcher(name);
+        return matcher.findTvSeriesGroups() ? matcher.groups : null;
+    }
+
+    private boolean findMovieGroups() {
+        int n = fieldCount;
+        // Backwards pass: which fields the rest of the name can be matched from
+        boolean[] codecsMatch = new boolean[n + MAX_UNIT_FIELDS + 1];
+        for (int p = n - 1; p >= 0; p--) {
+            codecsMatch[p] = findLastCodecEnd(movieCodecs, p, false) != -1;
+            for (int length = 1; !codecsMatch[p] && length <= MAX_UNIT_FIELDS; length++) {
+                codecsMatch[p] = isUnit(movieCodecs, p, length)
+                                 && (codecsMatch[p + length] || isMovieSpecialEnding(p + length));
+            }
+        }
+        boolean[] qualityMatches = new boolean[n + MAX_UNIT_FIELDS + 1];
+        boolean[] sourceMatches = new boolean[n + MAX_UNIT_FIELDS + 1];
+        boolean[] extrasMatch = new boolean[n + MAX_UNIT_FIELDS + 1];
+        boolean[] yearMatches = new boolean[n + MAX_UNIT_FIELDS + 1];
+        for (int p = n - 1; p >= 0; p--) {
+            qualityMatches[p] = qualities.contains(getFields(p, 1))
+                                && (codecsMatch[p + 1] || findUnit(movieSecondSources, p + 1, codecsMatch) > 0);
+            sourceMatches[p] = qualityMatches[p] || findUnit(movieSources, p, qualityMatches) > 0;
+            extrasMatch[p] = sourceMatches[p] || findUnit(movieExtraTags, p, extrasMatch) > 0;
+            yearMatches[p] = extrasMatch[p] || (isYear(p) && extrasMatch[p + 1]);
+        }
+
+        // The title is as short as possible
+        int p = 1;
+        while (p < n && !(yearMatches[p] && fieldEnds[p - 1] > 0)) {
+            p++;
+        }
+        if (p >= n) {
+            return false;
+        }
+        groups.put("title", name.substring(0, fieldEnds[p - 1]));
+
+        // Forwards pass: every optional group is taken if possible
+        if (isYear(p) && extrasMatch[p + 1]) {
+            groups.put("year", getFields(p, 1));
+            p++;
+        }
+        int length;
+        while ((length = findUnit(movieExtraTags, p, extrasMatch)) > 0) {
+            groups.put("extratag", getFields(p, length)); // The last one is kept
+            p += length;
+        }
+        if ((length = findUnit(movieSources, p, qualityMatches)) > 0) {
+            groups.put("source", getFields(p, length));
+            p += length;
+        }
+        groups.put("quality", getFields(p, 1));
+        p++;
+        if ((length = findUnit(movieSecondSources, p, codecsMatch)) > 0) {
+            groups.put("source2", getFields(p, length));
+            p += length;
+        }
+        return findCodecGroups(movieCodecs, p, codecsMatch, false);
+    }
+
+    private boolean findTvSeriesGroups() {
+        int n = fieldCount;
+        boolean[] codecsMatch = new boolean[n + MAX_UNIT_FIELDS + 1];
+        for (int p = n - 1; p >= 0; p--) {
+            codecsMatch[p] = findLastCodecEnd(tvCodecs, p, true) != -1 || findUnit(tvCodecs, p, codecsMatch) > 0;
+        }
+        boolean[] sourceMatches = new boolean[n + 2];
+        boolean[] qualityMatches = new boolean[n + 2];
+        boolean[] anyQualityMatches = new boolean[n + 3];
+        boolean[] episodeTitleMatches = new boolean[n + 1];
+        for (int p = n - 1; p >= 0; p--) {
+            sourceMatches[p] = codecsMatch[p] || (tvSources.contains(getFields(p, 1)) && codecsMatch[p + 1]);
+            qualityMatches[p] = sourceMatches[p] || (qualities.contains(getFields(p, 1)) && sourceMatches[p + 1]);
+            anyQualityMatches[p] = qualityMatches[p] || anyQualityMatches[p + 1];
+            // The episode title is optional, but not empty if present
+            episodeTitleMatches[p] = qualityMatches[p] || anyQualityMatches[isEmptyField(p) ? p + 2 : p + 1];
+        }
+
+        // The title is as long as possible, but made of non-empty fields
+        int titleFieldLimit = 0;
+        while (titleFieldLimit < n && fieldStarts[titleFieldLimit] < fieldEnds[titleFieldLimit]) {
+            titleFieldLimit++;
+        }
+        int e = Math.min(titleFieldLimit, n - 2);
+        while (e >= 1 && !(isEpisodeNumber(e) && episodeTitleMatches[e + 1])) {
+            e--;
+        }
+        if (e < 1) {
+            return false;
+        }
+        groups.put("title", name.substring(0, fieldEnds[e - 1]));
+        groups.put("season", name.substring(fieldStarts[e] + 1, fieldStarts[e] + 3));
+        groups.put("episode", name.substring(fieldStarts[e] + 4, fieldStarts[e] + 6));
+
+        // The episode title is skipped if possible, or as short as possible
+        int p = e + 1;
+        if (!qualityMatches[p]) {
+            int next = isEmptyField(p) ? p + 2 : p + 1;
+            while (!qualityMatches[next]) {
+                next++;
+            }
+            groups.put("episodetitle", name.substring(fieldStarts[p], fieldEnds[next - 1]));
+            p = next;
+        }
+        if (qualities.contains(getFields(p, 1)) && sourceMatches[p + 1]) {
+            groups.put("quality", getFields(p, 1));
+            p++;
+        }
+        if (tvSources.contains(getFields(p, 1)) && codecsMatch[p + 1]) {
+            groups.put("source", getFields(p, 1));
+            p++;
+        }
+        return findCodecGroups(tvCodecs, p, codecsMatch, true);
+    }
+
+    /**
+     * Takes as many codecs as possible, followed by the scene group.
+     */
+    private boolean findCodecGroups(Set<String> codecs, int startField, boolean[] codecsMatch, boolean isTvSeries) {
+        int p = startField;
+        int length;
+        while ((length = findUnit(codecs, p, codecsMatch)) > 0) {
+            p += length;
+        }
+        if (!isTvSeries) {
+            for (length = MAX_UNIT_FIELDS; length >= 1; length--) {
+                if (isUnit(codecs, p, length) && isMovieSpecialEnding(p + length)) {
+                    groups.put("codecs", name.substring(fieldStarts[startField], fieldEnds[p + length - 1]));
+                    String ending = getFields(p + length, 1);
+                    if (!ending.equalsIgnoreCase("multisubs")) {
+                        groups.put("scenegroup2", ending);
+                    }
+                    return true;
+                }
+            }
+        }
+        int dashIndex = findLastCodecEnd(codecs, p, isTvSeries);
+        if (dashIndex == -1) {
+            return false;
+        }
+        groups.put("codecs", name.substring(fieldStarts[startField], dashIndex));
+        groups.put("scenegroup", name.substring(dashIndex + 1));
+        return true;
+    }
+
+    /**
+     * Looks for a codec starting at the given field and ending right before a
+     * dash followed by the scene group, which takes the rest of the name.
+     *
+     * @return the position of the dash, or -1 if there is no such codec
+     */
+    private int findLastCodecEnd(Set<String> codecs, int startField, boolean isTvSeries) {
+        for (int length = Math.min(MAX_UNIT_FIELDS, fieldCount - startField); length >= 1; length--) {
+            int lastField = startField + length - 1;
+            if (isTvSeries && lastField != fieldCount - 1) {
+                continue; // TV series scene groups are a single word
+            }
+            int maxDashIndex = Math.min(fieldEnds[lastField] - 1, fieldStarts[startField] + MAX_CODEC_LENGTH);
+            for (int dashIndex = maxDashIndex; dashIndex >= fieldStarts[lastField]; dashIndex--) {
+                if (name.charAt(dashIndex) == '-'
+                        && codecs.contains(name.substring(fieldStarts[startField], dashIndex))
+                        && isValidSceneGroup(dashIndex + 1, isTvSeries)) {
+                    return dashIndex;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean isValidSceneGroup(int start, boolean isTvSeries) {
+        if (start >= name.length()) {
+            return false;
+        }
+        if (isTvSeries) {
+            for (int i = start; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (!(c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks for the longest unit of the given set starting at the given field
+     * and followed by fields which can be matched.
+     *
+     * @return the number of fields of the unit, or 0 if there is none
+     */
+    private int findUnit(Set<String> units, int startField, boolean[] nextMatches) {
+        for (int length = MAX_UNIT_FIELDS; length >= 1; length--) {
+            if (isUnit(units, startField, length) && nextMatches[startField + length]) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private boolean isUnit(Set<String> units, int startField, int length) {
+        return startField + length <= fieldCount && units.contains(getFields(startField, length));
+    }
+
+    private boolean isMovieSpecialEnding(int field) {
+        return field == fieldCount - 1 && movieSpecialEndings.contains(getFields(field, 1));
+    }
+
+    private boolean isEmptyField(int field) {
+        return fieldStarts[field] == fieldEnds[field];
+    }
+
+    private boolean isYear(int field) {
+        String value = getFields(field, 1);
+        return value.length() == 4 && (value.startsWith("19") || value.startsWith("20"))
+               && isDigit(value.charAt(2)) && isDigit(value.charAt(3));
+    }
+
+    private boolean isEpisodeNumber(int field) {
+        String value = getFields(field, 1);
+        return value.length() == 6 && Character.toLowerCase(value.charAt(0)) == 's' && isDigit(value.charAt(1))
+               && isDigit(value.charAt(2)) && Character.toLowerCase(value.charAt(3)) == 'e' && isDigit(value.charAt(4))
+               && isDigit(value.charAt(5));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the given fields joined by their dots, or an empty string if
+     *         they are beyond the end of the name
+     */
+    private String getFields(int startField, int length) {
+        if (startField + length > fieldCount) {
+            return "";
+        }
+        return name.substring(fieldStarts[startField], fieldEnds[startField + length - 1]);
+    }
+
+    /**
+     * @return a set whose lookups ignore case, character by character
+     */
+    private static Set<String> newSet(String... values) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(Arrays.asList(values));
+        return set;
+    }
+
+    @SafeVarargs
+    private static int getMaxLength(Set<String>... sets) {
+        int maxLength = 0;
+        for (Set<String> set : sets) {
+            for (String value : set) {
+                maxLength = Math.max(maxLength, value.length());
+            }
+        }
+        return maxLength;
+    }
+
+    private static Set<String> newSourceSet(boolean includesHybrid, String... regionPrefixes) {
+        Set<String> sources = newSet("brrip", "bdrip", "bdremux", "hddvd", "web-dl", "hditunes", "hdtv",
+                                     "hdtvrip", "dvdr", "dvdrip");
+        for (String prefix : regionPrefixes) {
+            sources.add(prefix + "bluray");
+            sources.add(prefix + "blu-ray");
+            sources.add(prefix + "bluray.remux");
+            sources.add(prefix + "blu-ray.remux");
+            if (includesHybrid) {
+                sources.add(prefix + "hybrid");
+            }
+        }
+        return sources;
+    }
+}
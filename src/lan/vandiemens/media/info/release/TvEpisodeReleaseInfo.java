@@ -78,6 +78,14 @@ public class TvEpisodeReleaseInfo extends ReleaseInfo {
                 && tvSeriesInfo2.getEpisodeNumber() == episodeNumber);
     }
 
+    @Override
+    public TvEpisodeReleaseInfo copy() {
+        TvEpisodeReleaseInfo copy = new TvEpisodeReleaseInfo(title, season, episodeNumber);
+        copyFieldsTo(copy);
+        copy.episodeTitle = episodeTitle;
+        return copy;
+    }
+
     @Override
     public boolean hasCompleteBasicInfo() {
         return hasEpisodeTitle();
@@ -0,0 +1,359 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import lan.vandiemens.media.analysis.EbmlReader;
+import lan.vandiemens.media.analysis.EbmlReader.ElementHeader;
+import lan.vandiemens.media.analysis.MatroskaSegment;
+import lan.vandiemens.media.matroska.MkvPropEditCommand.TrackEdit;
+import lan.vandiemens.util.file.FileUtils;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+
+/**
+ * Edits the segment title and the track header properties (default and forced
+ * flags, name and language) of a Matroska file in place, just like mkvpropedit
+ * does, but without running any external process.
+ * <p>
+ * The segment information and the tracks elements are rebuilt in memory and
+ * written back over the original ones, so an edition costs a couple of small
+ * writes. An element may only grow over the Void element following it, and
+ * the space left over is claimed by a new Void element, so no other element
+ * is ever moved. CRC-32 elements are recomputed.
+ * <p>
+ * NOTE: If an element doesn't fit in the available space, the file is not
+ * modified at all and mkvpropedit must be used instead. The native editor can
+ * be disabled by setting the <code>mediamanager.mkvpropedit.native.disabled</code>
+ * system property to <code>true</code>.
+ *
+ * @author vmurcia
+ */
+class MatroskaHeaderEditor {
+
+    public static final String NATIVE_EDITOR_DISABLED_PROPERTY = "mediamanager.mkvpropedit.native.disabled";
+    private static final int MAX_SIZE_LENGTH = 8;
+    private final File file;
+    private MatroskaSegment segment = null;
+    private ElementHeader info = null;
+    private ElementHeader tracks = null;
+
+    /**
+     * Child element, kept as raw bytes unless its own children are edited.
+     */
+    private static class Child {
+
+        private final int id;
+        private final ElementHeader header; // Null if the child is new
+        private byte[] bytes;
+        private List<Child> children = null;
+
+        Child(int id, ElementHeader header, byte[] bytes) {
+            this.id = id;
+            this.header = header;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Bytes to be written over the file.
+     */
+    private static class Patch {
+
+        private final long position;
+        private final byte[] bytes;
+
+        Patch(long position, byte[] bytes) {
+            this.position = position;
+            this.bytes = bytes;
+        }
+    }
+
+    MatroskaHeaderEditor(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Checks if the given file can be edited by this editor.
+     *
+     * @param file the media file
+     * @return <code>true</code> if the file seems to be a Matroska file and
+     *         the native editor is enabled, <code>false</code> otherwise
+     */
+    static boolean canEdit(File file) {
+        if (Boolean.getBoolean(NATIVE_EDITOR_DISABLED_PROPERTY)) {
+            return false;
+        }
+        switch (FileUtils.getExtension(file).toLowerCase()) {
+            case "mkv":
+            case "mka":
+            case "mks":
+            case "webm":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Applies the edits of the given mkvpropedit command to the file.
+     *
+     * @param command the mkvpropedit command
+     * @return <code>true</code> if the file has been edited,
+     *         <code>false</code> if it has been left untouched because
+     *         mkvpropedit is needed
+     * @throws IOException if the file can't be read or written
+     */
+    boolean edit(MkvPropEditCommand command) throws IOException {
+        return edit(command.getTitle(), command.getTrackEdits());
+    }
+
+    /**
+     * Sets the segment title and the given track header properties.
+     *
+     * @param title the segment title, or <code>null</code> to keep it
+     * @param trackEdits the track header properties to be set
+     * @return <code>true</code> if the file has been edited,
+     *         <code>false</code> if it has been left untouched because
+     *         mkvpropedit is needed
+     * @throws IOException if the file can't be read or written
+     */
+    boolean edit(String title, List<TrackEdit> trackEdits) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            EbmlReader reader = new EbmlReader(channel);
+            if (!findHeaders(reader)) {
+                System.out.println("Matroska segment information or tracks not found before the first cluster");
+                return false;
+            }
+            List<Patch> patches = new ArrayList<>(2);
+            if (title != null) {
+                Patch patch = editInfo(reader, title);
+                if (patch == null) {
+                    return false;
+                }
+                patches.add(patch);
+            }
+            if (!trackEdits.isEmpty()) {
+                Patch patch = editTracks(reader, trackEdits);
+                if (patch == null) {
+                    return false;
+                }
+                patches.add(patch);
+            }
+            for (Patch patch : patches) {
+                ByteBuffer buffer = ByteBuffer.wrap(patch.bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, patch.position + buffer.position());
+                }
+            }
+            channel.force(false);
+        }
+        return true;
+    }
+
+    private boolean findHeaders(EbmlReader reader) throws IOException {
+        segment = MatroskaSegment.find(reader);
+        info = segment.getElement(INFO);
+        tracks = segment.getElement(TRACKS);
+        return info != null && tracks != null;
+    }
+
+    /**
+     * Reads the children of the given element, except the Void ones, whose
+     * space is claimed back when the element is rebuilt.
+     */
+    private static List<Child> readChildren(EbmlReader reader, ElementHeader parent) throws IOException {
+        List<Child> children = new ArrayList<>();
+        reader.seek(parent.getDataPosition());
+        for (ElementHeader child = reader.nextChild(parent); child != null; child = reader.nextChild(parent)) {
+            if (child.getId() != VOID) {
+                reader.seek(child.getPosition());
+                children.add(new Child(child.getId(), child, reader.readBytes(child.getEndPosition() - child.getPosition())));
+            }
+            reader.seek(child.getEndPosition());
+        }
+        return children;
+    }
+
+    private Patch editInfo(EbmlReader reader, String title) throws IOException {
+        List<Child> children = readChildren(reader, info);
+        set(children, TITLE, title.getBytes(StandardCharsets.UTF_8));
+        return rebuild(reader, info, children);
+    }
+
+    private Patch editTracks(EbmlReader reader, List<TrackEdit> trackEdits) throws IOException {
+        List<Child> entries = new ArrayList<>();
+        List<Child> children = readChildren(reader, tracks);
+        for (Child child : children) {
+            if (child.id == TRACK_ENTRY) {
+                entries.add(child);
+            }
+        }
+        for (TrackEdit edit : trackEdits) {
+            if (edit.getTrackNumber() < 1 || edit.getTrackNumber() > entries.size()) {
+                System.out.println("Matroska track " + edit.getTrackNumber() + " not found");
+                return null;
+            }
+            Child entry = entries.get(edit.getTrackNumber() - 1);
+            if (entry.children == null) {
+                entry.children = readChildren(reader, entry.header);
+            }
+            if (contains(entry.children, LANGUAGE_IETF)) {
+                System.out.println("Matroska track " + edit.getTrackNumber() + " has an IETF language tag too");
+                return null; // Both languages must be kept consistent
+            }
+            set(entry.children, FLAG_DEFAULT, new byte[]{(byte) (edit.isDefault() ? 1 : 0)});
+            set(entry.children, FLAG_FORCED, new byte[]{(byte) (edit.isForced() ? 1 : 0)});
+            if (edit.getName() != null) {
+                set(entry.children, NAME, edit.getName().getBytes(StandardCharsets.UTF_8));
+            }
+            if (edit.getLanguage() != null) {
+                set(entry.children, LANGUAGE, edit.getLanguage().getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        for (Child entry : entries) {
+            if (entry.children != null) {
+                entry.bytes = encodeMaster(TRACK_ENTRY, entry.children, 1);
+            }
+        }
+        return rebuild(reader, tracks, children);
+    }
+
+    private static boolean contains(List<Child> children, int id) {
+        for (Child child : children) {
+            if (child.id == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the value of the first child with the given ID, or adds a new
+     * child if there is none.
+     */
+    private static void set(List<Child> children, int id, byte[] data) throws IOException {
+        byte[] bytes = encodeElement(id, data, 1);
+        for (Child child : children) {
+            if (child.id == id) {
+                child.bytes = bytes;
+                child.children = null;
+                return;
+            }
+        }
+        children.add(new Child(id, null, bytes));
+    }
+
+    /**
+     * Rebuilds the given top level element, checking that it fits in its
+     * current space plus the Void element following it, if any.
+     *
+     * @return the bytes to be written, or <code>null</code> if the element
+     *         doesn't fit
+     */
+    private Patch rebuild(EbmlReader reader, ElementHeader header, List<Child> children) throws IOException {
+        long availableSpace = header.getEndPosition() - header.getPosition();
+        if (header.getEndPosition() < segment.getEnd()) {
+            reader.seek(header.getEndPosition());
+            ElementHeader next = reader.readElementHeader();
+            if (next.getId() == VOID && !next.hasUnknownSize()) {
+                availableSpace += next.getEndPosition() - next.getPosition();
+            }
+        }
+        int sizeLength = (int) (header.getDataPosition() - header.getPosition()) - getIdLength(header.getId());
+        byte[] element = encodeMaster(header.getId(), children, sizeLength);
+        long freeSpace = availableSpace - element.length;
+        for (int length = sizeLength + 1; freeSpace == 1 && length <= MAX_SIZE_LENGTH; length++) {
+            element = encodeMaster(header.getId(), children, length); // No Void element is 1 byte long
+            freeSpace = availableSpace - element.length;
+        }
+        if (freeSpace < 0 || freeSpace == 1) {
+            System.out.println("Matroska element " + header + " can't grow in place");
+            return null;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(element.length + MAX_SIZE_LENGTH + 1);
+        output.write(element);
+        if (freeSpace > 0) {
+            output.write(encodeVoidHeader(freeSpace)); // Its data is left as is
+        }
+        return new Patch(header.getPosition(), output.toByteArray());
+    }
+
+    /**
+     * Encodes a master element, recomputing its CRC-32 element if it had one.
+     */
+    private static byte[] encodeMaster(int id, List<Child> children, int minSizeLength) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        boolean hasCrc = false;
+        for (Child child : children) {
+            if (child.id == CRC_32) {
+                hasCrc = true;
+            } else {
+                data.write(child.bytes);
+            }
+        }
+        if (!hasCrc) {
+            return encodeElement(id, data.toByteArray(), minSizeLength);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.toByteArray());
+        long value = crc.getValue();
+        byte[] crcData = {(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)}; // Little endian
+        ByteArrayOutputStream checkedData = new ByteArrayOutputStream(data.size() + 6);
+        checkedData.write(encodeElement(CRC_32, crcData, 1));
+        data.writeTo(checkedData);
+        return encodeElement(id, checkedData.toByteArray(), minSizeLength);
+    }
+
+    private static byte[] encodeElement(int id, byte[] data, int minSizeLength) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length + 12);
+        int idLength = getIdLength(id);
+        for (int i = idLength - 1; i >= 0; i--) {
+            output.write(id >>> (8 * i));
+        }
+        output.write(encodeSize(data.length, minSizeLength));
+        output.write(data);
+        return output.toByteArray();
+    }
+
+    private static byte[] encodeVoidHeader(long elementLength) throws IOException {
+        // The size takes a single byte if possible, or else eight bytes
+        long dataSize = elementLength - 2;
+        byte[] size = (dataSize < 0x7F) ? encodeSize(dataSize, 1) : encodeSize(elementLength - 1 - MAX_SIZE_LENGTH, MAX_SIZE_LENGTH);
+        byte[] header = new byte[1 + size.length];
+        header[0] = (byte) VOID;
+        System.arraycopy(size, 0, header, 1, size.length);
+        return header;
+    }
+
+    /**
+     * Encodes an element data size, avoiding the all ones values, which mean
+     * an unknown size.
+     */
+    private static byte[] encodeSize(long size, int minLength) throws IOException {
+        int length = minLength;
+        while (length <= MAX_SIZE_LENGTH && size >= (1L << (7 * length)) - 1) {
+            length++;
+        }
+        if (length > MAX_SIZE_LENGTH) {
+            throw new IOException("Matroska element too large: " + size);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) size;
+            size >>>= 8;
+        }
+        bytes[0] |= (byte) (0x80 >>> (length - 1));
+        return bytes;
+    }
+
+    private static int getIdLength(int id) {
+        return (id & 0xFF000000) != 0 ? 4 : (id & 0xFF0000) != 0 ? 3 : (id & 0xFF00) != 0 ? 2 : 1;
+    }
+}
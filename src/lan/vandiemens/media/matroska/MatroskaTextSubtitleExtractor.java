@@ -0,0 +1,582 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import lan.vandiemens.media.analysis.EbmlReader;
+import lan.vandiemens.media.analysis.EbmlReader.ElementHeader;
+import lan.vandiemens.media.analysis.MatroskaSegment;
+import lan.vandiemens.util.file.FileUtils;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+
+/**
+ * Extracts the text subtitle tracks (SRT and SSA/ASS) of a Matroska file, just
+ * like mkvextract does, but without running any external process.
+ * <p>
+ * Only the clusters the cues point to for the chosen tracks are visited, and
+ * the subtitle blocks are read straight from their cued relative position,
+ * if any, so the video and audio data in between is never read. A cued
+ * cluster is only walked through, reading just its element headers, when a
+ * cue lacks the relative position.
+ * <p>
+ * If a chosen track is not indexed by the cues at all, or a walked cluster
+ * holds a subtitle block its cues don't mention, the cues are deemed sparse
+ * and every cluster is walked through instead.
+ * <p>
+ * NOTE: Files which hold image based, compressed or laced subtitles are left
+ * to mkvextract. The native extractor can be disabled by setting the
+ * <code>mediamanager.mkvextract.native.disabled</code> system property to
+ * <code>true</code>.
+ *
+ * @author vmurcia
+ */
+class MatroskaTextSubtitleExtractor {
+
+    public static final String NATIVE_EXTRACTOR_DISABLED_PROPERTY = "mediamanager.mkvextract.native.disabled";
+    private static final long DEFAULT_TIMECODE_SCALE = 1000000; // Nanoseconds, so timecodes are in milliseconds
+    private static final int LACING_FLAGS = 0x06;
+    private static final String LINE_SEPARATOR = "\r\n";
+    private static final String DEFAULT_EVENTS_HEADER = "[Events]" + LINE_SEPARATOR
+            + "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text";
+    private final File file;
+    private MatroskaSegment segment = null;
+    private long timecodeScale = DEFAULT_TIMECODE_SCALE;
+    private ElementHeader info = null;
+    private ElementHeader tracks = null;
+    private ElementHeader cues = null;
+    private long bytesRead = 0;
+
+    /**
+     * Text subtitle track to be extracted.
+     */
+    private static class TextTrack {
+
+        private long number;
+        private String codecId = null;
+        private byte[] codecPrivate = null;
+        private boolean isEncoded = false;
+        private File outputFile = null;
+        private final List<Subtitle> subtitles = new ArrayList<>();
+
+        boolean isSrt() {
+            return "S_TEXT/UTF8".equals(codecId);
+        }
+
+        boolean isSsa() {
+            return "S_TEXT/SSA".equals(codecId) || "S_SSA".equals(codecId);
+        }
+
+        boolean isAss() {
+            return "S_TEXT/ASS".equals(codecId) || "S_ASS".equals(codecId);
+        }
+    }
+
+    /**
+     * Cluster indexed by the cues for any of the chosen tracks.
+     */
+    private static class CuedCluster {
+
+        private final Set<Long> trackNumbers = new HashSet<>();
+        private final Set<Long> blockPositions = new TreeSet<>(); // Relative to the cluster data
+        private boolean hasUnlocatedBlocks = false;
+    }
+
+    /**
+     * Subtitle block, with its timing in milliseconds.
+     */
+    private static class Subtitle {
+
+        private final long start;
+        private final long end;
+        private final String text;
+
+        Subtitle(long start, long end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+
+    MatroskaTextSubtitleExtractor(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Checks if the given file can be handled by this extractor.
+     *
+     * @param file the media file
+     * @return <code>true</code> if the file seems to be a Matroska file and
+     *         the native extractor is enabled, <code>false</code> otherwise
+     */
+    static boolean canExtract(File file) {
+        if (Boolean.getBoolean(NATIVE_EXTRACTOR_DISABLED_PROPERTY)) {
+            return false;
+        }
+        switch (FileUtils.getExtension(file).toLowerCase()) {
+            case "mkv":
+            case "mks":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Extracts the subtitle tracks chosen by the given mkvextract command.
+     *
+     * @param command the mkvextract command
+     * @return <code>true</code> if the tracks have been extracted,
+     *         <code>false</code> if nothing has been written because
+     *         mkvextract is needed
+     * @throws IOException if the file can't be read or a track can't be
+     *                     written
+     */
+    boolean extract(MkvExtractSubtitlesCommand command) throws IOException {
+        return extract(command.getExtractedFiles());
+    }
+
+    /**
+     * Extracts the given subtitle tracks.
+     *
+     * @param outputFiles the files the tracks are extracted to, by track ID
+     *                    (as mkvextract numbers the tracks, starting at 0)
+     * @return <code>true</code> if the tracks have been extracted,
+     *         <code>false</code> if nothing has been written because
+     *         mkvextract is needed
+     * @throws IOException if the file can't be read or a track can't be
+     *                     written
+     */
+    boolean extract(Map<Integer, File> outputFiles) throws IOException {
+        Map<Long, TextTrack> chosenTracks;
+        try (EbmlReader reader = EbmlReader.open(file)) {
+            chosenTracks = readSubtitles(reader, outputFiles);
+            bytesRead = reader.getBytesRead();
+        }
+        if (chosenTracks == null) {
+            return false;
+        }
+        for (TextTrack track : chosenTracks.values()) {
+            if (track.isSrt()) {
+                writeSrt(track);
+            } else {
+                writeSsa(track);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bytes read from the file by the last extraction
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Reads the subtitle blocks of the given tracks.
+     *
+     * @return the chosen tracks, by track number, or <code>null</code> if
+     *         mkvextract is needed
+     */
+    private Map<Long, TextTrack> readSubtitles(EbmlReader reader, Map<Integer, File> outputFiles) throws IOException {
+        if (!findHeaders(reader)) {
+            System.out.println("Matroska tracks not found");
+            return null;
+        }
+        Map<Long, TextTrack> chosenTracks = getChosenTracks(reader, outputFiles);
+        if (chosenTracks == null) {
+            return null;
+        }
+        Map<Long, CuedCluster> clusters = (cues == null) ? null : readCues(reader, chosenTracks.keySet());
+        if (clusters == null || !readCuedClusters(reader, clusters, chosenTracks)) {
+            System.out.println("Subtitle tracks not fully indexed by the cues, reading every cluster");
+            for (TextTrack track : chosenTracks.values()) {
+                track.subtitles.clear();
+            }
+            if (!readAllClusters(reader, chosenTracks)) {
+                return null;
+            }
+        }
+        return chosenTracks;
+    }
+
+    private boolean findHeaders(EbmlReader reader) throws IOException {
+        segment = MatroskaSegment.find(reader);
+        info = segment.getElement(INFO);
+        tracks = segment.getElement(TRACKS);
+        cues = segment.getElement(CUES);
+        if (info != null) {
+            readTimecodeScale(reader);
+        }
+        return tracks != null;
+    }
+
+    private void readTimecodeScale(EbmlReader reader) throws IOException {
+        reader.seek(info.getDataPosition());
+        for (ElementHeader child = reader.nextChild(info); child != null; child = reader.nextChild(info)) {
+            if (child.getId() == TIMECODE_SCALE) {
+                timecodeScale = reader.readUnsigned(child.getDataSize());
+            }
+            reader.seek(child.getEndPosition());
+        }
+    }
+
+    /**
+     * Gets the chosen tracks, by track number.
+     *
+     * @return the chosen tracks, or <code>null</code> if any of them can't be
+     *         extracted by this extractor
+     */
+    private Map<Long, TextTrack> getChosenTracks(EbmlReader reader, Map<Integer, File> outputFiles) throws IOException {
+        Map<Long, TextTrack> chosenTracks = new LinkedHashMap<>();
+        int trackId = 0;
+        reader.seek(tracks.getDataPosition());
+        for (ElementHeader entry = reader.nextChild(tracks); entry != null; entry = reader.nextChild(tracks)) {
+            if (entry.getId() == TRACK_ENTRY) {
+                File outputFile = outputFiles.get(trackId);
+                if (outputFile != null) {
+                    TextTrack track = readTrackEntry(reader, entry);
+                    track.outputFile = outputFile;
+                    if (!track.isSrt() && !track.isSsa() && !track.isAss()) {
+                        System.out.println("Subtitle track " + trackId + " is not text based: " + track.codecId);
+                        return null;
+                    }
+                    if (track.isEncoded) {
+                        System.out.println("Subtitle track " + trackId + " is compressed");
+                        return null;
+                    }
+                    chosenTracks.put(track.number, track);
+                }
+                trackId++;
+            }
+            reader.seek(entry.getEndPosition());
+        }
+        if (chosenTracks.size() != outputFiles.size()) {
+            System.out.println("Subtitle tracks not found: " + outputFiles.keySet());
+            return null;
+        }
+        return chosenTracks;
+    }
+
+    private static TextTrack readTrackEntry(EbmlReader reader, ElementHeader entry) throws IOException {
+        TextTrack track = new TextTrack();
+        for (ElementHeader child = reader.nextChild(entry); child != null; child = reader.nextChild(entry)) {
+            switch (child.getId()) {
+                case TRACK_NUMBER:
+                    track.number = reader.readUnsigned(child.getDataSize());
+                    break;
+                case CODEC_ID:
+                    track.codecId = reader.readString(child.getDataSize());
+                    break;
+                case CODEC_PRIVATE:
+                    track.codecPrivate = reader.readBytes(child.getDataSize());
+                    break;
+                case CONTENT_ENCODINGS:
+                    track.isEncoded = child.getDataSize() > 0;
+                    break;
+                default:
+                    break;
+            }
+            reader.seek(child.getEndPosition());
+        }
+        return track;
+    }
+
+    /**
+     * Gets the clusters indexed by the cues for any of the chosen tracks.
+     *
+     * @return the cued clusters, by position, or <code>null</code> if any
+     *         track isn't indexed by the cues
+     */
+    private Map<Long, CuedCluster> readCues(EbmlReader reader, Set<Long> trackNumbers) throws IOException {
+        Map<Long, CuedCluster> clusters = new TreeMap<>(); // Visited in file order
+        Set<Long> indexedTracks = new HashSet<>();
+        reader.seek(cues.getDataPosition());
+        for (ElementHeader point = reader.nextChild(cues); point != null; point = reader.nextChild(cues)) {
+            if (point.getId() == CUE_POINT) {
+                for (ElementHeader positions = reader.nextChild(point); positions != null; positions = reader.nextChild(point)) {
+                    if (positions.getId() == CUE_TRACK_POSITIONS) {
+                        readCueTrackPositions(reader, positions, trackNumbers, clusters, indexedTracks);
+                    }
+                    reader.seek(positions.getEndPosition());
+                }
+            }
+            reader.seek(point.getEndPosition());
+        }
+        return indexedTracks.containsAll(trackNumbers) ? clusters : null;
+    }
+
+    private void readCueTrackPositions(EbmlReader reader, ElementHeader positions, Set<Long> trackNumbers,
+                                       Map<Long, CuedCluster> clusters, Set<Long> indexedTracks) throws IOException {
+        long track = -1;
+        long clusterPosition = -1;
+        long relativePosition = -1;
+        for (ElementHeader child = reader.nextChild(positions); child != null; child = reader.nextChild(positions)) {
+            if (child.getId() == CUE_TRACK) {
+                track = reader.readUnsigned(child.getDataSize());
+            } else if (child.getId() == CUE_CLUSTER_POSITION) {
+                clusterPosition = segment.getDataPosition() + reader.readUnsigned(child.getDataSize());
+            } else if (child.getId() == CUE_RELATIVE_POSITION) {
+                relativePosition = reader.readUnsigned(child.getDataSize());
+            }
+            reader.seek(child.getEndPosition());
+        }
+        if (!trackNumbers.contains(track) || clusterPosition < 0) {
+            return;
+        }
+        indexedTracks.add(track);
+        CuedCluster cluster = clusters.get(clusterPosition);
+        if (cluster == null) {
+            cluster = new CuedCluster();
+            clusters.put(clusterPosition, cluster);
+        }
+        cluster.trackNumbers.add(track);
+        if (relativePosition < 0) {
+            cluster.hasUnlocatedBlocks = true;
+        } else {
+            cluster.blockPositions.add(relativePosition);
+        }
+    }
+
+    /**
+     * Reads the subtitle blocks of the cued clusters only, jumping straight
+     * to the cued blocks whenever their relative position is known.
+     *
+     * @return <code>true</code> if the cues seem to index every subtitle
+     *         block, <code>false</code> otherwise
+     */
+    private boolean readCuedClusters(EbmlReader reader, Map<Long, CuedCluster> clusters,
+                                     Map<Long, TextTrack> chosenTracks) throws IOException {
+        for (Map.Entry<Long, CuedCluster> entry : clusters.entrySet()) {
+            CuedCluster cuedCluster = entry.getValue();
+            if (entry.getKey() >= segment.getEnd()) {
+                return false;
+            }
+            reader.seek(entry.getKey());
+            ElementHeader cluster = reader.readElementHeader();
+            if (cluster.getId() != CLUSTER || cluster.hasUnknownSize()) {
+                System.out.println("Cue not pointing to a cluster at position " + entry.getKey());
+                return false;
+            }
+            long clusterTimecode = readClusterTimecode(reader, cluster);
+            if (cuedCluster.hasUnlocatedBlocks) {
+                reader.seek(cluster.getDataPosition());
+                for (ElementHeader child = reader.nextChild(cluster); child != null; child = reader.nextChild(cluster)) {
+                    TextTrack track = readBlock(reader, child, clusterTimecode, chosenTracks);
+                    if (track != null && !cuedCluster.trackNumbers.contains(track.number)) {
+                        System.out.println("Subtitle block not indexed by the cues at position " + child.getPosition());
+                        return false;
+                    }
+                    reader.seek(child.getEndPosition());
+                }
+            } else {
+                for (long blockPosition : cuedCluster.blockPositions) {
+                    reader.seek(cluster.getDataPosition() + blockPosition);
+                    ElementHeader block = reader.nextChild(cluster);
+                    if (block == null || readBlock(reader, block, clusterTimecode, chosenTracks) == null) {
+                        System.out.println("Cue not pointing to a subtitle block in the cluster at position " + entry.getKey());
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads every cluster, skipping the data of the other tracks.
+     *
+     * @return <code>true</code> if the clusters have been read,
+     *         <code>false</code> if they can't be found
+     */
+    private boolean readAllClusters(EbmlReader reader, Map<Long, TextTrack> chosenTracks) throws IOException {
+        long position = segment.getFirstClusterPosition();
+        if (position < 0) {
+            System.out.println("Matroska clusters not found");
+            return false;
+        }
+        reader.seek(position);
+        while (reader.getPosition() < segment.getEnd()) {
+            ElementHeader element = reader.readElementHeader();
+            if (element.hasUnknownSize()) {
+                throw new IOException("Matroska element of unknown size at position " + element.getPosition());
+            }
+            if (element.getId() == CLUSTER) {
+                long clusterTimecode = readClusterTimecode(reader, element);
+                reader.seek(element.getDataPosition());
+                for (ElementHeader child = reader.nextChild(element); child != null; child = reader.nextChild(element)) {
+                    readBlock(reader, child, clusterTimecode, chosenTracks);
+                    reader.seek(child.getEndPosition());
+                }
+            }
+            reader.seek(element.getEndPosition());
+        }
+        return true;
+    }
+
+    private static long readClusterTimecode(EbmlReader reader, ElementHeader cluster) throws IOException {
+        for (ElementHeader child = reader.nextChild(cluster); child != null; child = reader.nextChild(cluster)) {
+            if (child.getId() == CLUSTER_TIMECODE) {
+                return reader.readUnsigned(child.getDataSize());
+            }
+            reader.seek(child.getEndPosition());
+        }
+        throw new IOException("Cluster without timecode at position " + cluster.getPosition());
+    }
+
+    /**
+     * Reads the given cluster child, if it is a block of any of the chosen
+     * tracks.
+     *
+     * @return the track of the block, or <code>null</code> if the element is
+     *         not a block of any of the chosen tracks
+     */
+    private TextTrack readBlock(EbmlReader reader, ElementHeader element, long clusterTimecode,
+                                Map<Long, TextTrack> chosenTracks) throws IOException {
+        if (element.getId() == SIMPLE_BLOCK) {
+            return readBlockData(reader, element, clusterTimecode, 0, chosenTracks);
+        } else if (element.getId() == BLOCK_GROUP) {
+            ElementHeader block = null;
+            long duration = 0;
+            for (ElementHeader child = reader.nextChild(element); child != null; child = reader.nextChild(element)) {
+                if (child.getId() == BLOCK) {
+                    block = child;
+                } else if (child.getId() == BLOCK_DURATION) {
+                    duration = reader.readUnsigned(child.getDataSize());
+                }
+                reader.seek(child.getEndPosition());
+            }
+            if (block != null) {
+                reader.seek(block.getDataPosition());
+                return readBlockData(reader, block, clusterTimecode, duration, chosenTracks);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the block whose data the reader is at, if it belongs to any of the
+     * chosen tracks.
+     */
+    private TextTrack readBlockData(EbmlReader reader, ElementHeader block, long clusterTimecode, long duration,
+                                    Map<Long, TextTrack> chosenTracks) throws IOException {
+        TextTrack track = chosenTracks.get(reader.readSize()); // Track numbers are coded like sizes
+        if (track == null) {
+            return null;
+        }
+        long timecode = clusterTimecode + reader.readSigned(2);
+        int flags = (int) reader.readUnsigned(1);
+        if ((flags & LACING_FLAGS) != 0) {
+            throw new IOException("Laced subtitle block at position " + block.getPosition());
+        }
+        byte[] text = reader.readBytes(block.getEndPosition() - reader.getPosition());
+        long start = toMilliseconds(timecode);
+        long end = toMilliseconds(timecode + duration);
+        track.subtitles.add(new Subtitle(start, end, new String(text, StandardCharsets.UTF_8)));
+        return track;
+    }
+
+    private long toMilliseconds(long timecode) {
+        return timecode * timecodeScale / 1000000;
+    }
+
+    private static void writeSrt(TextTrack track) throws IOException {
+        sortByStart(track.subtitles);
+        try (Writer writer = newWriter(track.outputFile)) {
+            int number = 1;
+            for (Subtitle subtitle : track.subtitles) {
+                writer.write(number++ + LINE_SEPARATOR);
+                writer.write(formatSrtTime(subtitle.start) + " --> " + formatSrtTime(subtitle.end) + LINE_SEPARATOR);
+                writer.write(normalizeLineSeparators(subtitle.text.trim()) + LINE_SEPARATOR + LINE_SEPARATOR);
+            }
+        }
+    }
+
+    /**
+     * Writes an SSA/ASS script, made of the track private data, which holds
+     * the script header and styles, and a dialogue line per block.
+     * <p>
+     * NOTE: Blocks hold the dialogue fields except for the timing, preceded
+     * by the original read order, which the dialogue lines are sorted by.
+     */
+    private static void writeSsa(final TextTrack track) throws IOException {
+        String header = (track.codecPrivate == null) ? "" : new String(track.codecPrivate, StandardCharsets.UTF_8).trim();
+        Collections.sort(track.subtitles, new Comparator<Subtitle>() {
+            @Override
+            public int compare(Subtitle subtitle1, Subtitle subtitle2) {
+                return Long.compare(getReadOrder(subtitle1), getReadOrder(subtitle2));
+            }
+        });
+        try (Writer writer = newWriter(track.outputFile)) {
+            writer.write(normalizeLineSeparators(header) + LINE_SEPARATOR);
+            if (!header.contains("[Events]")) {
+                writer.write(LINE_SEPARATOR + DEFAULT_EVENTS_HEADER + LINE_SEPARATOR);
+            }
+            for (Subtitle subtitle : track.subtitles) {
+                String[] fields = subtitle.text.split(",", 3);
+                if (fields.length < 3) {
+                    continue;
+                }
+                writer.write("Dialogue: " + (track.isSsa() ? "Marked=" : "") + fields[1] + ","
+                             + formatSsaTime(subtitle.start) + "," + formatSsaTime(subtitle.end) + ","
+                             + fields[2] + LINE_SEPARATOR);
+            }
+        }
+    }
+
+    private static long getReadOrder(Subtitle subtitle) {
+        int end = subtitle.text.indexOf(',');
+        try {
+            return Long.parseLong(subtitle.text.substring(0, Math.max(end, 0)).trim());
+        } catch (NumberFormatException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void sortByStart(List<Subtitle> subtitles) {
+        Collections.sort(subtitles, new Comparator<Subtitle>() {
+            @Override
+            public int compare(Subtitle subtitle1, Subtitle subtitle2) {
+                return Long.compare(subtitle1.start, subtitle2.start);
+            }
+        });
+    }
+
+    /**
+     * Opens a UTF-8 writer over the given file, starting with a byte order
+     * mark, just like mkvextract does.
+     */
+    private static Writer newWriter(File outputFile) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+        return writer;
+    }
+
+    private static String normalizeLineSeparators(String text) {
+        return text.replace("\r\n", "\n").replace("\n", LINE_SEPARATOR);
+    }
+
+    private static String formatSrtTime(long milliseconds) {
+        return String.format("%02d:%02d:%02d,%03d", milliseconds / 3600000, milliseconds / 60000 % 60,
+                             milliseconds / 1000 % 60, milliseconds % 1000);
+    }
+
+    private static String formatSsaTime(long milliseconds) {
+        return String.format("%d:%02d:%02d.%02d", milliseconds / 3600000, milliseconds / 60000 % 60,
+                             milliseconds / 1000 % 60, milliseconds % 1000 / 10);
+    }
+}
@@ -2,7 +2,9 @@ package lan.vandiemens.media.matroska;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lan.vandiemens.media.MediaFile;
 import lan.vandiemens.media.info.track.Track;
 import lan.vandiemens.media.info.track.TrackType;
@@ -63,16 +65,33 @@ public class MkvExtractSubtitlesCommand extends MkvToolnixCommand {
     }
 
     private String getExtractionDescription(Track track) {
-        String description = track.getTrackId() + COLON;
-        description += inputFile.getParent() + File.separator;
-        description += FileUtils.getNameWithoutExtension(inputFile);
-        description += UNDERSCORE + "track" + track.getTrackNumber();
+        return track.getTrackId() + COLON + getExtractedFilePath(track);
+    }
+
+    private String getExtractedFilePath(Track track) {
+        String path = inputFile.getParent() + File.separator;
+        path += FileUtils.getNameWithoutExtension(inputFile);
+        path += UNDERSCORE + "track" + track.getTrackNumber();
         if (track.getTitle() != null) {
-            description += UNDERSCORE + track.getTitle();
+            path += UNDERSCORE + track.getTitle();
+        }
+        path += UNDERSCORE + track.getLanguageCode();
+        path += PERIOD + track.getAssociatedFileExtension();
+        return path;
+    }
+
+    /**
+     * Gets the file each chosen subtitle track is extracted to.
+     *
+     * @return the extracted files, by track ID (as mkvextract numbers the
+     *         tracks, starting at 0)
+     */
+    public Map<Integer, File> getExtractedFiles() {
+        Map<Integer, File> extractedFiles = new LinkedHashMap<>();
+        for (Track track : chosenTracks) {
+            extractedFiles.put(track.getTrackId(), new File(getExtractedFilePath(track)));
         }
-        description += UNDERSCORE + track.getLanguageCode();
-        description += PERIOD + track.getAssociatedFileExtension();
-        return description;
+        return extractedFiles;
     }
 
     @Override
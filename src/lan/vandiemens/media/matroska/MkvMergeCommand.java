@@ -1,6 +1,11 @@
 package lan.vandiemens.media.matroska;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import lan.vandiemens.media.AudioFile;
 import lan.vandiemens.media.MediaFile;
@@ -10,12 +15,26 @@ import lan.vandiemens.media.info.track.TrackType;
 import lan.vandiemens.media.info.track.VideoTrack;
 
 /**
+ * mkvmerge command which remuxes a media file, along with its external audio
+ * and subtitle files, into a single Matroska file.
+ * <p>
+ * The arguments are kept as a list, exactly as mkvmerge receives them, so no
+ * quoting is ever needed. When they are too long for a command line, they are
+ * handed to mkvmerge in a JSON option file instead.
+ * <p>
+ * NOTE: The length of the arguments above which an option file is used can be
+ * changed with the <code>mediamanager.mkvmerge.optionfile.threshold</code>
+ * system property. The option file is written once, and deleted by
+ * {@link MkvToolNixHelper} as soon as mkvmerge exits.
  *
  * @author vmurcia
  */
 public class MkvMergeCommand extends MkvToolnixCommand {
 
+    public static final String OPTION_FILE_THRESHOLD_PROPERTY = "mediamanager.mkvmerge.optionfile.threshold";
+    private static final int DEFAULT_OPTION_FILE_THRESHOLD = 8000; // Safely below the Windows shell limit
     private static final String MAIN_FILE_ID = "0";
+    private static final String OPTION_FILE_PREFIX = "@";
     private static final String TRACK_ORDER_OPTION = "--track-order";
     private static final String LANGUAGE_OPTION = "--language";
     private static final String DEFAULT_TRACK_OPTION = "--default-track";
@@ -33,160 +52,181 @@ public class MkvMergeCommand extends MkvToolnixCommand {
     private static final String NO_TRACK_TAGS_OPTION = "-T";
     private static final String NO_GLOBAL_TAGS_OPTION = "--no-global-tags";
     private static final String NO_CHAPTERS_OPTION = "--no-chapters";
-    private static final int DEFAULT_TRACK_DESCRIPTION_LENGTH = 200;
-    private String[] inputDescriptions = null;
-    private String trackOrder = null;
+    private List<String> arguments = null; // Every argument but the executable
+    private File optionFile = null;
 
     public MkvMergeCommand(MediaFile mediaFile) {
         mediaFile.consolidate();
         title = mediaFile.getFormattedTitle();
         inputFile = mediaFile.getMainFile();
         outputFile = generateOutputMkvFile(mediaFile);
-        inputDescriptions = getInputDescriptions(mediaFile);
-        trackOrder = getTrackOrder(mediaFile);
+        arguments = getArguments(mediaFile);
+    }
+
+    /**
+     * Gets the mkvmerge arguments, unquoted and without the executable, just
+     * as mkvmerge receives them.
+     *
+     * @return the arguments
+     */
+    public List<String> getArguments() {
+        return Collections.unmodifiableList(arguments);
     }
 
     @Override
     public String toString() {
         StringBuilder command = new StringBuilder(DEFAULT_COMMAND_LENGTH);
-        command.append(DOUBLE_QUOTES).append(MkvToolNixHelper.getMkvMergeExecutable().getAbsolutePath()).append(DOUBLE_QUOTES);
-        command.append(SPACE);
-        command.append(OUTPUT_OPTION);
-        command.append(SPACE);
-        command.append(DOUBLE_QUOTES).append(outputFile.getAbsolutePath()).append(DOUBLE_QUOTES);
-        command.append(SPACE);
-        for (String description : inputDescriptions) {
-            command.append(description);
+        command.append(quote(MkvToolNixHelper.getMkvMergeExecutable().getAbsolutePath()));
+        for (String argument : arguments) {
             command.append(SPACE);
+            command.append(quote(argument));
         }
-        command.append(DOUBLE_QUOTES).append(TRACK_ORDER_OPTION).append(DOUBLE_QUOTES);
-        command.append(SPACE);
-        command.append(DOUBLE_QUOTES).append(trackOrder).append(DOUBLE_QUOTES);
-        command.append(SPACE);
-        command.append(DOUBLE_QUOTES).append(TITLE_OPTION).append(DOUBLE_QUOTES);
-        command.append(SPACE);
-        command.append(DOUBLE_QUOTES).append(title).append(DOUBLE_QUOTES);
-
         return command.toString();
     }
 
     @Override
-    public List<String> toList() {
-        // Given the way mkvmerge processes the command, it should be split in 4
-        // parts: the real command, the output argument, the output folder, and
-        // the remainder options
-        List<String> result = new ArrayList<>(4);
-
-        // Add command
+    public synchronized List<String> toList() {
+        List<String> result = new ArrayList<>(arguments.size() + 1);
         result.add(MkvToolNixHelper.getMkvMergeExePath());
+        if (getCommandLineLength(arguments) > Integer.getInteger(OPTION_FILE_THRESHOLD_PROPERTY, DEFAULT_OPTION_FILE_THRESHOLD)) {
+            try {
+                if (optionFile == null) {
+                    optionFile = writeOptionFile();
+                }
+                result.add(OPTION_FILE_PREFIX + optionFile.getAbsolutePath());
+                return result;
+            } catch (IOException ex) {
+                System.out.println("mkvmerge option file could not be written: " + ex.getMessage());
+            }
+        }
+        result.addAll(arguments);
+        return result;
+    }
 
-        // Add output option
-        result.add(OUTPUT_OPTION);
-
-        // Add output folder
-        result.add(DOUBLE_QUOTES + outputFile.getAbsolutePath() + DOUBLE_QUOTES);
-
-        // Add the rest of the options
-        StringBuilder argumentSequence = new StringBuilder(DEFAULT_COMMAND_LENGTH);
-        for (String description : inputDescriptions) {
-            argumentSequence.append(description);
-            argumentSequence.append(SPACE);
+    /**
+     * Deletes the option file written for mkvmerge, if any.
+     */
+    public synchronized void deleteOptionFile() {
+        if (optionFile != null) {
+            if (!optionFile.delete()) {
+                System.out.println("mkvmerge option file could not be deleted: " + optionFile);
+            }
+            optionFile = null;
         }
-        argumentSequence.append(DOUBLE_QUOTES).append(TRACK_ORDER_OPTION).append(DOUBLE_QUOTES);
-        argumentSequence.append(SPACE);
-        argumentSequence.append(DOUBLE_QUOTES).append(trackOrder).append(DOUBLE_QUOTES);
-        argumentSequence.append(SPACE);
-        argumentSequence.append(DOUBLE_QUOTES).append(TITLE_OPTION).append(DOUBLE_QUOTES);
-        argumentSequence.append(SPACE);
-        argumentSequence.append(DOUBLE_QUOTES).append(title).append(DOUBLE_QUOTES);
-        result.add(argumentSequence.toString());
+    }
 
+    private List<String> getArguments(MediaFile mediaFile) {
+        List<String> result = new ArrayList<>();
+        result.add(OUTPUT_OPTION);
+        result.add(outputFile.getAbsolutePath());
+        addMainFileArguments(result, mediaFile);
+        for (Track track : mediaFile.getEnabledTracks()) { // External files are added in track order
+            if (track.isExternal() && track.getType() == TrackType.AUDIO) {
+                addExternalFileArguments(result, track, AUDIO_TRACKS_OPTION, NO_SUBTITLES_OPTION, ((AudioFile) track).getAbsolutePath());
+            } else if (track.isExternal() && track.getType() == TrackType.SUBTITLE) {
+                addExternalFileArguments(result, track, SUBTITLE_TRACKS_OPTION, NO_AUDIO_OPTION, ((SubtitleFile) track).getAbsolutePath());
+            }
+        }
+        result.add(TRACK_ORDER_OPTION);
+        result.add(getTrackOrder(mediaFile));
+        result.add(TITLE_OPTION);
+        result.add(title);
         return result;
     }
 
-    private String[] getInputDescriptions(MediaFile mediaFile) {
-        String[] descriptions = new String[mediaFile.getFileCount()];
-        int fileId = 1; // Main video file is always FID=0, as its video track is always the first one in the output file
-        int audioTrackCounter = 0;
-        int audioTrackCount = mediaFile.getMediaInfo().getEnabledInternalAudioTrackCount();
-        int subtitleCounter = 0;
-        StringBuilder trackTypeDescription = new StringBuilder();
-        StringBuilder mainDescription = new StringBuilder(200);
-
-        Track[] tracks = mediaFile.getEnabledTracks();
-        for (Track track : tracks) {
+    /**
+     * Adds the arguments of the main file, which is always the first one, as
+     * its video track is always the first one in the output file.
+     */
+    private void addMainFileArguments(List<String> result, MediaFile mediaFile) {
+        String videoTrackIds = null;
+        List<String> audioTrackIds = new ArrayList<>();
+        List<String> subtitleTrackIds = new ArrayList<>();
+        for (Track track : mediaFile.getEnabledTracks()) {
+            if (track.isExternal()) {
+                continue;
+            }
+            String trackId = String.valueOf(track.getTrackId());
+            addTrackArguments(result, trackId, track);
             switch (track.getType()) {
                 case VIDEO: // First and only video track
-                    mainDescription.append(getDescription(track));
-                    mainDescription.append(SPACE);
-                    trackTypeDescription.append(DOUBLE_QUOTES).append(VIDEO_TRACKS_OPTION).append(DOUBLE_QUOTES);
-                    trackTypeDescription.append(SPACE);
-                    trackTypeDescription.append(DOUBLE_QUOTES).append(track.getTrackId()).append(DOUBLE_QUOTES);
-                    trackTypeDescription.append(SPACE);
+                    result.add(DISPLAY_DIMENSIONS_OPTION);
+                    result.add(trackId + COLON + ((VideoTrack) track).getResolution());
+                    videoTrackIds = trackId;
                     break;
                 case AUDIO:
-                    if (track.isExternal()) {
-                        descriptions[fileId++] = getDescription((AudioFile) track);
-                    } else {
-                        mainDescription.append(getDescription(track));
-                        mainDescription.append(SPACE);
-                        if (audioTrackCounter++ > 0) {
-                            trackTypeDescription.append(COMMA);
-                        } else {
-                            trackTypeDescription.append(DOUBLE_QUOTES).append(AUDIO_TRACKS_OPTION).append(DOUBLE_QUOTES);
-                            trackTypeDescription.append(SPACE);
-                            trackTypeDescription.append(DOUBLE_QUOTES);
-                        }
-                        trackTypeDescription.append(track.getTrackId());
-                        if (audioTrackCounter == audioTrackCount) { // Last audio track
-                            trackTypeDescription.append(DOUBLE_QUOTES);
-                            trackTypeDescription.append(SPACE);
-                        }
-                    }
+                    audioTrackIds.add(trackId);
                     break;
                 case SUBTITLE:
-                    if (track.isExternal()) {
-                        descriptions[fileId++] = getDescription((SubtitleFile) track);
-                    } else {
-                        mainDescription.append(getDescription(track));
-                        mainDescription.append(SPACE);
-                        if (subtitleCounter++ > 0) {
-                            trackTypeDescription.append(COMMA);
-                        } else {
-                            trackTypeDescription.append(DOUBLE_QUOTES).append(SUBTITLE_TRACKS_OPTION).append(DOUBLE_QUOTES);
-                            trackTypeDescription.append(SPACE);
-                            trackTypeDescription.append(DOUBLE_QUOTES);
-                        }
-                        trackTypeDescription.append(track.getTrackId());
-                    }
+                    subtitleTrackIds.add(trackId);
                     break;
                 default: // Can't happen
             }
         }
-        if (subtitleCounter > 0) {
-            trackTypeDescription.append(DOUBLE_QUOTES);
+        if (videoTrackIds != null) {
+            result.add(VIDEO_TRACKS_OPTION);
+            result.add(videoTrackIds);
+        }
+        if (!audioTrackIds.isEmpty()) {
+            result.add(AUDIO_TRACKS_OPTION);
+            result.add(join(audioTrackIds));
+        }
+        if (subtitleTrackIds.isEmpty()) {
+            result.add(NO_SUBTITLES_OPTION);
         } else {
-            trackTypeDescription.append(DOUBLE_QUOTES).append(NO_SUBTITLES_OPTION).append(DOUBLE_QUOTES);
+            result.add(SUBTITLE_TRACKS_OPTION);
+            result.add(join(subtitleTrackIds));
         }
-
-        mainDescription.append(trackTypeDescription);
-        mainDescription.append(SPACE);
-        mainDescription.append(DOUBLE_QUOTES).append(NO_TRACK_TAGS_OPTION).append(DOUBLE_QUOTES);
-        mainDescription.append(SPACE);
-        mainDescription.append(DOUBLE_QUOTES).append(NO_GLOBAL_TAGS_OPTION).append(DOUBLE_QUOTES);
-        mainDescription.append(SPACE);
+        result.add(NO_TRACK_TAGS_OPTION);
+        result.add(NO_GLOBAL_TAGS_OPTION);
         if (!mediaFile.hasChapters()) {
-            mainDescription.append(DOUBLE_QUOTES).append(NO_CHAPTERS_OPTION).append(DOUBLE_QUOTES);
-            mainDescription.append(SPACE);
+            result.add(NO_CHAPTERS_OPTION);
         }
-        mainDescription.append(DOUBLE_QUOTES).append(LEFT_PARENTHESIS).append(DOUBLE_QUOTES);
-        mainDescription.append(SPACE);
-        mainDescription.append(DOUBLE_QUOTES).append(mediaFile.getMainFile().getAbsolutePath()).append(DOUBLE_QUOTES);
-        mainDescription.append(SPACE);
-        mainDescription.append(DOUBLE_QUOTES).append(RIGHT_PARENTHESIS).append(DOUBLE_QUOTES);
+        addFile(result, mediaFile.getMainFile().getAbsolutePath());
+    }
 
-        descriptions[0] = mainDescription.toString();
-        return descriptions;
+    /**
+     * Adds the arguments of an external audio or subtitle file, whose only
+     * track is always TID=0.
+     */
+    private void addExternalFileArguments(List<String> result, Track track, String tracksOption, String noTracksOption, String path) {
+        addTrackArguments(result, MAIN_FILE_ID, track);
+        result.add(tracksOption);
+        result.add(MAIN_FILE_ID);
+        result.add(NO_VIDEO_OPTION);
+        result.add(noTracksOption);
+        result.add(NO_TRACK_TAGS_OPTION);
+        result.add(NO_GLOBAL_TAGS_OPTION);
+        result.add(NO_CHAPTERS_OPTION);
+        addFile(result, path);
+    }
+
+    private void addTrackArguments(List<String> result, String trackId, Track track) {
+        result.add(LANGUAGE_OPTION);
+        result.add(trackId + COLON + track.getLanguageCode());
+        result.add(TRACK_NAME_OPTION);
+        result.add(trackId + COLON + getTrackName(track));
+        result.add(DEFAULT_TRACK_OPTION);
+        result.add(trackId + COLON + (track.isDefault() ? "yes" : "no"));
+        result.add(FORCED_TRACK_OPTION);
+        result.add(trackId + COLON + (track.isForced() ? "yes" : "no"));
+    }
+
+    private static void addFile(List<String> result, String path) {
+        result.add(LEFT_PARENTHESIS);
+        result.add(path);
+        result.add(RIGHT_PARENTHESIS);
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder result = new StringBuilder();
+        for (String value : values) {
+            if (result.length() > 0) {
+                result.append(COMMA);
+            }
+            result.append(value);
+        }
+        return result.toString();
     }
 
     /**
@@ -228,122 +268,91 @@ public class MkvMergeCommand extends MkvToolnixCommand {
         return order.toString();
     }
 
-    private String getDescription(AudioFile audioFile) {
-        StringBuilder description = new StringBuilder(DEFAULT_TRACK_DESCRIPTION_LENGTH);
-        description.append(DOUBLE_QUOTES).append(LANGUAGE_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(audioFile.getLanguageCode()).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(TRACK_NAME_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(getTrackName(audioFile)).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(DEFAULT_TRACK_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(audioFile.isDefault() ? "yes" : "no").append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(FORCED_TRACK_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(audioFile.isForced() ? "yes" : "no").append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(AUDIO_TRACKS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0").append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_VIDEO_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_SUBTITLES_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_TRACK_TAGS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_GLOBAL_TAGS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_CHAPTERS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(LEFT_PARENTHESIS).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(audioFile.getAbsolutePath()).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(RIGHT_PARENTHESIS).append(DOUBLE_QUOTES);
-
-        return description.toString();
+    private String getTrackName(Track track) {
+        switch (track.getType()) {
+            case VIDEO:
+                return title;
+            default:
+                return track.getFormattedTitle();
+        }
     }
 
-    private String getDescription(SubtitleFile subtitleFile) {
-        StringBuilder description = new StringBuilder(DEFAULT_TRACK_DESCRIPTION_LENGTH);
-        description.append(DOUBLE_QUOTES).append(LANGUAGE_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(subtitleFile.getLanguageCode()).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(TRACK_NAME_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(getTrackName(subtitleFile)).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(DEFAULT_TRACK_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(subtitleFile.isDefault() ? "yes" : "no").append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(FORCED_TRACK_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0:").append(subtitleFile.isForced() ? "yes" : "no").append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(SUBTITLE_TRACKS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append("0").append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_VIDEO_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_AUDIO_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_TRACK_TAGS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_GLOBAL_TAGS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(NO_CHAPTERS_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(LEFT_PARENTHESIS).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(subtitleFile.getAbsolutePath()).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(RIGHT_PARENTHESIS).append(DOUBLE_QUOTES);
-
-        return description.toString();
+    /**
+     * Writes the arguments to a temporary mkvmerge JSON option file.
+     */
+    private File writeOptionFile() throws IOException {
+        File file = File.createTempFile("mkvmerge", ".json");
+        try {
+            Files.write(file.toPath(), toJsonArray(arguments).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            file.delete();
+            throw ex;
+        }
+        return file;
     }
 
-    private String getDescription(Track track) {
-        StringBuilder description = new StringBuilder(DEFAULT_TRACK_DESCRIPTION_LENGTH);
-        description.append(DOUBLE_QUOTES).append(LANGUAGE_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(track.getTrackId()).append(COLON).append(track.getLanguageCode()).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(TRACK_NAME_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(track.getTrackId()).append(COLON).append(getTrackName(track)).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(DEFAULT_TRACK_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(track.getTrackId()).append(COLON).append(track.isDefault() ? "yes" : "no").append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(FORCED_TRACK_OPTION).append(DOUBLE_QUOTES);
-        description.append(SPACE);
-        description.append(DOUBLE_QUOTES).append(track.getTrackId()).append(COLON).append(track.isForced() ? "yes" : "no").append(DOUBLE_QUOTES);
-
-        if (track.getType() == TrackType.VIDEO) {
-            description.append(SPACE);
-            description.append(DOUBLE_QUOTES).append(DISPLAY_DIMENSIONS_OPTION).append(DOUBLE_QUOTES);
-            description.append(SPACE);
-            description.append(DOUBLE_QUOTES).append(track.getTrackId()).append(COLON).append(((VideoTrack) track).getResolution()).append(DOUBLE_QUOTES);
+    /**
+     * Gets the length of the given arguments once quoted and separated by
+     * spaces.
+     */
+    private static int getCommandLineLength(List<String> arguments) {
+        int length = 0;
+        for (String argument : arguments) {
+            length += argument.length() + 3;
         }
+        return length;
+    }
 
-        return description.toString();
+    /**
+     * Quotes an argument for display, escaping the double quotes it contains.
+     */
+    private static String quote(String argument) {
+        return DOUBLE_QUOTES + argument.replace(DOUBLE_QUOTES, "\\" + DOUBLE_QUOTES) + DOUBLE_QUOTES;
     }
 
-    private String getTrackName(Track track) {
-        switch (track.getType()) {
-            case VIDEO:
-                return title;
-            default:
-                return track.getFormattedTitle();
+    /**
+     * Builds the content of an mkvmerge JSON option file, which is an array
+     * holding every argument as a string.
+     *
+     * @param arguments the mkvmerge arguments
+     * @return the JSON array
+     */
+    static String toJsonArray(List<String> arguments) {
+        StringBuilder json = new StringBuilder(DEFAULT_COMMAND_LENGTH);
+        json.append('[');
+        for (int i = 0; i < arguments.size(); i++) {
+            if (i > 0) {
+                json.append(COMMA);
+            }
+            json.append('"');
+            for (char c : arguments.get(i).toCharArray()) {
+                switch (c) {
+                    case '"':
+                        json.append("\\\"");
+                        break;
+                    case '\\':
+                        json.append("\\\\");
+                        break;
+                    case '\n':
+                        json.append("\\n");
+                        break;
+                    case '\r':
+                        json.append("\\r");
+                        break;
+                    case '\t':
+                        json.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            json.append('"');
         }
+        json.append(']');
+        return json.toString();
     }
 }
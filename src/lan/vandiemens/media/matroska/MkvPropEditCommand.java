@@ -2,6 +2,7 @@ package lan.vandiemens.media.matroska;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import lan.vandiemens.media.EditableMkvProperties;
 import lan.vandiemens.media.MediaFile;
@@ -25,6 +26,54 @@ public class MkvPropEditCommand extends MkvToolnixCommand {
     public static final String TRACK_NAME_PROPERTY = "name";
     public static final String LANGUAGE_PROPERTY = "language";
     private String[] trackEditDescriptions = null;
+    private final List<TrackEdit> trackEdits = new ArrayList<>();
+
+    /**
+     * Properties set on a track header by this command.
+     */
+    public static class TrackEdit {
+
+        private final int trackNumber;
+        private final boolean isDefault;
+        private final boolean isForced;
+        private final String name;
+        private final String language;
+
+        TrackEdit(int trackNumber, boolean isDefault, boolean isForced, String name, String language) {
+            this.trackNumber = trackNumber;
+            this.isDefault = isDefault;
+            this.isForced = isForced;
+            this.name = name;
+            this.language = language;
+        }
+
+        /**
+         * @return the position of the track among the file tracks, starting
+         *         at 1, just like mkvpropedit numbers them
+         */
+        public int getTrackNumber() {
+            return trackNumber;
+        }
+
+        public boolean isDefault() {
+            return isDefault;
+        }
+
+        public boolean isForced() {
+            return isForced;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the ISO 639-2 language code
+         */
+        public String getLanguage() {
+            return language;
+        }
+    }
 
 
     public MkvPropEditCommand(MediaFile mediaFile) {
@@ -45,6 +94,10 @@ public class MkvPropEditCommand extends MkvToolnixCommand {
         String[] descriptions = new String[tracks.length];
         for (int i = 0; i < tracks.length; i++) {
             descriptions[i] = tracks[i].getMkvPropEditDescription();
+            if (!descriptions[i].isEmpty()) {
+                trackEdits.add(new TrackEdit(tracks[i].getTrackNumber(), tracks[i].isDefault(), tracks[i].isForced(),
+                                             tracks[i].getFormattedTitle(), tracks[i].getLanguage().getThreeLettersIsoCode()));
+            }
         }
         return descriptions;
     }
@@ -53,6 +106,8 @@ public class MkvPropEditCommand extends MkvToolnixCommand {
         String[] descriptions = new String[mkvProperties.getTrackCount()];
         for (int i = 0; i < mkvProperties.getTrackCount(); i++) {
             descriptions[i] = getMkvPropEditDescription(mkvProperties, i);
+            trackEdits.add(new TrackEdit(i + 1, mkvProperties.isDefault(i), mkvProperties.isForced(i),
+                                         mkvProperties.getTitle(i), mkvProperties.getLanguage(i).getThreeLettersIsoCode()));
         }
         return descriptions;
     }
@@ -85,6 +140,17 @@ public class MkvPropEditCommand extends MkvToolnixCommand {
         return builder.toString();
     }
 
+    /**
+     * @return the segment title set by this command
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    public List<TrackEdit> getTrackEdits() {
+        return Collections.unmodifiableList(trackEdits);
+    }
+
     @Override
     public String toString() {
         StringBuilder command = new StringBuilder(DEFAULT_COMMAND_LENGTH);
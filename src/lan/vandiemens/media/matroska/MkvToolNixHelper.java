@@ -1,9 +1,11 @@
 package lan.vandiemens.media.matroska;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import lan.vandiemens.media.process.ManagedProcess;
+import lan.vandiemens.media.process.ProcessExecutor;
+import lan.vandiemens.media.process.ProcessExecutor.Lane;
+import lan.vandiemens.media.process.ProcessExecutor.OutputListener;
 import lan.vandiemens.util.SystemUtils;
 
 /**
@@ -122,6 +124,12 @@ public class MkvToolNixHelper {
 
     /**
      * Runs a platform-dependent command to edit Matroska videos.
+     * <p>
+     * NOTE: Header editions are made in place by a native Matroska header
+     * editor whenever the edited elements fit in their current space, or else
+     * by mkvpropedit in the light process lane. Muxing and extractions run in
+     * the heavy process lane, so only a few of them read or write whole media
+     * files at the same time.
      *
      * @param command the command to be executed
      * @return <code>true</code> if the command was successfully executed,
@@ -129,19 +137,69 @@ public class MkvToolNixHelper {
      * @throws java.io.IOException
      */
     public static boolean execute(Command command) throws IOException {
+        return execute(command, null);
+    }
+
+    /**
+     * Runs a platform-dependent command to edit Matroska videos, reporting its
+     * progress to the given listener.
+     *
+     * @param command the command to be executed
+     * @param listener the listener of the command progress, or
+     *                 <code>null</code>
+     * @return <code>true</code> if the command was successfully executed,
+     *         <code>false</code> otherwise
+     * @throws java.io.IOException
+     * @see #execute(Command)
+     */
+    public static boolean execute(Command command, ProgressListener listener) throws IOException {
         System.out.println("Processing...");
 
-        Process process;
-        BufferedReader reader = null;
+        boolean isHeaderEdition = command instanceof MkvPropEditCommand;
+        if (isHeaderEdition && MatroskaHeaderEditor.canEdit(command.getInputFile())) {
+            try {
+                if (new MatroskaHeaderEditor(command.getInputFile()).edit((MkvPropEditCommand) command)) {
+                    System.out.println("Edition has completed successfully (in place)");
+                    return true;
+                }
+                System.out.println("Headers can't be edited in place, using mkvpropedit instead");
+            } catch (IOException ex) {
+                System.out.println("Headers could not be edited in place: " + ex.getMessage());
+            }
+        }
+        if (command instanceof MkvExtractSubtitlesCommand && MatroskaTextSubtitleExtractor.canExtract(command.getInputFile())) {
+            try {
+                if (new MatroskaTextSubtitleExtractor(command.getInputFile()).extract((MkvExtractSubtitlesCommand) command)) {
+                    System.out.println("Extraction has completed successfully (natively)");
+                    return true;
+                }
+                System.out.println("Subtitles can't be extracted natively, using mkvextract instead");
+            } catch (IOException ex) {
+                System.out.println("Subtitles could not be extracted natively: " + ex.getMessage());
+            }
+        }
+        Lane lane = isHeaderEdition ? Lane.PROBE : Lane.HEAVY;
+        long timeout = isHeaderEdition ? ProcessExecutor.DEFAULT_PROBE_TIMEOUT : ProcessExecutor.NO_TIMEOUT;
         boolean result = false;
+        final ProgressParser progressParser = (listener == null) ? null : new ProgressParser(command, listener);
         try {
-            process = new ProcessBuilder(command.toList()).start();
-            reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+            ManagedProcess process = ProcessExecutor.getDefault().execute(command.toList(), lane, timeout, new OutputListener() {
+                @Override
+                public void lineRead(String line) {
+                    if (progressParser != null) {
+                        progressParser.parse(line);
+                    }
+                    System.out.println(line);
+                }
+            });
+            if (!process.getErrorOutput().isEmpty()) {
+                System.out.println(process.getErrorOutput());
+            }
+            int exitValue = process.getExitValue();
+            if (process.isTimedOut()) {
+                System.out.println("ERROR: " + process.getName() + " took too long and has been stopped!");
+                return false;
             }
-            int exitValue = process.waitFor();
             switch (exitValue) {
                 case 0:
                     System.out.println("Muxing/Edition has completed successfully");
@@ -162,8 +220,8 @@ public class MkvToolNixHelper {
             System.out.println(ex.getClass());
             System.out.println(ex.getMessage());
         } finally {
-            if (reader != null) {
-                reader.close();
+            if (command instanceof MkvMergeCommand) {
+                ((MkvMergeCommand) command).deleteOptionFile();
             }
         }
 
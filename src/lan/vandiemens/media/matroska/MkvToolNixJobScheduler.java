@@ -0,0 +1,299 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import lan.vandiemens.media.process.ProcessExecutor;
+import lan.vandiemens.media.process.ProcessExecutor.Lane;
+
+/**
+ * Runs MKVToolNix commands concurrently, keeping the quick header editions
+ * apart from the long remuxes.
+ * <p>
+ * mkvpropedit jobs run in a fast lane with as many workers as light processes
+ * are allowed to run at the same time, so they never wait for a remux to
+ * finish. mkvmerge jobs run in a merge lane, where only a few of them may
+ * read or write the same physical volume at once, so that remuxes on
+ * different disks run in parallel without thrashing any of them.
+ * <p>
+ * mkvmerge jobs wait in a queue until every volume they use is free, and only
+ * then are handed to one of the merge lane workers, which are as many as
+ * heavy processes are allowed to run at the same time. No worker thread is
+ * ever parked waiting for a volume. A queued job also holds back the later
+ * jobs on its volumes, so a job using two busy disks is not starved by the
+ * jobs using only one of them.
+ * <p>
+ * NOTE: The number of mkvmerge jobs allowed per volume can be changed with
+ * the <code>mediamanager.mkvmerge.volume.limit</code> system property.
+ *
+ * @author vmurcia
+ */
+public class MkvToolNixJobScheduler {
+
+    public static final String VOLUME_LIMIT_PROPERTY = "mediamanager.mkvmerge.volume.limit";
+    private static final int DEFAULT_VOLUME_LIMIT = 1;
+    private final ExecutorService fastLane;
+    private final ExecutorService mergeLane;
+    private final int mergeLaneLimit;
+    private final int volumeLimit;
+    private final Listener listener;
+    private volatile ProgressListener progressListener = null;
+    private final Map<FileStore, Volume> volumes = new HashMap<>();
+    private final Volume unknownVolume;
+    private final List<MergeJob> queuedJobs = new LinkedList<>(); // Guarded by this
+    private int runningJobCount = 0; // Guarded by this
+    private boolean isShutdown = false; // Guarded by this
+
+    /**
+     * Receives the result of every job, as soon as it finishes.
+     * <p>
+     * NOTE: The listener is called from the worker thread which ran the job,
+     * so it must be thread-safe.
+     */
+    public interface Listener {
+
+        void jobFinished(Command command, boolean isSuccessful);
+    }
+
+    /**
+     * Physical volume read or written by mkvmerge jobs.
+     */
+    private static class Volume {
+
+        private int availableSlots; // Guarded by the scheduler
+
+        Volume(int limit) {
+            this.availableSlots = limit;
+        }
+    }
+
+    /**
+     * mkvmerge job, which is either queued or holding a slot in each of its
+     * volumes.
+     */
+    private class MergeJob extends FutureTask<Boolean> {
+
+        private final List<Volume> jobVolumes;
+        private boolean isStarted = false; // Guarded by the scheduler
+
+        MergeJob(Callable<Boolean> callable, List<Volume> jobVolumes) {
+            super(callable);
+            this.jobVolumes = jobVolumes;
+        }
+
+        @Override
+        protected void done() {
+            finish(this); // Also called when the job is cancelled
+        }
+    }
+
+    /**
+     * Creates a job scheduler with the default lane limits.
+     *
+     * @param listener the listener of the job results
+     */
+    public MkvToolNixJobScheduler(Listener listener) {
+        this(ProcessExecutor.getDefault().getLimit(Lane.PROBE), ProcessExecutor.getDefault().getLimit(Lane.HEAVY),
+             Math.max(1, Integer.getInteger(VOLUME_LIMIT_PROPERTY, DEFAULT_VOLUME_LIMIT)), listener);
+    }
+
+    /**
+     * Creates a job scheduler.
+     *
+     * @param fastLaneLimit the maximum number of mkvpropedit jobs run at once
+     * @param mergeLaneLimit the maximum number of mkvmerge jobs run at once
+     * @param volumeLimit the maximum number of mkvmerge jobs run at once on
+     *                    the same volume
+     * @param listener the listener of the job results
+     */
+    public MkvToolNixJobScheduler(int fastLaneLimit, int mergeLaneLimit, int volumeLimit, Listener listener) {
+        if (fastLaneLimit < 1 || mergeLaneLimit < 1 || volumeLimit < 1) {
+            throw new IllegalArgumentException("Invalid lane limits: " + fastLaneLimit + ", " + mergeLaneLimit + ", " + volumeLimit);
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("A valid listener must be provided");
+        }
+        this.mergeLaneLimit = mergeLaneLimit;
+        this.volumeLimit = volumeLimit;
+        this.listener = listener;
+        unknownVolume = new Volume(volumeLimit);
+        fastLane = Executors.newFixedThreadPool(fastLaneLimit, newThreadFactory("mkvpropedit job"));
+        mergeLane = Executors.newFixedThreadPool(mergeLaneLimit, newThreadFactory("mkvmerge job"));
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Sets the listener of the progress of every job, such as the throughput
+     * of the remuxes.
+     *
+     * @param progressListener the progress listener, or <code>null</code>
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Schedules a command to be run in the lane it belongs to.
+     *
+     * @param command the MKVToolNix command
+     * @return the result of the command, as returned by
+     *         {@link MkvToolNixHelper#execute(Command, ProgressListener)}
+     */
+    public Future<Boolean> submit(final Command command) {
+        if (command instanceof MkvPropEditCommand) {
+            return fastLane.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return run(command);
+                }
+            });
+        }
+        MergeJob job = new MergeJob(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return run(command);
+            }
+        }, getVolumes(command));
+        synchronized (this) {
+            if (isShutdown) {
+                throw new RejectedExecutionException("The scheduler has been shut down");
+            }
+            queuedJobs.add(job);
+            dispatch();
+        }
+        return job;
+    }
+
+    /**
+     * Starts the queued jobs whose volumes are all free, in the order they
+     * were submitted.
+     */
+    private synchronized void dispatch() {
+        Set<Volume> claimedVolumes = new HashSet<>();
+        Iterator<MergeJob> iterator = queuedJobs.iterator();
+        while (iterator.hasNext() && runningJobCount < mergeLaneLimit) {
+            MergeJob job = iterator.next();
+            if (hasFreeSlots(job.jobVolumes, claimedVolumes)) {
+                iterator.remove();
+                for (Volume volume : job.jobVolumes) {
+                    volume.availableSlots--;
+                }
+                job.isStarted = true;
+                runningJobCount++;
+                mergeLane.execute(job);
+            } else {
+                claimedVolumes.addAll(job.jobVolumes); // Keeps the volume queues in order
+            }
+        }
+    }
+
+    private static boolean hasFreeSlots(List<Volume> jobVolumes, Set<Volume> claimedVolumes) {
+        for (Volume volume : jobVolumes) {
+            if (volume.availableSlots == 0 || claimedVolumes.contains(volume)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void finish(MergeJob job) {
+        if (job.isStarted) {
+            for (Volume volume : job.jobVolumes) {
+                volume.availableSlots++;
+            }
+            runningJobCount--;
+        } else {
+            queuedJobs.remove(job);
+        }
+        dispatch();
+        notifyAll();
+    }
+
+    private boolean run(Command command) {
+        boolean isSuccessful = false;
+        try {
+            isSuccessful = MkvToolNixHelper.execute(command, progressListener);
+        } catch (IOException | RuntimeException ex) {
+            System.out.println(command.getInputFile().getName() + " could not be processed: " + ex.getMessage());
+        }
+        listener.jobFinished(command, isSuccessful);
+        return isSuccessful;
+    }
+
+    /**
+     * Gets the volumes read or written by the given command.
+     */
+    private List<Volume> getVolumes(Command command) {
+        List<Volume> commandVolumes = new ArrayList<>(2);
+        File outputFile = command.getOutputFile(); // Extractions write next to their input file
+        File outputFolder = (outputFile == null) ? command.getInputFile() : outputFile.getAbsoluteFile().getParentFile();
+        for (File file : new File[] {command.getInputFile(), outputFolder}) {
+            Volume volume = getVolume(file);
+            if (!commandVolumes.contains(volume)) {
+                commandVolumes.add(volume);
+            }
+        }
+        return commandVolumes;
+    }
+
+    private synchronized Volume getVolume(File file) {
+        FileStore store;
+        try {
+            store = Files.getFileStore(file.toPath());
+        } catch (IOException | RuntimeException ex) {
+            return unknownVolume;
+        }
+        Volume volume = volumes.get(store);
+        if (volume == null) {
+            volume = new Volume(volumeLimit);
+            volumes.put(store, volume);
+        }
+        return volume;
+    }
+
+    /**
+     * Waits for every scheduled job to finish. No more jobs can be scheduled
+     * afterwards.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitCompletion() throws InterruptedException {
+        fastLane.shutdown();
+        synchronized (this) {
+            isShutdown = true;
+            while (!queuedJobs.isEmpty()) {
+                wait();
+            }
+        }
+        mergeLane.shutdown();
+        fastLane.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        mergeLane.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,85 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.File;
+
+/**
+ * Progress of an MKVToolNix command, as reported by its <code>Progress</code>
+ * output lines.
+ * <p>
+ * NOTE: The processed bytes are estimated from the size of the command input
+ * file, since MKVToolNix only reports a percentage.
+ *
+ * @author vmurcia
+ */
+public class ProgressEvent {
+
+    private final Command command;
+    private final int percentage;
+    private final long elapsedTime;
+    private final long processedBytes;
+
+    ProgressEvent(Command command, int percentage, long elapsedTime, long processedBytes) {
+        this.command = command;
+        this.percentage = percentage;
+        this.elapsedTime = elapsedTime;
+        this.processedBytes = processedBytes;
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the completed percentage, from 0 to 100
+     */
+    public int getPercentage() {
+        return percentage;
+    }
+
+    public boolean isComplete() {
+        return percentage == 100;
+    }
+
+    /**
+     * @return the time (in milliseconds) elapsed since the command started
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public long getProcessedBytes() {
+        return processedBytes;
+    }
+
+    /**
+     * @return the average throughput since the command started, or 0 if it is
+     *         still unknown
+     */
+    public double getBytesPerSecond() {
+        return elapsedTime > 0 ? processedBytes * 1000.0 / elapsedTime : 0;
+    }
+
+    /**
+     * @return the estimated time (in milliseconds) left to complete the
+     *         command, or -1 if it is still unknown
+     */
+    public long getRemainingTime() {
+        if (percentage == 0) {
+            return -1;
+        }
+        return elapsedTime * (100 - percentage) / percentage;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        File file = (command.getOutputFile() == null) ? command.getInputFile() : command.getOutputFile();
+        builder.append(file.getName()).append(": ").append(percentage).append("%");
+        builder.append(String.format(" at %.1f MB/s", getBytesPerSecond() / (1024 * 1024)));
+        long remainingTime = getRemainingTime();
+        if (remainingTime >= 0 && !isComplete()) {
+            builder.append(String.format(", %d:%02d left", remainingTime / 60000, remainingTime / 1000 % 60));
+        }
+        return builder.toString();
+    }
+}
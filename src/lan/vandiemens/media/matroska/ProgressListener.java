@@ -0,0 +1,14 @@
+package lan.vandiemens.media.matroska;
+
+/**
+ * Receives the progress of the MKVToolNix commands being run.
+ * <p>
+ * NOTE: The listener is called from the thread reading the command output, so
+ * it must be thread-safe if it listens to several commands at once.
+ *
+ * @author vmurcia
+ */
+public interface ProgressListener {
+
+    public void progressChanged(ProgressEvent event);
+}
@@ -0,0 +1,60 @@
+package lan.vandiemens.media.matroska;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the <code>Progress: NN%</code> output lines of mkvmerge and
+ * mkvextract into progress events.
+ * <p>
+ * NOTE: Repeated percentages are reported only once. The elapsed time is
+ * counted from the first output line, as the command may still be waiting for
+ * a free process lane when the parser is created.
+ *
+ * @author vmurcia
+ */
+class ProgressParser {
+
+    private static final Pattern progressPattern = Pattern.compile("^(?:#GUI#progress |Progress: )(\\d{1,3})%");
+    private final Command command;
+    private final ProgressListener listener;
+    private final long totalBytes;
+    private long startTime = -1;
+    private int lastPercentage = -1;
+
+    /**
+     * Creates a parser for a command which is about to be executed.
+     *
+     * @param command the running command
+     * @param listener the listener of the progress events
+     */
+    ProgressParser(Command command, ProgressListener listener) {
+        this.command = command;
+        this.listener = listener;
+        this.totalBytes = command.getInputFile() == null ? 0 : command.getInputFile().length();
+    }
+
+    /**
+     * Parses an output line of the command.
+     *
+     * @param line the output line
+     * @return <code>true</code> if the line reported the command progress,
+     *         <code>false</code> otherwise
+     */
+    boolean parse(String line) {
+        if (startTime == -1) {
+            startTime = System.nanoTime(); // The command has just started
+        }
+        Matcher matcher = progressPattern.matcher(line.trim());
+        if (!matcher.find()) {
+            return false;
+        }
+        int percentage = Math.min(100, Integer.parseInt(matcher.group(1)));
+        if (percentage != lastPercentage) {
+            lastPercentage = percentage;
+            long elapsedTime = (System.nanoTime() - startTime) / 1000000;
+            listener.progressChanged(new ProgressEvent(command, percentage, elapsedTime, totalBytes * percentage / 100));
+        }
+        return true;
+    }
+}
@@ -2,21 +2,36 @@ package lan.vandiemens.media.matroska.utility;
 
 import lan.vandiemens.media.matroska.MkvPropEditCommand;
 import lan.vandiemens.media.matroska.Command;
-import lan.vandiemens.media.matroska.MkvToolNixHelper;
+import lan.vandiemens.media.matroska.MkvToolNixJobScheduler;
+import lan.vandiemens.media.matroska.ProgressEvent;
+import lan.vandiemens.media.matroska.ProgressListener;
 import lan.vandiemens.media.matroska.MkvMergeCommand;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import lan.vandiemens.media.AudioFile;
+import lan.vandiemens.media.FolderWatcher;
 import lan.vandiemens.media.MediaFile;
+import lan.vandiemens.media.MediaFileLoader;
 import lan.vandiemens.media.SubtitleFile;
-import lan.vandiemens.media.analysis.MediaInfoException;
+import lan.vandiemens.media.info.release.ReleaseInfoIndex;
 import lan.vandiemens.media.manager.VersionInfo;
-import lan.vandiemens.util.file.DirectoryFilter;
 import lan.vandiemens.util.file.FileExtensionFilter;
+import lan.vandiemens.util.file.FileUtils;
 
 /**
  * An application for editing Matroska media files to my liking by using the
@@ -41,9 +56,25 @@ public class MatroskaEditor extends MatroskaUtility {
     public static final String LONG_REPLACE_SUBTITLES_OPTION = "--replace-subs";
     public static final String VERSION_OPTION = "-v";
     public static final String LONG_VERSION_OPTION = "--version";
+    public static final String WATCH_OPTION = "-w";
+    public static final String LONG_WATCH_OPTION = "--watch";
     private static boolean subtitleSubstitutionEnabled = false;
     private static int videoFilesCount;
     private static int editedFilesCount;
+    /**
+     * Files created by MKVToolNix commands, which must not be edited again
+     * when they are detected in watch mode.
+     */
+    private static final Set<File> generatedFiles = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    /**
+     * Audio and subtitle files detected in watch mode which have not been
+     * mapped to any media file yet.
+     */
+    private static final List<AudioFile> waitingAudioFiles = new ArrayList<>();
+    private static final List<SubtitleFile> waitingSubtitleFiles = new ArrayList<>();
+    private static final Set<String> videoFormats = new HashSet<>(Arrays.asList(SUPPORTED_VIDEO_FILE_FORMATS));
+    private static final Set<String> audioFormats = new HashSet<>(Arrays.asList(SUPPORTED_AUDIO_FILE_FORMATS));
+    private static final Set<String> subtitleFormats = new HashSet<>(Arrays.asList(SUPPORTED_SUBTITLE_FORMATS));
 
     private static void enableSubtitleSubstitution(boolean enabled) {
         subtitleSubstitutionEnabled = enabled;
@@ -68,12 +99,17 @@ public class MatroskaEditor extends MatroskaUtility {
         }
 
         // Parse argument list looking for options
+        boolean isWatchMode = false;
         for (int i = 0; i < args.length - 1; i++) {
             switch (args[i]) {
                 case REPLACE_SUBTITLES_OPTION:
                 case LONG_REPLACE_SUBTITLES_OPTION:
                     MatroskaEditor.enableSubtitleSubstitution(true);
                     break;
+                case WATCH_OPTION:
+                case LONG_WATCH_OPTION:
+                    isWatchMode = true;
+                    break;
                 case VERSION_OPTION:
                 case LONG_VERSION_OPTION:
                     System.exit(0);
@@ -86,7 +122,11 @@ public class MatroskaEditor extends MatroskaUtility {
         }
 
         File mediaFolder = new File(args[args.length - 1]);
-        MatroskaEditor.process(mediaFolder);
+        if (isWatchMode) {
+            MatroskaEditor.watch(mediaFolder);
+        } else {
+            MatroskaEditor.process(mediaFolder);
+        }
     }
 
     /**
@@ -102,20 +142,183 @@ public class MatroskaEditor extends MatroskaUtility {
         checkApplicationDependencies();
         checkIfValidDirectory(folder);
 
-        MediaFile[] mediaFiles = getEditableMediaFiles(folder);
-        AudioFile[] audioFiles = getSupportedAudioFiles(folder);
-        SubtitleFile[] subtitleFiles = getSupportedSubtitleFiles(folder);
+        FolderContents contents = scan(folder);
+        MediaFile[] mediaFiles = contents.getMediaFiles();
+        AudioFile[] audioFiles = contents.getAudioFiles();
+        SubtitleFile[] subtitleFiles = contents.getSubtitleFiles();
         fixCommonSubtitleEncodingErrors(subtitleFiles);
-        map(mediaFiles, audioFiles, subtitleFiles);
+        for (File unmappedFile : map(mediaFiles, audioFiles, subtitleFiles)) {
+            System.out.println("No media file found for \"" + unmappedFile.getName() + "\"");
+        }
+        printConsoleSeparator();
 
-        for (MediaFile mediaFile : mediaFiles) {
-            process(mediaFile);
+        process(Arrays.asList(mediaFiles));
+
+        printResultSummary();
+    }
+
+    /**
+     * Edits supported videos located in the given directory, and then keeps
+     * waiting for new videos, audio files and subtitle files to edit them as
+     * soon as they are complete.
+     * <p>
+     * NOTE: New audio and subtitle files are kept waiting until a new video
+     * they correspond to is detected. This method does not return unless the
+     * current thread is interrupted.
+     *
+     * @param folder the directory containing the videos to be processed
+     */
+    public static void watch(File folder) {
+        process(folder);
+
+        List<String> supportedFormats = new ArrayList<>();
+        supportedFormats.addAll(Arrays.asList(SUPPORTED_VIDEO_FILE_FORMATS));
+        supportedFormats.addAll(Arrays.asList(SUPPORTED_AUDIO_FILE_FORMATS));
+        supportedFormats.addAll(Arrays.asList(SUPPORTED_SUBTITLE_FORMATS));
+        FileExtensionFilter filter = new FileExtensionFilter(supportedFormats.toArray(new String[supportedFormats.size()]));
+        try {
+            FolderWatcher watcher = new FolderWatcher(Collections.singletonList(folder), filter, new FolderWatcher.Listener() {
+                @Override
+                public void filesReady(List<File> files) {
+                    processNewFiles(files);
+                }
+            });
+            printConsoleSeparator();
+            System.out.println("Waiting for new media files...");
+            watcher.run();
+        } catch (IOException ex) {
+            System.out.println("Media folder could not be watched: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Edits the new videos detected in watch mode, adding the audio and
+     * subtitle files which correspond to them.
+     * <p>
+     * NOTE: New audio and subtitle files are parsed and reported only once,
+     * when they are detected, and then kept waiting until they are mapped.
+     *
+     * @param files the new files
+     */
+    private static void processNewFiles(List<File> files) {
+        FileExtensionFilter videoFilter = new FileExtensionFilter(SUPPORTED_VIDEO_FILE_FORMATS);
+        FileExtensionFilter audioFilter = new FileExtensionFilter(SUPPORTED_AUDIO_FILE_FORMATS);
+        List<MediaFile> mediaFiles;
+        List<AudioFile> newAudioFiles = new ArrayList<>();
+        List<SubtitleFile> newSubtitleFiles = new ArrayList<>();
+        try (MediaFileLoader loader = new MediaFileLoader()) {
+            for (File file : files) {
+                if (generatedFiles.remove(file)) {
+                    continue; // Already edited
+                }
+                if (videoFilter.accept(file)) {
+                    loader.submit(file);
+                } else if (audioFilter.accept(file)) {
+                    addAudioFile(file, newAudioFiles);
+                } else {
+                    addSubtitleFile(file, newSubtitleFiles);
+                }
+            }
+            mediaFiles = loader.getMediaFiles();
+        }
+        fixCommonSubtitleEncodingErrors(newSubtitleFiles.toArray(new SubtitleFile[newSubtitleFiles.size()]));
+        waitingAudioFiles.addAll(newAudioFiles);
+        waitingSubtitleFiles.addAll(newSubtitleFiles);
+        printConsoleSeparator();
+
+        List<File> unmappedFiles = new ArrayList<>();
+        if (!mediaFiles.isEmpty()) {
+            removeDeletedFiles(waitingAudioFiles, waitingSubtitleFiles);
+            unmappedFiles = map(mediaFiles.toArray(new MediaFile[mediaFiles.size()]),
+                                waitingAudioFiles.toArray(new AudioFile[waitingAudioFiles.size()]),
+                                waitingSubtitleFiles.toArray(new SubtitleFile[waitingSubtitleFiles.size()]));
+            for (MediaFile mediaFile : mediaFiles) {
+                waitingAudioFiles.removeAll(Arrays.asList(mediaFile.getAddedAudioTracks()));
+                waitingSubtitleFiles.removeAll(Arrays.asList(mediaFile.getAddedSubtitles()));
+            }
+        } else {
+            for (AudioFile audioFile : newAudioFiles) {
+                unmappedFiles.add(audioFile.getFile());
+            }
+            for (SubtitleFile subtitleFile : newSubtitleFiles) {
+                unmappedFiles.add(subtitleFile.getFile());
+            }
+        }
+        for (AudioFile audioFile : newAudioFiles) {
+            if (unmappedFiles.contains(audioFile.getFile())) {
+                System.out.println("\"" + audioFile.getName() + "\" is waiting for its media file");
+            }
+        }
+        for (SubtitleFile subtitleFile : newSubtitleFiles) {
+            if (unmappedFiles.contains(subtitleFile.getFile())) {
+                System.out.println("\"" + subtitleFile.getName() + "\" is waiting for its media file");
+            }
+        }
+        if (mediaFiles.isEmpty()) {
+            return;
         }
 
+        process(mediaFiles);
+
         printResultSummary();
     }
 
-    private static void process(MediaFile mediaFile) {
+    /**
+     * Removes the audio and subtitle files which no longer exist, e.g.
+     * because they have been deleted while waiting for their media file.
+     */
+    private static void removeDeletedFiles(List<AudioFile> audioFiles, List<SubtitleFile> subtitleFiles) {
+        for (Iterator<AudioFile> iterator = audioFiles.iterator(); iterator.hasNext();) {
+            if (!iterator.next().getFile().isFile()) {
+                iterator.remove();
+            }
+        }
+        for (Iterator<SubtitleFile> iterator = subtitleFiles.iterator(); iterator.hasNext();) {
+            if (!iterator.next().getFile().isFile()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Edits the given media files, running their MKVToolNix commands
+     * concurrently, and waits for all of them to finish.
+     * <p>
+     * NOTE: Header editions are not delayed by remuxes, and remuxes of media
+     * files located on different volumes run in parallel.
+     *
+     * @param mediaFiles the media files to be edited
+     */
+    private static void process(List<MediaFile> mediaFiles) {
+        videoFilesCount = 0; // The result summary covers each watch mode batch on its own
+        editedFilesCount = 0;
+        MkvToolNixJobScheduler scheduler = new MkvToolNixJobScheduler(new MkvToolNixJobScheduler.Listener() {
+            @Override
+            public void jobFinished(Command command, boolean isSuccessful) {
+                commandFinished(command, isSuccessful);
+            }
+        });
+        scheduler.setProgressListener(new ProgressListener() {
+            @Override
+            public void progressChanged(ProgressEvent event) {
+                if (event.isComplete() && event.getCommand() instanceof MkvMergeCommand) {
+                    System.out.println(event);
+                }
+            }
+        });
+        for (MediaFile mediaFile : mediaFiles) {
+            process(mediaFile, scheduler);
+        }
+        try {
+            scheduler.awaitCompletion();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void process(MediaFile mediaFile, MkvToolNixJobScheduler scheduler) {
         videoFilesCount++;
         mediaFile.fixCommonMetadataErrors();
         if (!mediaFile.meetsRequirements()) {
@@ -129,26 +332,27 @@ public class MatroskaEditor extends MatroskaUtility {
         }
         mediaFile.disableUnwantedTracks();
         Command command = getMkvToolNixCommand(mediaFile);
-        runWithMkvToolNix(command);
+        schedule(command, scheduler);
     }
 
     private static Command getMkvToolNixCommand(MediaFile mediaFile) {
         return mediaFile.needsRemux() ? new MkvMergeCommand(mediaFile) : new MkvPropEditCommand(mediaFile);
     }
 
-    private static void runWithMkvToolNix(Command command) {
+    private static void schedule(Command command, MkvToolNixJobScheduler scheduler) {
         printConsoleSeparator();
         System.out.println("Command: " + command);
+        generatedFiles.add(command.getOutputFile());
+        scheduler.submit(command);
+    }
+
+    private static synchronized void commandFinished(Command command, boolean isSuccessful) {
         String filename = command.getOutputFile().getName();
-        try {
-            if (MkvToolNixHelper.execute(command)) {
-                System.out.println(filename + " processed successfully");
-                performPostCommandTasks(command);
-                editedFilesCount++;
-            } else {
-                System.out.println(filename + " processed with errors!");
-            }
-        } catch (IOException ex) {
+        if (isSuccessful) {
+            System.out.println(filename + " processed successfully");
+            performPostCommandTasks(command);
+            editedFilesCount++;
+        } else {
             System.out.println(filename + " processed with errors!");
         }
     }
@@ -167,83 +371,134 @@ public class MatroskaEditor extends MatroskaUtility {
 
     private static void showUsage() {
         System.out.println("Usage:");
-        System.out.println("    MatroskaEditor [-h | -v] <media_dir>");
+        System.out.println("    MatroskaEditor [-h | -v | -r | -w] <media_dir>");
         System.out.println("");
         System.out.println("Options:");
         System.out.println("    -h, --help     Shows this help information.");
         System.out.println("    -v, --version  Shows the version of this program.");
+        System.out.println("    -r, --replace-subs");
+        System.out.println("                   Prefers external subtitle files over the existing subtitle tracks.");
+        System.out.println("    -w, --watch    Keeps running, editing new media files as soon as they are complete.");
     }
 
     private static void showVersion() {
         System.out.println(VersionInfo.getMatroskaEditorFullName());
     }
 
-    private static MediaFile[] getEditableMediaFiles(File folder) {
-        File[] subfolders = folder.listFiles(new DirectoryFilter());
-        File[] videoFiles = folder.listFiles(new FileExtensionFilter(SUPPORTED_VIDEO_FILE_FORMATS));
-        List<MediaFile> mediaFiles = new ArrayList<>(videoFiles.length);
-        for (File subfolder : subfolders) {
-            mediaFiles.addAll(Arrays.asList(getEditableMediaFiles(subfolder)));
-        }
-        for (File file : videoFiles) {
-            System.out.println("Candidate video file: " + file.getName());
-            try {
-                mediaFiles.add(new MediaFile(file));
-                System.out.println("Video file: " + file.getName() + "... parsed");
-            } catch (IOException | MediaInfoException ex) {
-                System.out.println("Video file: " + file.getName() + "... skipped");
-                System.out.println("Reason: " + ex.getMessage());
-            }
+    /**
+     * Walks the given folder tree once, classifying every file by its
+     * extension, and starts probing each video file as soon as it is found.
+     *
+     * @param folder the directory containing the videos to be processed
+     * @return the supported files found in the folder tree
+     */
+    private static FolderContents scan(File folder) {
+        System.out.println("Looking for media, audio and subtitle files...");
+        final FolderContents contents = new FolderContents();
+        try {
+            Files.walkFileTree(folder.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        contents.add(path.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException ex) {
+                    System.out.println("File could not be read: " + path + " (" + ex.getMessage() + ")");
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            System.out.println("Media folder could not be read: " + ex.getMessage());
+        } finally {
+            contents.loader.close();
         }
-        printConsoleSeparator();
+        return contents;
+    }
 
-        return mediaFiles.toArray(new MediaFile[mediaFiles.size()]);
+    private static void addAudioFile(File file, List<AudioFile> audioFiles) {
+        System.out.println("Audio file: " + file.getName() + "... ");
+        try {
+            audioFiles.add(new AudioFile(file));
+            System.out.println("parsed");
+        } catch (IOException ex) {
+            System.out.println("skipped");
+            System.out.println("Reason: " + ex.getMessage());
+        }
     }
 
-    private static AudioFile[] getSupportedAudioFiles(File folder) {
-        File[] subfolders = folder.listFiles(new DirectoryFilter());
-        File[] supportedFiles = folder.listFiles(new FileExtensionFilter(SUPPORTED_AUDIO_FILE_FORMATS));
-        ArrayList<AudioFile> audioFiles = new ArrayList<>(supportedFiles.length);
-        for (File subfolder : subfolders) {
-            audioFiles.addAll(Arrays.asList(getSupportedAudioFiles(subfolder)));
+    private static void addSubtitleFile(File file, List<SubtitleFile> subtitleFiles) {
+        System.out.println("Subtitle file: " + file.getName() + "... ");
+        try {
+            subtitleFiles.add(new SubtitleFile(file));
+            System.out.println("parsed");
+        } catch (IOException ex) {
+            System.out.println("skipped");
+            System.out.println("Reason: " + ex.getMessage());
         }
-        for (File file : supportedFiles) {
-            System.out.println("Audio file: " + file.getName() + "... ");
-            try {
-                audioFiles.add(new AudioFile(file));
-                System.out.println("parsed");
-            } catch (IOException ex) {
-                System.out.println("skipped");
-                System.out.println("Reason: " + ex.getMessage());
+    }
+
+    /**
+     * Supported files found in a folder tree, where the video files are being
+     * probed in the background.
+     * <p>
+     * NOTE: The video files are loaded by a {@link MediaFileLoader}, whereas
+     * audio and subtitle files, which are just named after their release, are
+     * parsed once the folder tree has been walked.
+     */
+    private static class FolderContents {
+
+        private final MediaFileLoader loader = new MediaFileLoader();
+        private final List<File> audioFiles = new ArrayList<>();
+        private final List<File> subtitleFiles = new ArrayList<>();
+
+        private void add(File file) {
+            String extension = FileUtils.getExtension(file).toLowerCase(Locale.ROOT);
+            if (videoFormats.contains(extension)) {
+                loader.submit(file);
+            } else if (audioFormats.contains(extension)) {
+                audioFiles.add(file);
+            } else if (subtitleFormats.contains(extension)) {
+                subtitleFiles.add(file);
             }
         }
-        if (audioFiles.size() > 0)
-            printConsoleSeparator();
 
-        return audioFiles.toArray(new AudioFile[audioFiles.size()]);
-    }
+        /**
+         * Waits for every video file to be probed.
+         *
+         * @return the video files which could be probed
+         */
+        private MediaFile[] getMediaFiles() {
+            List<MediaFile> mediaFiles = loader.getMediaFiles();
+            printConsoleSeparator();
 
-    private static SubtitleFile[] getSupportedSubtitleFiles(File folder) {
-        File[] subfolders = folder.listFiles(new DirectoryFilter());
-        File[] textSubFiles = folder.listFiles(new FileExtensionFilter(SUPPORTED_SUBTITLE_FORMATS));
-        ArrayList<SubtitleFile> subtitleFiles = new ArrayList<>(textSubFiles.length);
-        for (File subfolder : subfolders) {
-            subtitleFiles.addAll(Arrays.asList(getSupportedSubtitleFiles(subfolder)));
+            return mediaFiles.toArray(new MediaFile[mediaFiles.size()]);
         }
-        for (File file : textSubFiles) {
-            System.out.println("Subtitle file: " + file.getName() + "... ");
-            try {
-                subtitleFiles.add(new SubtitleFile(file));
-                System.out.println("parsed");
-            } catch (IOException ex) {
-                System.out.println("skipped");
-                System.out.println("Reason: " + ex.getMessage());
+
+        private AudioFile[] getAudioFiles() {
+            List<AudioFile> parsedFiles = new ArrayList<>(audioFiles.size());
+            for (File file : audioFiles) {
+                addAudioFile(file, parsedFiles);
             }
+            if (parsedFiles.size() > 0)
+                printConsoleSeparator();
+
+            return parsedFiles.toArray(new AudioFile[parsedFiles.size()]);
         }
-        if (subtitleFiles.size() > 0)
-            printConsoleSeparator();
 
-        return subtitleFiles.toArray(new SubtitleFile[subtitleFiles.size()]);
+        private SubtitleFile[] getSubtitleFiles() {
+            List<SubtitleFile> parsedFiles = new ArrayList<>(subtitleFiles.size());
+            for (File file : subtitleFiles) {
+                addSubtitleFile(file, parsedFiles);
+            }
+            if (parsedFiles.size() > 0)
+                printConsoleSeparator();
+
+            return parsedFiles.toArray(new SubtitleFile[parsedFiles.size()]);
+        }
     }
 
     private static void fixCommonSubtitleEncodingErrors(SubtitleFile[] subtitleFiles) {
@@ -261,26 +516,44 @@ public class MatroskaEditor extends MatroskaUtility {
 
     /**
      * Binds every subtitle and audio file to its corresponding media file.
+     * <p>
+     * NOTE: The media files are indexed once by their release info, so each
+     * audio or subtitle file is only compared against the media files with
+     * the same title rather than against every media file.
      *
      * @param mediaFiles the media files which may need additional subtitles
      * @param audioFiles the audio files to be mapped to media files
      * @param subtitleFiles the subtitle files to be mapped to media files
+     * @return the audio and subtitle files which could not be mapped
      */
-    private static void map(MediaFile[] mediaFiles, AudioFile[] audioFiles, SubtitleFile[] subtitleFiles) {
+    private static List<File> map(MediaFile[] mediaFiles, AudioFile[] audioFiles, SubtitleFile[] subtitleFiles) {
         System.out.println("Mapping audio and subtitle files to Matroska container files...");
+        ReleaseInfoIndex<MediaFile> mediaFilesByInfo = new ReleaseInfoIndex<>();
         for (MediaFile mediaFile : mediaFiles) {
-            for (AudioFile audioFile : audioFiles) {
-                if (audioFile.correspondsTo(mediaFile)) {
-                    mediaFile.addAudioTrack(audioFile);
-                }
+            mediaFilesByInfo.put(mediaFile.getReleaseInfo(), mediaFile);
+        }
+        List<File> unmappedFiles = new ArrayList<>();
+        for (AudioFile audioFile : audioFiles) {
+            List<MediaFile> matchingFiles = mediaFilesByInfo.find(audioFile.getReleaseInfo());
+            if (matchingFiles.isEmpty()) {
+                unmappedFiles.add(audioFile.getFile());
+                continue;
             }
-            for (SubtitleFile subtitleFile : subtitleFiles) {
-                if (subtitleFile.correspondsTo(mediaFile)) {
-                    mediaFile.addSubtitle(subtitleFile);
-                }
+            for (MediaFile mediaFile : matchingFiles) {
+                mediaFile.addAudioTrack(audioFile);
             }
         }
-        printConsoleSeparator();
+        for (SubtitleFile subtitleFile : subtitleFiles) {
+            List<MediaFile> matchingFiles = mediaFilesByInfo.find(subtitleFile.getReleaseInfo());
+            if (matchingFiles.isEmpty()) {
+                unmappedFiles.add(subtitleFile.getFile());
+                continue;
+            }
+            for (MediaFile mediaFile : matchingFiles) {
+                mediaFile.addSubtitle(subtitleFile);
+            }
+        }
+        return unmappedFiles;
     }
 
     private static void printResultSummary() {
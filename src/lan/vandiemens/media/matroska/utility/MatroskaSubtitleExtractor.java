@@ -4,13 +4,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 import lan.vandiemens.media.MediaFile;
-import lan.vandiemens.media.analysis.MediaInfoException;
+import lan.vandiemens.media.MediaFileLoader;
 import lan.vandiemens.media.matroska.Command;
 import lan.vandiemens.media.matroska.MkvExtractSubtitlesCommand;
-import lan.vandiemens.media.matroska.MkvToolNixHelper;
+import lan.vandiemens.media.matroska.MkvToolNixJobScheduler;
 import lan.vandiemens.util.file.DropboxUtils;
 import lan.vandiemens.util.file.FileExtensionFilter;
 import lan.vandiemens.util.file.FileUtils;
@@ -36,6 +40,14 @@ public class MatroskaSubtitleExtractor extends MatroskaUtility {
     public static final String[] TEXT_BASED_SUBTITLE_FILE_EXTENSIONS = new String[] { "srt", "ass", "ssa" };
     public static final String[] IMAGE_BASED_SUBTITLE_FILE_EXTENSIONS = new String[] { "idx", "sub", "sup" };
     private static final Language[] DESIRED_LANGUAGES = new Language[] { Language.SPANISH, Language.ENGLISH };
+    /**
+     * Result of each Matroska video file found, in the order they were found.
+     */
+    private static final Map<File, String> results = Collections.synchronizedMap(new LinkedHashMap<File, String>());
+    /**
+     * Videos whose subtitles are being extracted, by extraction command.
+     */
+    private static final Map<Command, MediaFile> extractions = new ConcurrentHashMap<>();
 
 
     private MatroskaSubtitleExtractor() {
@@ -90,11 +102,13 @@ public class MatroskaSubtitleExtractor extends MatroskaUtility {
     }
 
     /**
-     * Edits supported videos located in the given directory.
+     * Extracts the English and Spanish subtitles of the Matroska videos
+     * located in the given directory.
      * <p>
-     * NOTE: Edition consists of adding text subtitle tracks (if provided as
-     * SubRip subtitle files in the same folder), disabling unwanted audio
-     * and subtitle tracks, and renaming Matroska properties fields.
+     * NOTE: Extraction is pipelined: the subtitles of a video are extracted as
+     * soon as it has been parsed, while the next videos are still being
+     * parsed, and extractions of videos located on different volumes run at
+     * the same time. The result of each video is reported at the end.
      *
      * @param folder the directory containing the videos to be processed
      */
@@ -102,63 +116,76 @@ public class MatroskaSubtitleExtractor extends MatroskaUtility {
         checkApplicationDependencies();
         checkIfValidDirectory(folder);
 
-        MediaFile[] mediaFiles = getMatroskaVideoFiles(folder);
-        for (MediaFile mediaFile : mediaFiles) {
-            process(mediaFile);
-        }
-    }
-
-    private static MediaFile[] getMatroskaVideoFiles(File folder) {
-        FileExtensionFilter mkvFilter = new FileExtensionFilter(MATROSKA_FILE_EXTENSION);
-        File[] mkvFiles = folder.listFiles(mkvFilter);
-        List<MediaFile> mediaFiles = new ArrayList<>(mkvFiles.length);
-        for (File file : mkvFiles) {
-            System.out.println("Candidate Matroska video file: " + file.getName());
-            try {
-                mediaFiles.add(new MediaFile(file));
-                System.out.println("Matroska video file: " + file.getName() + "... parsed");
-            } catch (IOException | MediaInfoException ex) {
-                System.out.println("Matroska video file: " + file.getName() + "... skipped");
-                System.out.println("Reason: " + ex.getMessage());
+        final MkvToolNixJobScheduler scheduler = new MkvToolNixJobScheduler(new MkvToolNixJobScheduler.Listener() {
+            @Override
+            public void jobFinished(Command command, boolean isSuccessful) {
+                extractionFinished(command, isSuccessful);
+            }
+        });
+        try (MediaFileLoader loader = new MediaFileLoader()) {
+            for (File file : folder.listFiles(new FileExtensionFilter(MATROSKA_FILE_EXTENSION))) {
+                results.put(file, "skipped (not a valid Matroska video file)");
+                loader.submit(file);
             }
-            System.out.println("\n**************************************************\n");
+            loader.getMediaFiles(new MediaFileLoader.Listener() {
+                @Override
+                public void mediaFileLoaded(MediaFile mediaFile) {
+                    process(mediaFile, scheduler);
+                }
+            });
+        }
+        try {
+            scheduler.awaitCompletion();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
-        System.out.println(); // Vertical separator
 
-        return mediaFiles.toArray(new MediaFile[mediaFiles.size()]);
+        printResultSummary();
     }
 
-    private static void process(MediaFile mediaFile) {
+    private static void process(MediaFile mediaFile, MkvToolNixJobScheduler scheduler) {
         if (mediaFile.hasSubtitles()) {
-            extractSubtitles(mediaFile, DESIRED_LANGUAGES);
+            extractSubtitles(mediaFile, DESIRED_LANGUAGES, scheduler);
         } else {
             System.out.println("Skipped (No subtitles): " + mediaFile.getName());
+            results.put(mediaFile.getMainFile(), "skipped (no subtitles)");
         }
     }
 
-    private static void extractSubtitles(MediaFile mediaFile, Language[] languages) {
+    private static void extractSubtitles(MediaFile mediaFile, Language[] languages, MkvToolNixJobScheduler scheduler) {
         Command command = new MkvExtractSubtitlesCommand(mediaFile, languages);
-        if (runWithMkvToolNix(command)) {
+        System.out.println(); // Console output separator
+        System.out.println("Command: " + command);
+        results.put(mediaFile.getMainFile(), "not extracted (extraction was interrupted)");
+        extractions.put(command, mediaFile);
+        scheduler.submit(command);
+    }
+
+    private static void extractionFinished(Command command, boolean isSuccessful) {
+        MediaFile mediaFile = extractions.remove(command);
+        String filename = command.getInputFile().getName();
+        if (isSuccessful) {
+            System.out.println(filename + " processed successfully");
+            results.put(command.getInputFile(), "subtitles extracted successfully");
             performPostCommandTasks(mediaFile);
+        } else {
+            System.out.println(filename + " processed with errors!");
+            results.put(command.getInputFile(), "subtitles extracted with errors");
         }
     }
 
-    private static boolean runWithMkvToolNix(Command command) {
-        boolean result = false;
-        System.out.println(); // Console output separator
-        System.out.println("Command: " + command);
-        try {
-            if (MkvToolNixHelper.execute(command)) {
-                result = true;
-                System.out.println(command.getInputFile().getName() + " processed successfully");
-            } else {
-                System.out.println(command.getOutputFile().getName() + " processed with errors!");
+    private static void printResultSummary() {
+        System.out.println("");
+        if (results.isEmpty()) {
+            System.out.println("No Matroska video files found!");
+            return;
+        }
+        System.out.println("> Results:");
+        synchronized (results) {
+            for (Map.Entry<File, String> result : results.entrySet()) {
+                System.out.println(result.getKey().getName() + ": " + result.getValue());
             }
-        } catch (IOException ex) {
-            System.out.println(command.getOutputFile().getName() + " processed with errors!");
         }
-
-        return result;
     }
 
     private static void performPostCommandTasks(MediaFile mediaFile) {
@@ -0,0 +1,153 @@
+package lan.vandiemens.media.process;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * External process started by a <code>ProcessExecutor</code>.
+ * <p>
+ * NOTE: The standard error is collected in the background (up to a limit),
+ * and the process is killed if it runs longer than its timeout.
+ *
+ * @author vmurcia
+ */
+public class ManagedProcess implements Closeable {
+
+    private static final int MAX_ERROR_OUTPUT_LENGTH = 64 * 1024;
+    private final String name;
+    private final Process process;
+    private final Semaphore permits;
+    private final ScheduledFuture<?> timeoutTask;
+    private final Thread errorDrainer;
+    private final StringBuilder errorOutput = new StringBuilder();
+    private volatile boolean timedOut = false;
+    private boolean closed = false;
+
+    ManagedProcess(String command, final Process process, Semaphore permits, ScheduledExecutorService watchdog, long timeout) {
+        this.name = new File(command).getName();
+        this.process = process;
+        this.permits = permits;
+        try {
+            process.getOutputStream().close(); // No input is ever sent
+        } catch (IOException ex) {
+            // Nothing to do, the process just won't get an end of input
+        }
+        errorDrainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainErrorOutput();
+            }
+        }, "stderr " + name);
+        errorDrainer.setDaemon(true);
+        errorDrainer.start();
+        if (timeout > 0) {
+            timeoutTask = watchdog.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    timedOut = true;
+                    process.destroyForcibly();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        } else {
+            timeoutTask = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the standard output of the process
+     */
+    public InputStream getInputStream() {
+        return process.getInputStream();
+    }
+
+    /**
+     * Waits for the process to finish.
+     *
+     * @return the exit value of the process
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int waitFor() throws InterruptedException {
+        int exitValue = process.waitFor();
+        errorDrainer.join();
+        return exitValue;
+    }
+
+    /**
+     * @return <code>true</code> if the process was killed because it ran
+     *         longer than its timeout, <code>false</code> otherwise
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return the exit value of the finished process
+     * @throws IllegalThreadStateException if the process has not finished
+     */
+    public int getExitValue() {
+        return process.exitValue();
+    }
+
+    /**
+     * @return the standard error of the process, truncated to the first 64
+     *         KiB
+     */
+    public String getErrorOutput() {
+        synchronized (errorOutput) {
+            return errorOutput.toString();
+        }
+    }
+
+    /**
+     * Kills the process if it is still running and frees its place in the
+     * lane.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+        }
+        if (process.isAlive()) {
+            process.destroyForcibly();
+        }
+        try {
+            process.getInputStream().close();
+        } catch (IOException ex) {
+            // Nothing to do, the process is finished anyway
+        }
+        permits.release();
+    }
+
+    private void drainErrorOutput() {
+        char[] buffer = new char[4096];
+        try (Reader reader = new InputStreamReader(process.getErrorStream())) {
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                synchronized (errorOutput) {
+                    int length = Math.min(count, MAX_ERROR_OUTPUT_LENGTH - errorOutput.length());
+                    if (length > 0) {
+                        errorOutput.append(buffer, 0, length);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            // The process has been killed
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package lan.vandiemens.media.process;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Central executor of the external processes (MediaInfo and MKVToolNix),
+ * which limits how many of them run at the same time.
+ * <p>
+ * Processes are run in one of two lanes with separate limits: a lane for
+ * light processes just probing or editing file headers, and a lane for heavy
+ * processes reading or writing whole media files, which would thrash the
+ * disks if too many of them were run at once.
+ * <p>
+ * NOTE: The lane limits can be changed with the
+ * <code>mediamanager.process.probe.limit</code> and
+ * <code>mediamanager.process.heavy.limit</code> system properties.
+ *
+ * @author vmurcia
+ */
+public class ProcessExecutor {
+
+    public static final String PROBE_LIMIT_PROPERTY = "mediamanager.process.probe.limit";
+    public static final String HEAVY_LIMIT_PROPERTY = "mediamanager.process.heavy.limit";
+    /**
+     * Default timeout (in milliseconds) for light processes.
+     */
+    public static final long DEFAULT_PROBE_TIMEOUT = 5 * 60 * 1000;
+    /**
+     * Timeout meaning that the process is never killed.
+     */
+    public static final long NO_TIMEOUT = 0;
+    private static final int DEFAULT_HEAVY_LIMIT = 2;
+    private static ProcessExecutor defaultExecutor = null;
+    private final Semaphore probePermits;
+    private final Semaphore heavyPermits;
+    private final int probeLimit;
+    private final int heavyLimit;
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * Kind of external process.
+     */
+    public enum Lane {
+
+        /**
+         * CPU-light process reading or editing file headers only, such as
+         * mediainfo or mkvpropedit.
+         */
+        PROBE,
+        /**
+         * I/O-heavy process reading or writing whole media files, such as
+         * mkvmerge or mkvextract.
+         */
+        HEAVY
+    }
+
+    /**
+     * Receives the standard output of a process line by line.
+     */
+    public interface OutputListener {
+
+        void lineRead(String line);
+    }
+
+    /**
+     * Creates a process executor.
+     *
+     * @param probeLimit the maximum number of light processes run at once
+     * @param heavyLimit the maximum number of heavy processes run at once
+     */
+    public ProcessExecutor(int probeLimit, int heavyLimit) {
+        if (probeLimit < 1 || heavyLimit < 1) {
+            throw new IllegalArgumentException("Invalid process limits: " + probeLimit + ", " + heavyLimit);
+        }
+        this.probeLimit = probeLimit;
+        this.heavyLimit = heavyLimit;
+        probePermits = new Semaphore(probeLimit, true);
+        heavyPermits = new Semaphore(heavyLimit, true);
+        watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Process watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Gets the executor shared by the whole application.
+     *
+     * @return the default process executor
+     */
+    public static synchronized ProcessExecutor getDefault() {
+        if (defaultExecutor == null) {
+            int probeLimit = Integer.getInteger(PROBE_LIMIT_PROPERTY, Runtime.getRuntime().availableProcessors());
+            int heavyLimit = Integer.getInteger(HEAVY_LIMIT_PROPERTY, DEFAULT_HEAVY_LIMIT);
+            defaultExecutor = new ProcessExecutor(Math.max(1, probeLimit), Math.max(1, heavyLimit));
+        }
+        return defaultExecutor;
+    }
+
+    public int getLimit(Lane lane) {
+        return lane == Lane.PROBE ? probeLimit : heavyLimit;
+    }
+
+    /**
+     * Starts a process as soon as its lane allows it.
+     * <p>
+     * NOTE: The caller must read the process standard output and close the
+     * returned process, which frees its place in the lane. The standard error
+     * is read in the background, so the process never blocks on it.
+     *
+     * @param command the command and its arguments
+     * @param lane the lane of the process
+     * @param timeout the time (in milliseconds) the process is allowed to
+     *                run before being killed, or <code>NO_TIMEOUT</code>
+     * @return the started process
+     * @throws IOException if the process can't be started
+     * @throws InterruptedException if interrupted while waiting for the lane
+     */
+    public ManagedProcess start(List<String> command, Lane lane, long timeout) throws IOException, InterruptedException {
+        Semaphore permits = (lane == Lane.PROBE) ? probePermits : heavyPermits;
+        permits.acquire();
+        try {
+            Process process = new ProcessBuilder(new ArrayList<>(command)).start();
+            return new ManagedProcess(command.get(0), process, permits, watchdog, timeout);
+        } catch (IOException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Runs a process until it finishes, passing its standard output to the
+     * given listener.
+     *
+     * @param command the command and its arguments
+     * @param lane the lane of the process
+     * @param timeout the time (in milliseconds) the process is allowed to
+     *                run before being killed, or <code>NO_TIMEOUT</code>
+     * @param listener the listener of the standard output lines, or
+     *                 <code>null</code> to discard them
+     * @return the finished process, holding its exit value
+     * @throws IOException if the process can't be started or read
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              process
+     */
+    public ManagedProcess execute(List<String> command, Lane lane, long timeout, OutputListener listener) throws IOException, InterruptedException {
+        try (ManagedProcess process = start(command, lane, timeout)) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (listener != null) {
+                    listener.lineRead(line);
+                }
+            }
+            process.waitFor();
+            return process;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package lan.vandiemens.media;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class MediaFileLoaderTest {
+
+    private final File movieFile = new File("src/lan/vandiemens/media/sample/mediainfo/Carrie.1976.BDRip.1080p.DTS.x264-Taito.xml");
+
+    @Before
+    public void setUp() {
+        System.out.println(""); // Console output separator before each test case
+    }
+
+    @Test
+    public void testLoadingSkipsInvalidFilesOnly() {
+        System.out.println("Testing concurrent loading of valid and invalid media files...");
+        List<MediaFile> mediaFiles;
+        try (MediaFileLoader loader = new MediaFileLoader(2)) {
+            loader.submit(new File("Missing.Movie.2013.720p.BluRay.x264-SPARKS.mkv"));
+            loader.submit(movieFile);
+            loader.submit(new File("src/lan/vandiemens/media/sample"));
+            loader.submit(movieFile);
+            mediaFiles = loader.getMediaFiles();
+            assertTrue("Loaded files were not cleared", loader.getMediaFiles().isEmpty());
+        }
+        assertEquals("Loaded file count is wrong", 1, mediaFiles.size());
+        assertEquals(movieFile, mediaFiles.get(0).getMainFile());
+    }
+
+    @Test
+    public void testListenerReceivesLoadedFilesOnly() {
+        System.out.println("Testing pipelined loading of media files...");
+        final List<MediaFile> loadedFiles = new ArrayList<>();
+        try (MediaFileLoader loader = new MediaFileLoader(2)) {
+            loader.submit(new File("Missing.Movie.2013.720p.BluRay.x264-SPARKS.mkv"));
+            loader.submit(movieFile);
+            List<MediaFile> mediaFiles = loader.getMediaFiles(new MediaFileLoader.Listener() {
+                @Override
+                public void mediaFileLoaded(MediaFile mediaFile) {
+                    loadedFiles.add(mediaFile);
+                }
+            });
+            assertEquals(mediaFiles, loadedFiles);
+        }
+        assertEquals("Loaded file count is wrong", 1, loadedFiles.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWorkerCount() {
+        new MediaFileLoader(0);
+    }
+}
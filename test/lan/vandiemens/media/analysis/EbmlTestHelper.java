@@ -0,0 +1,60 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds EBML elements for the synthetic Matroska files used by the tests.
+ *
+ * @author vmurcia
+ */
+public class EbmlTestHelper {
+
+    private static final int DEFAULT_SIZE_LENGTH = 8;
+
+    private EbmlTestHelper() {
+        // Do not instantiate
+    }
+
+    /**
+     * Builds a master or binary element with an 8-byte size.
+     */
+    public static byte[] element(int id, byte[]... children) throws IOException {
+        return element(id, DEFAULT_SIZE_LENGTH, children);
+    }
+
+    /**
+     * Builds a master or binary element whose size is coded in the given
+     * number of bytes.
+     */
+    public static byte[] element(int id, int sizeLength, byte[]... children) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (byte[] child : children) {
+            data.write(child);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int idLength = (id > 0xFFFFFF) ? 4 : (id > 0xFFFF) ? 3 : (id > 0xFF) ? 2 : 1;
+        output.write(toBytes(id, idLength));
+        output.write(toBytes((1L << (7 * sizeLength)) | data.size(), sizeLength)); // Length marker bit and size
+        output.write(data.toByteArray());
+        return output.toByteArray();
+    }
+
+    public static byte[] uint(int id, long value) throws IOException {
+        return element(id, toBytes(value, 8));
+    }
+
+    public static byte[] string(int id, String value) throws IOException {
+        return element(id, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] toBytes(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+}
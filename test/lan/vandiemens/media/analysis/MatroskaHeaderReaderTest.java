@@ -0,0 +1,119 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static lan.vandiemens.media.analysis.EbmlTestHelper.*;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class MatroskaHeaderReaderTest {
+
+    private File mkvFile;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        mkvFile = File.createTempFile("sample", ".mkv");
+    }
+
+    @After
+    public void tearDown() {
+        mkvFile.delete();
+    }
+
+    @Test
+    public void testReadingTracksReferencedFromSeekHead() throws IOException, MediaInfoException {
+        System.out.println("Testing native Matroska header reading...");
+        byte[] info = element(INFO,
+                              element(SEGMENT_UID, new byte[]{(byte) 0xBB, 0x3A, (byte) 0xB3, (byte) 0xE5}),
+                              uint(TIMECODE_SCALE, 1000000),
+                              element(DURATION, toBytes(Double.doubleToLongBits(5880000.0), 8)),
+                              string(TITLE, "Carrie"),
+                              string(MUXING_APP, "libebml v1.0.0 + libmatroska v1.0.0"),
+                              string(WRITING_APP, "mkvmerge v4.4.0"));
+        byte[] cluster = element(CLUSTER, new byte[64]);
+        byte[] tracks = element(TRACKS,
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 1), uint(TRACK_TYPE, VIDEO_TRACK_TYPE), string(CODEC_ID, "V_MPEG4/ISO/AVC"),
+                                        string(LANGUAGE, "und"), element(VIDEO, uint(PIXEL_WIDTH, 1920), uint(PIXEL_HEIGHT, 1040))),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 2), uint(TRACK_TYPE, AUDIO_TRACK_TYPE), string(CODEC_ID, "A_DTS"),
+                                        string(LANGUAGE, "spa"), element(AUDIO, uint(CHANNELS, 6))),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 3), uint(TRACK_TYPE, SUBTITLE_TRACK_TYPE), string(CODEC_ID, "S_HDMV/PGS"),
+                                        uint(FLAG_DEFAULT, 0), uint(FLAG_FORCED, 1), string(NAME, "Forced"),
+                                        element(CONTENT_ENCODINGS, element(CONTENT_ENCODING, element(CONTENT_COMPRESSION)))),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 4), uint(TRACK_TYPE, AUDIO_TRACK_TYPE), string(CODEC_ID, "A_AC3"),
+                                        uint(FLAG_DEFAULT, 0)));
+        byte[] chapters = element(CHAPTERS, new byte[8]);
+        int seekHeadLength = seekHead(0, 0).length;
+        int tracksPosition = seekHeadLength + info.length + cluster.length;
+        int chaptersPosition = tracksPosition + tracks.length;
+        byte[] segment = element(SEGMENT, seekHead(tracksPosition, chaptersPosition), info, cluster, tracks, chapters);
+        byte[] header = element(EBML, string(DOC_TYPE, "matroska"), uint(DOC_TYPE_VERSION, 2));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(header);
+        output.write(segment);
+        Files.write(mkvFile.toPath(), output.toByteArray());
+
+        List<TrackFields> fields = new MatroskaHeaderReader(mkvFile).read();
+        assertEquals(6, fields.size());
+        TrackFields general = fields.get(0);
+        assertTrue(general.hasType("General"));
+        assertEquals("3141186533 (0xBB3AB3E5)", general.get("Unique_ID"));
+        assertEquals("Matroska", general.get("Format"));
+        assertEquals("Version 2", general.get("Format_version"));
+        assertEquals("1h 38mn", general.get("Duration"));
+        assertEquals("Carrie", general.get("Movie_name"));
+        assertEquals("mkvmerge v4.4.0", general.get("Writing_application"));
+
+        TrackFields video = fields.get(1);
+        assertTrue(video.hasType("Video"));
+        assertEquals("AVC", video.get("Format"));
+        assertEquals("1 920 pixels", video.get("Width"));
+        assertEquals("1 040 pixels", video.get("Height"));
+        assertTrue(video.isYes("Default"));
+        assertEquals(0, video.getStreamId());
+
+        assertTrue(fields.get(2).hasType("Audio"));
+        assertEquals("2", fields.get(2).get("ID"));
+        assertEquals(1, fields.get(2).getStreamId());
+        assertEquals("6 channels", fields.get(2).get("Channel_s_"));
+        assertEquals("spa", fields.get(2).get("Language"));
+        assertEquals("4", fields.get(3).get("ID"));
+        assertEquals(2, fields.get(3).getStreamId());
+        assertEquals("eng", fields.get(3).get("Language"));
+        assertFalse(fields.get(3).isYes("Default"));
+
+        TrackFields subtitle = fields.get(4);
+        assertTrue(subtitle.hasType("Text"));
+        assertEquals("PGS", subtitle.get("Format"));
+        assertEquals("zlib", subtitle.get("Muxing_mode"));
+        assertEquals("Forced", subtitle.get("Title"));
+        assertTrue(subtitle.isYes("Forced"));
+        assertFalse(subtitle.isYes("Default"));
+
+        assertTrue(fields.get(5).hasType("Menu"));
+    }
+
+    @Test(expected = MediaInfoException.class)
+    public void testNonMatroskaFileIsRejected() throws IOException, MediaInfoException {
+        System.out.println("Testing native Matroska header reading with a non Matroska file...");
+        Files.write(mkvFile.toPath(), "RIFF....AVI LIST".getBytes(StandardCharsets.US_ASCII));
+        new MatroskaHeaderReader(mkvFile).read();
+    }
+
+    private static byte[] seekHead(int tracksPosition, int chaptersPosition) throws IOException {
+        return element(SEEK_HEAD,
+                       element(SEEK, element(SEEK_ID, toBytes(TRACKS, 4)), element(SEEK_POSITION, toBytes(tracksPosition, 8))),
+                       element(SEEK, element(SEEK_ID, toBytes(CHAPTERS, 4)), element(SEEK_POSITION, toBytes(chaptersPosition, 8))));
+    }
+}
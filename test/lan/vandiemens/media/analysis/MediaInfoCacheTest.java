@@ -0,0 +1,99 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class MediaInfoCacheTest {
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Mediainfo version=\"0.7.64\"/>\n";
+    private File cacheDir;
+    private File mediaFile;
+    private File mediaInfoExe;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        cacheDir = Files.createTempDirectory("mediainfo-cache").toFile();
+        mediaFile = File.createTempFile("movie", ".mkv");
+        Files.write(mediaFile.toPath(), new byte[]{1, 2, 3});
+        mediaInfoExe = File.createTempFile("mediainfo", ".exe");
+    }
+
+    @After
+    public void tearDown() {
+        new MediaInfoCache(cacheDir, mediaInfoExe, 1).clear();
+        cacheDir.delete();
+        mediaFile.delete();
+        mediaInfoExe.delete();
+    }
+
+    @Test
+    public void testCachedOutputSurvivesNewCacheInstance() {
+        System.out.println("Testing MediaInfo cache persistence...");
+        MediaInfoCache cache = new MediaInfoCache(cacheDir, mediaInfoExe, 1);
+        assertNull(cache.get(mediaFile));
+        cache.put(mediaFile, XML);
+        assertEquals(XML, cache.get(mediaFile));
+
+        MediaInfoCache newCache = new MediaInfoCache(cacheDir, mediaInfoExe, 1);
+        assertEquals(XML, newCache.get(mediaFile));
+    }
+
+    @Test
+    public void testModifiedMediaFileIsNotCached() throws IOException {
+        System.out.println("Testing MediaInfo cache with a modified media file...");
+        MediaInfoCache cache = new MediaInfoCache(cacheDir, mediaInfoExe, 1);
+        cache.put(mediaFile, XML);
+        Files.write(mediaFile.toPath(), new byte[]{1, 2, 3, 4});
+        assertNull(cache.get(mediaFile));
+    }
+
+    @Test
+    public void testUpgradedMediaInfoInvalidatesCache() throws IOException {
+        System.out.println("Testing MediaInfo cache after a MediaInfo upgrade...");
+        new MediaInfoCache(cacheDir, mediaInfoExe, 1).put(mediaFile, XML);
+        Files.write(mediaInfoExe.toPath(), new byte[]{42});
+        assertNull(new MediaInfoCache(cacheDir, mediaInfoExe, 1).get(mediaFile));
+    }
+
+    @Test
+    public void testPruningKeepsRecentlyUsedEntriesOnly() throws IOException {
+        System.out.println("Testing MediaInfo cache pruning...");
+        MediaInfoCache cache = new MediaInfoCache(cacheDir, mediaInfoExe, 1, 2, 30);
+        File[] mediaFiles = new File[4];
+        long now = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < mediaFiles.length; i++) {
+                mediaFiles[i] = File.createTempFile("movie" + i, ".mkv");
+                cache.put(mediaFiles[i], XML);
+            }
+            File[] cacheFiles = cacheDir.listFiles();
+            assertEquals(4, cacheFiles.length);
+            for (int i = 0; i < cacheFiles.length; i++) {
+                cacheFiles[i].setLastModified(now - (i + 1) * 1000L);
+            }
+            cacheFiles[0].setLastModified(now - 31 * 24 * 60 * 60 * 1000L); // Not used for too long
+
+            cache.prune();
+            File[] keptFiles = cacheDir.listFiles();
+            assertEquals(2, keptFiles.length);
+            assertTrue(Arrays.asList(keptFiles).containsAll(Arrays.asList(cacheFiles[1], cacheFiles[2])));
+        } finally {
+            for (File file : mediaFiles) {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package lan.vandiemens.media.analysis;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class MediaInfoStreamParserTest {
+
+    private static final String SAMPLE_FILE = "src/lan/vandiemens/media/sample/mediainfo/Carrie.1976.BDRip.1080p.DTS.x264-Taito.xml";
+
+    @Before
+    public void setUp() {
+        System.out.println(""); // Console output separator before each test case
+    }
+
+    @Test
+    public void testParsingMediaInfoSample() throws IOException, MediaInfoException {
+        System.out.println("Testing MediaInfo XML stream parsing...");
+        MediaInfoStreamParser parser = new MediaInfoStreamParser();
+        try (InputStream input = new FileInputStream(SAMPLE_FILE)) {
+            parser.parse(input);
+        }
+        assertEquals("0.7.67", parser.getVersion());
+        assertTrue(parser.isFileElementFound());
+        List<TrackFields> tracks = parser.getTracks();
+        assertEquals(7, tracks.size());
+        assertTrue(tracks.get(0).hasType("General"));
+        assertEquals("mkvmerge v4.4.0 ('Die Wiederkehr') realizado en Oct 31 2010 21:52:48", tracks.get(0).get("Writing_application"));
+        assertEquals("1 920 pixels", tracks.get(1).get("Width"));
+        assertTrue(tracks.get(1).isYes("Default"));
+        assertEquals(2, tracks.get(3).getStreamId());
+        assertEquals("English", tracks.get(3).get("Language"));
+        assertFalse(tracks.get(3).isYes("Default"));
+        assertTrue(tracks.get(6).hasType("Text"));
+    }
+
+    @Test
+    public void testNestedAndUnknownElementsAreSkipped() throws MediaInfoException {
+        System.out.println("Testing MediaInfo XML stream parsing with unexpected elements...");
+        String xml = "<Mediainfo version=\"0.7.67\"><Extra><track type=\"Fake\"/></Extra>"
+                + "<File><track type=\"General\"><Format>Matroska</Format><Format>Other</Format></track>"
+                + "<track type=\"Text\"><ID>3</ID><Title>Forced <b>only</b></Title></track></File>"
+                + "<File><track type=\"General\"/></File></Mediainfo>";
+        MediaInfoStreamParser parser = new MediaInfoStreamParser();
+        parser.parse(new StringReader(xml));
+        List<TrackFields> tracks = parser.getTracks();
+        assertEquals(2, tracks.size());
+        assertEquals("Matroska", tracks.get(0).get("Format"));
+        assertEquals("Forced only", tracks.get(1).get("Title"));
+        assertNull(tracks.get(1).get("Codec_ID_Info"));
+    }
+
+    @Test(expected = MediaInfoException.class)
+    public void testMalformedDocument() throws MediaInfoException {
+        System.out.println("Testing malformed MediaInfo XML stream parsing...");
+        new MediaInfoStreamParser().parse(new StringReader("<Mediainfo><File><track type=\"General\"></File>"));
+    }
+}
@@ -0,0 +1,95 @@
+package lan.vandiemens.media.cataloguer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class CatalogueIndexTest {
+
+    private File libraryDir;
+    private File mediaFile;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        libraryDir = Files.createTempDirectory("catalogue").toFile();
+        File seasonDir = new File(libraryDir, "Season 1");
+        seasonDir.mkdir();
+        mediaFile = new File(seasonDir, "Movie (2012).mkv");
+        Files.write(mediaFile.toPath(), new byte[]{1, 2, 3});
+    }
+
+    @After
+    public void tearDown() {
+        new File(libraryDir, CatalogueIndex.INDEX_FILE_NAME).delete();
+        mediaFile.delete();
+        mediaFile.getParentFile().delete();
+        libraryDir.delete();
+    }
+
+    @Test
+    public void testCataloguedEntriesArePersisted() throws IOException {
+        System.out.println("Testing catalogue index persistence...");
+        byte[] digest = {(byte) 0xCA, (byte) 0xFE};
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            assertFalse(index.isCatalogued(mediaFile));
+            index.putCatalogued(mediaFile, digest, "123456789");
+            assertTrue(index.isCatalogued(mediaFile));
+        }
+
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            assertEquals(1, index.size());
+            assertTrue(index.isCatalogued(mediaFile));
+            assertEquals("Season 1/Movie (2012).mkv", index.get(mediaFile).getPath());
+            assertArrayEquals(digest, index.get(mediaFile).getDigest());
+            assertEquals("123456789", index.get(mediaFile).getUniqueId());
+
+            index.remove(mediaFile);
+            assertFalse(index.isCatalogued(mediaFile));
+        }
+
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            assertEquals(0, index.size());
+        }
+    }
+
+    @Test
+    public void testModifiedMediaFileIsNotCatalogued() throws IOException {
+        System.out.println("Testing catalogue index with a modified media file...");
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            index.putCatalogued(mediaFile, null, null);
+            Files.write(mediaFile.toPath(), new byte[]{1, 2, 3, 4});
+            assertFalse(index.isCatalogued(mediaFile));
+        }
+    }
+
+    @Test
+    public void testIncompleteRecordIsDiscarded() throws IOException {
+        System.out.println("Testing catalogue index with an incomplete last record...");
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            index.putCatalogued(mediaFile, null, null);
+        }
+        File indexFile = new File(libraryDir, CatalogueIndex.INDEX_FILE_NAME);
+        long length = indexFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(length - 3);
+        }
+
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            assertEquals(0, index.size());
+            index.putCatalogued(mediaFile, null, null);
+        }
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            assertTrue(index.isCatalogued(mediaFile));
+        }
+    }
+}
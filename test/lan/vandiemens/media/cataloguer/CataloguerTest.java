@@ -0,0 +1,135 @@
+package lan.vandiemens.media.cataloguer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests how media files are recognised when they are catalogued again.
+ *
+ * @author vmurcia
+ */
+public class CataloguerTest {
+
+    private static final String UNIQUE_ID = "209476581416342196513467436426853066411";
+    private File libraryDir;
+    private File mediaFile;
+    private File mediaInfoFile;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        libraryDir = Files.createTempDirectory("cataloguer").toFile();
+        mediaFile = new File(libraryDir, "Movie (2012).mkv");
+        Files.write(mediaFile.toPath(), new byte[]{1, 2, 3});
+        mediaInfoFile = new File(libraryDir, "Movie (2012)." + Cataloguer.MEDIAINFO_FILE_EXTENSION);
+        writeMediaInfoFile("www.web_site.com", "BluRay", "Rip_Team", "Up_Loader", "Original: The_Title");
+    }
+
+    @After
+    public void tearDown() {
+        new File(libraryDir, CatalogueIndex.INDEX_FILE_NAME).delete();
+        mediaInfoFile.delete();
+        mediaFile.delete();
+        libraryDir.delete();
+    }
+
+    @Test
+    public void testUnchangedMediaFileKeepsItsName() throws IOException {
+        System.out.println("Testing the name of an unchanged catalogued media file...");
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            index.putCatalogued(mediaFile, null, UNIQUE_ID);
+            assertEquals("Movie (2012).mkv", Cataloguer.getContainerName(mediaFile, index, UNIQUE_ID));
+        }
+    }
+
+    @Test
+    public void testModifiedMediaFileGetsItsOriginalName() throws IOException {
+        System.out.println("Testing the name of a catalogued media file which has been edited...");
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            index.putCatalogued(mediaFile, null, UNIQUE_ID);
+            Files.write(mediaFile.toPath(), new byte[]{1, 2, 3, 4});
+            String name = Cataloguer.getContainerName(mediaFile, index, UNIQUE_ID);
+            assertEquals("Movie (2012)_www.web--site.com_Up--Loader_Original; The--Title_BluRay_Rip--Team.mkv", name);
+
+            // Underscores inside the fields must not split them
+            String[] tokens = name.substring(0, name.lastIndexOf('.')).split("_");
+            assertEquals(6, tokens.length);
+            assertEquals("Up_Loader", tokens[2].replaceAll("--", "_"));
+            assertEquals("Rip_Team", tokens[5].replaceAll("--", "_"));
+        }
+    }
+
+    @Test
+    public void testReplacedMediaFileIsParsedAsNew() throws IOException {
+        System.out.println("Testing the name of a catalogued media file which has been replaced...");
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            index.putCatalogued(mediaFile, null, UNIQUE_ID);
+            Files.write(mediaFile.toPath(), new byte[]{1, 2, 3, 4});
+            assertEquals("Movie (2012).mkv", Cataloguer.getContainerName(mediaFile, index, "1234567890"));
+        }
+    }
+
+    @Test
+    public void testMediaFilesWithoutUniqueIdAreConsideredTheSame() throws IOException {
+        System.out.println("Testing media files without unique ID...");
+        try (CatalogueIndex index = CatalogueIndex.open(libraryDir)) {
+            index.putCatalogued(mediaFile, null, null);
+            assertTrue(Cataloguer.isSameMedia(index.get(mediaFile), UNIQUE_ID));
+            index.putCatalogued(mediaFile, null, UNIQUE_ID);
+            assertTrue(Cataloguer.isSameMedia(index.get(mediaFile), null));
+            assertTrue(Cataloguer.isSameMedia(index.get(mediaFile), UNIQUE_ID));
+            assertFalse(Cataloguer.isSameMedia(index.get(mediaFile), "1234567890"));
+        }
+    }
+
+    @Test
+    public void testParseUniqueId() {
+        System.out.println("Testing unique ID parsing...");
+        assertEquals(UNIQUE_ID, Cataloguer.parseUniqueId(
+                "Unique ID                                : " + UNIQUE_ID + " (0x9D982A7C5D3F4B2E8E0E6E3F9B1F2A2B)"));
+        assertEquals("12345", Cataloguer.parseUniqueId("Unique ID                                : 12345"));
+    }
+
+    @Test
+    public void testFilesWhichAreNotDirectoriesAreNotWatched() {
+        System.out.println("Testing watch mode with a root which is not a directory...");
+        new Cataloguer().watchFolders(Arrays.asList(mediaFile, new File(libraryDir, "Missing")));
+        assertFalse(new File(libraryDir, CatalogueIndex.INDEX_FILE_NAME).exists());
+    }
+
+    @Test
+    public void testMediaFileLineKeepsTheMd5FileFormat() {
+        System.out.println("Testing the media file line added to a MD5 hash file...");
+        String infoHash = "0123456789abcdef0123456789abcdef";
+        String mediaHash = "fedcba9876543210fedcba9876543210";
+        String content = "; Media Manager\r\n" + infoHash.toUpperCase() + " *Movie (2012).mnfo\r\n";
+        assertEquals("; Media Manager\r\n" + mediaHash.toUpperCase() + " *Movie (2012).mkv\r\n" + infoHash.toUpperCase() + " *Movie (2012).mnfo\r\n",
+                     Cataloguer.addMediaFileLine(content, infoHash, mediaInfoFile, mediaHash, mediaFile));
+
+        content = infoHash + "  Movie (2012).mnfo";
+        assertEquals(mediaHash + "  Movie (2012).mkv\n" + infoHash + "  Movie (2012).mnfo",
+                     Cataloguer.addMediaFileLine(content, infoHash, mediaInfoFile, mediaHash, mediaFile));
+
+        assertNull(Cataloguer.addMediaFileLine("; Media Manager\r\n", infoHash, mediaInfoFile, mediaHash, mediaFile));
+    }
+
+    private void writeMediaInfoFile(String sourceWeb, String sourceType, String ripper, String uploader, String originalTitle) throws IOException {
+        Files.write(mediaInfoFile.toPath(), Arrays.asList(
+                "Release",
+                "Source Web                               : " + sourceWeb,
+                "Source Type                              : " + sourceType,
+                "Ripper                                   : " + ripper,
+                "Uploader                                 : " + uploader,
+                "",
+                "General",
+                "Complete name                            : /Movies/Movie (2012).mkv",
+                "Original title                           : " + originalTitle), StandardCharsets.UTF_8);
+    }
+}
@@ -4,6 +4,8 @@
  */
 package lan.vandiemens.media.cataloguer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import lan.vandiemens.media.info.release.ReleaseInfoParser;
 import lan.vandiemens.media.info.release.MovieReleaseInfo;
 import lan.vandiemens.media.info.release.ReleaseInfo;
@@ -95,4 +97,44 @@ public class ReleaseInfoParserTest {
         assertNull(movieInfo.getUploader());
         assertNull(movieInfo.getWebSource());
     }
+
+    /**
+     * Test of parse method, of class ReleaseInfoParser, with a cached filename.
+     */
+    @Test
+    public void testParseCachedFilename() {
+        System.out.println("Parse cached filename");
+        String filename = "The.Hitchhiker's.Guide.to.the.Galaxy.2005.720p.BluRay.x264-REVEiLLE";
+        ReleaseInfo first = ReleaseInfoParser.parse(filename);
+        first.setTitle("Modified");
+        ReleaseInfo second = ReleaseInfoParser.parse(filename);
+
+        assertNotSame(first, second);
+        assertTrue(MovieReleaseInfo.class.isInstance(second));
+        assertEquals("The Hitchhiker's Guide to the Galaxy", second.getTitle());
+        assertEquals("REVEiLLE", second.getReleaseGroup());
+        assertEquals(2005, second.getYear());
+    }
+
+    /**
+     * Test of parse method, of class ReleaseInfoParser, with a filename whose
+     * release information is incomplete, which must be parsed every time.
+     */
+    @Test
+    public void testIncompleteReleaseInfoIsNotCached() {
+        System.out.println("Parse incomplete release information twice");
+        String filename = "Alien.720p.BluRay.x264-GRP";
+        PrintStream console = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true));
+        try {
+            ReleaseInfoParser.parse(filename);
+            ReleaseInfoParser.parse(filename);
+        } finally {
+            System.setOut(console);
+        }
+
+        String log = output.toString();
+        assertEquals(2, log.split("Parsing release information", -1).length - 1);
+    }
 }
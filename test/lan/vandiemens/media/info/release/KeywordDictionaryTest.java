@@ -0,0 +1,65 @@
+package lan.vandiemens.media.info.release;
+
+import java.io.IOException;
+import java.io.StringReader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class KeywordDictionaryTest {
+
+    private KeywordDictionary dictionary;
+
+    @Before
+    public void setUp() throws Exception {
+        System.out.println("");
+        dictionary = new KeywordDictionary();
+        dictionary.load(new StringReader(
+                "# Test keywords\n"
+                + "[SCENE_GROUP]\n"
+                + "he\n"
+                + "she\n"
+                + "hers\n"
+                + "PublicHD\n"
+                + "\n"
+                + "[WEB_SOURCE]\n"
+                + "publichd\n"
+                + "www.trackerhd.com\n"));
+    }
+
+    /**
+     * Test of lookup method, of class KeywordDictionary.
+     */
+    @Test
+    public void testLookup() {
+        System.out.println("Lookup");
+        assertEquals(5, dictionary.size());
+        assertEquals(ReleaseTokenizer.category(TagType.SCENE_GROUP), dictionary.lookup("SHE"));
+        assertEquals(ReleaseTokenizer.category(TagType.SCENE_GROUP) | ReleaseTokenizer.category(TagType.WEB_SOURCE), dictionary.lookup("publicHD"));
+        assertEquals(0, dictionary.lookup("sh"));
+        assertEquals(0, dictionary.lookup("shea"));
+    }
+
+    /**
+     * Test of getDefault method, of class KeywordDictionary.
+     */
+    @Test
+    public void testGetDefault() {
+        System.out.println("Get default");
+        KeywordDictionary defaultDictionary = KeywordDictionary.getDefault();
+        assertTrue(defaultDictionary.lookup("amiable") == ReleaseTokenizer.category(TagType.SCENE_GROUP));
+        assertTrue(defaultDictionary.lookup("BLOW") == ReleaseTokenizer.category(TagType.SCENE_GROUP));
+        assertTrue(defaultDictionary.lookup("eztv") == ReleaseTokenizer.category(TagType.WEB_SOURCE));
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadUnknownSection() throws IOException {
+        System.out.println("Load unknown section");
+        dictionary.load(new StringReader("[NOT_A_TAG_TYPE]\nfoo\n"));
+    }
+}
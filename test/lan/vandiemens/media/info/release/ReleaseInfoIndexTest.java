@@ -0,0 +1,42 @@
+package lan.vandiemens.media.info.release;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class ReleaseInfoIndexTest {
+
+    private ReleaseInfoIndex<String> index;
+
+    @Before
+    public void setUp() {
+        System.out.println(""); // Console output separator before each test case
+        index = new ReleaseInfoIndex<>();
+        index.put(new MovieReleaseInfo("Halloween '13 In Valencia", 2013), "movie.mkv");
+        index.put(new TvEpisodeReleaseInfo("Breaking Bad", 2, 11), "episode.mkv");
+        index.put(new TvEpisodeReleaseInfo("Breaking Bad", 2, 12), "next episode.mkv");
+    }
+
+    @Test
+    public void testFindIgnoresCaseAndSceneGroup() {
+        System.out.println("Testing release info lookup ignoring case and scene group...");
+        ReleaseInfo sameMovie = new MovieReleaseInfo("halloween '13 in valencia", 2013);
+        sameMovie.setSceneGroup("CtrlHD");
+        assertEquals(Arrays.asList("movie.mkv"), index.find(sameMovie));
+        assertEquals(Arrays.asList("episode.mkv"), index.find(new TvEpisodeReleaseInfo("BREAKING BAD", 2, 11)));
+        assertEquals(Collections.emptyList(), index.find(new MovieReleaseInfo("Halloween '13 In Valencia", 2014)));
+        assertEquals(Collections.emptyList(), index.find(new TvEpisodeReleaseInfo("Breaking Bad", 3, 11)));
+    }
+
+    @Test
+    public void testReleaseWithoutYearFindsTvEpisodes() {
+        System.out.println("Testing release info lookup of a release without year...");
+        assertEquals(Arrays.asList("episode.mkv", "next episode.mkv"), index.find(new ReleaseInfo("Breaking Bad")));
+    }
+}
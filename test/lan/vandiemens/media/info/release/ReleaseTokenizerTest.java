@@ -1,6 +1,14 @@
 package lan.vandiemens.media.info.release;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -73,8 +81,9 @@ public class ReleaseTokenizerTest {
     @Test
     public void testTokenize() {
         System.out.println("Tokenize");
-        ReleaseTokenizer.tokenize(habemusPapam);
-        assertArrayEquals(habemusTokens, ReleaseTokenizer.getReleaseTokens());
+        ReleaseTokenizer tokenizer = new ReleaseTokenizer();
+        tokenizer.tokenize(habemusPapam);
+        assertArrayEquals(habemusTokens, tokenizer.getReleaseTokens());
     }
 
     /**
@@ -83,8 +92,88 @@ public class ReleaseTokenizerTest {
     @Test
     public void testConfirmSureTags() {
         System.out.println("Confirm sure tags");
-        ReleaseTokenizer.tokenize(habemusPapam);
-        ReleaseTokenizer.confirmSureTokens();
-        assertArrayEquals(habemusConfirmedTokens, ReleaseTokenizer.getReleaseTokens());
+        ReleaseTokenizer tokenizer = new ReleaseTokenizer();
+        tokenizer.tokenize(habemusPapam);
+        tokenizer.confirmSureTokens();
+        assertArrayEquals(habemusConfirmedTokens, tokenizer.getReleaseTokens());
+    }
+
+    /**
+     * Test of tokenizers being used concurrently, one per thread.
+     */
+    @Test
+    public void testConcurrentTokenizers() throws Exception {
+        System.out.println("Concurrent tokenizers");
+        final String[] names = {habemusPapam, headhunters, theInsider, dosMulasyUnaMujer};
+        final ReleaseToken[][] expected = new ReleaseToken[names.length][];
+        ReleaseTokenizer serialTokenizer = new ReleaseTokenizer();
+        for (int i = 0; i < names.length; i++) {
+            serialTokenizer.tokenize(names[i]);
+            serialTokenizer.confirmSureTokens();
+            expected[i] = serialTokenizer.getReleaseTokens();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        ReleaseTokenizer tokenizer = new ReleaseTokenizer();
+                        for (int round = 0; round < 50; round++) {
+                            for (int i = 0; i < names.length; i++) {
+                                tokenizer.tokenize(names[i]);
+                                tokenizer.confirmSureTokens();
+                                assertArrayEquals(expected[i], tokenizer.getReleaseTokens());
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test of known uploaders, which are only identified after the title.
+     */
+    @Test
+    public void testConfirmKnownUploaderTags() {
+        System.out.println("Confirm known uploader tags");
+        ReleaseTokenizer tokenizer = new ReleaseTokenizer();
+        tokenizer.process("Straw.Dogs.1971.720p.BluRay.x264.AC3.Tallahassee");
+        ReleaseToken[] tokens = tokenizer.getReleaseTokens();
+        assertEquals(new Tag("Straw", 0), tokens[0]);
+        assertEquals(new Tag(TagType.UPLOADER, "Tallahassee", 37), tokens[tokens.length - 1]);
+
+        tokenizer.process("Straw.Dogs.1971.720p.BluRay.x264.by.Nestai");
+        tokens = tokenizer.getReleaseTokens();
+        assertEquals(new Tag(TagType.UPLOADER, "by.Nestai", 33), tokens[tokens.length - 1]);
+    }
+
+    /**
+     * Test of processAll method, of class ReleaseTokenizer.
+     */
+    @Test
+    public void testProcessAll() {
+        System.out.println("Process all");
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            names.addAll(Arrays.asList(habemusPapam, headhunters, theInsider, dosMulasyUnaMujer));
+        }
+        List<ReleaseToken[]> results = ReleaseTokenizer.processAll(names);
+        assertEquals(names.size(), results.size());
+        ReleaseTokenizer serialTokenizer = new ReleaseTokenizer();
+        for (int i = 0; i < names.size(); i++) {
+            serialTokenizer.process(names.get(i));
+            assertArrayEquals(names.get(i), serialTokenizer.getReleaseTokens(), results.get(i));
+        }
+        assertArrayEquals(habemusConfirmedTokens, results.get(0));
     }
 }
@@ -0,0 +1,143 @@
+package lan.vandiemens.media.info.release;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class SceneNameMatcherTest {
+
+    private static final long TIME_BUDGET_PER_NAME = 250; // In milliseconds
+    private static final String[] movieGroupNames = {"title", "year", "extratag", "source", "quality", "source2", "codecs", "scenegroup", "scenegroup2"};
+    private static final String[] tvSeriesGroupNames = {"title", "season", "episode", "episodetitle", "quality", "source", "codecs", "scenegroup"};
+    private String[] movieNames;
+    private String[] tvSeriesNames;
+    private String[] adversarialNames;
+
+    @Before
+    public void setUp() throws Exception {
+        System.out.println("");
+        movieNames = new String[] {
+            "The.Hitchhiker's.Guide.to.the.Galaxy.2005.720p.BluRay.x264-REVEiLLE",
+            "Despicable.Me.2.2013.1080p.BluRay.DTS-HD.MA.5.1.x264-PublicHD",
+            "Mad.Max.1979.1080p.BluRay.DTS.x264-Everlast",
+            "Blade.Runner.1982.The.Final.Cut.Remastered.USA.BluRay.1080p.VC-1.TrueHD.Dual.x264.D-Z0N3",
+            "Amelie.2001.Extended.Cut.Limited.Hybrid.1080p.DTS-HD.MA.multisubs",
+            "Heat.1995.720p.dd.5.1.h.264-GRP.with.dots",
+            "K\u0130ng.2010.720p.BluRay.x264-GRP",
+            "Not.a.scene.name"};
+        tvSeriesNames = new String[] {
+            "The.Walking.Dead.S02E11.Judge.Jury.Executioner.720p.WEB-DL.AAC2.0.H.264-CtrlHD",
+            "Breaking.Bad.S05E14.720p.HDTV.x264-IMMERSE",
+            "The.Wire.S03E08.Moral.Midgetry.1080p.BluRay.DTS-HD.MA.5.1.x264-group",
+            "Mad.Men.s01e01.pilot",
+            "Show.S01E01.S01E02.HDTV.x264-LOL"};
+        StringBuilder dots = new StringBuilder();
+        StringBuilder qualities = new StringBuilder();
+        StringBuilder codecs = new StringBuilder();
+        StringBuilder episodes = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            dots.append("a.");
+            qualities.append("720p.");
+            codecs.append("x264.dts.");
+            episodes.append("S01E01.720p.");
+        }
+        adversarialNames = new String[] {
+            dots + "1080p.x264",
+            "Title." + qualities + "x264",
+            "Title.2010.720p." + codecs + "aac",
+            "Title." + dots + "proper.proper.proper.720p." + codecs + "-",
+            "Show." + episodes + "x264-",
+            "Show." + episodes + "HDTV.x264-LOL",
+            "x" + dots.toString().replace('.', '-'),
+            dots.toString().replace("a", "")};
+    }
+
+    /**
+     * Test of matchMovie method, of class SceneNameMatcher.
+     */
+    @Test
+    public void testMatchMovie() {
+        System.out.println("Match movie");
+        for (String name : movieNames) {
+            assertSameGroups(name, ReleaseInfoParser.sceneMoviePattern, SceneNameMatcher.matchMovie(name), movieGroupNames);
+        }
+        Map<String, String> groups = SceneNameMatcher.matchMovie(movieNames[1]);
+        assertNotNull(groups);
+        assertEquals("Despicable.Me.2", groups.get("title"));
+        assertEquals("DTS-HD.MA.5.1.x264", groups.get("codecs"));
+        assertEquals("PublicHD", groups.get("scenegroup"));
+    }
+
+    /**
+     * Test of matchMovie method, of class SceneNameMatcher, with a name
+     * holding a character whose lower case form is two characters long.
+     */
+    @Test
+    public void testMatchMovieWithLongerLowerCaseName() {
+        System.out.println("Match movie with longer lower case name");
+        Map<String, String> groups = SceneNameMatcher.matchMovie("K\u0130ng.2010.720P.BLURAY.X264-GRP");
+        assertNotNull(groups);
+        assertEquals("K\u0130ng", groups.get("title"));
+        assertEquals("2010", groups.get("year"));
+        assertEquals("720P", groups.get("quality"));
+        assertEquals("BLURAY", groups.get("source2"));
+        assertEquals("X264", groups.get("codecs"));
+        assertEquals("GRP", groups.get("scenegroup"));
+    }
+
+    /**
+     * Test of matchTvSeries method, of class SceneNameMatcher.
+     */
+    @Test
+    public void testMatchTvSeries() {
+        System.out.println("Match TV series");
+        for (String name : tvSeriesNames) {
+            assertSameGroups(name, ReleaseInfoParser.sceneTvSeriesPattern, SceneNameMatcher.matchTvSeries(name), tvSeriesGroupNames);
+        }
+        Map<String, String> groups = SceneNameMatcher.matchTvSeries(tvSeriesNames[0]);
+        assertNotNull(groups);
+        assertEquals("The.Walking.Dead", groups.get("title"));
+        assertEquals("Judge.Jury.Executioner", groups.get("episodetitle"));
+        assertEquals("CtrlHD", groups.get("scenegroup"));
+    }
+
+    /**
+     * Test of both match methods with names which would make a backtracking
+     * matcher take ages.
+     */
+    @Test(timeout = 10000)
+    public void testAdversarialNames() {
+        System.out.println("Adversarial names");
+        for (String name : adversarialNames) {
+            long start = System.nanoTime();
+            SceneNameMatcher.matchMovie(name);
+            SceneNameMatcher.matchTvSeries(name);
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            assertTrue("Took " + elapsed + " ms for a " + name.length() + "-character name", elapsed < TIME_BUDGET_PER_NAME);
+        }
+        assertNull(SceneNameMatcher.matchMovie(adversarialNames[0]));
+        assertNotNull(SceneNameMatcher.matchTvSeries(adversarialNames[5]));
+    }
+
+    private static void assertSameGroups(String name, Pattern pattern, Map<String, String> groups, String[] groupNames) {
+        Matcher matcher = pattern.matcher(name);
+        if (!matcher.matches()) {
+            assertNull(name, groups);
+            return;
+        }
+        assertNotNull(name, groups);
+        for (String groupName : groupNames) {
+            assertEquals(name + " (" + groupName + ")", matcher.group(groupName), groups.get(groupName));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import lan.vandiemens.media.analysis.EbmlReader;
+import lan.vandiemens.media.analysis.EbmlReader.ElementHeader;
+import lan.vandiemens.media.matroska.MkvPropEditCommand.TrackEdit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static lan.vandiemens.media.analysis.EbmlTestHelper.*;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class MatroskaHeaderEditorTest {
+
+    private File mkvFile;
+    private final byte[] cluster = new byte[]{0x1F, 0x43, (byte) 0xB6, 0x75, (byte) 0x88, 1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        mkvFile = File.createTempFile("sample", ".mkv");
+    }
+
+    @After
+    public void tearDown() {
+        mkvFile.delete();
+    }
+
+    @Test
+    public void testEditingHeadersInPlace() throws IOException {
+        System.out.println("Testing in place Matroska header edition...");
+        writeSample(true);
+        long length = mkvFile.length();
+
+        TrackEdit edit = new TrackEdit(2, false, true, "Spanish (Forced)", "spa");
+        assertTrue(new MatroskaHeaderEditor(mkvFile).edit("Carrie (1976)", Collections.singletonList(edit)));
+
+        byte[] bytes = Files.readAllBytes(mkvFile.toPath());
+        assertEquals("File length has changed", length, bytes.length);
+        assertArrayEquals("Cluster has been moved", cluster, Arrays.copyOfRange(bytes, bytes.length - cluster.length, bytes.length));
+        try (EbmlReader reader = EbmlReader.open(mkvFile)) {
+            reader.skip(reader.readElementHeader()); // EBML header
+            ElementHeader segment = reader.readElementHeader();
+            Map<Integer, ElementHeader> topLevelElements = new HashMap<>();
+            while (reader.getPosition() < segment.getEndPosition()) {
+                ElementHeader element = reader.readElementHeader();
+                topLevelElements.put(element.getId(), element);
+                reader.skip(element);
+            }
+            assertTrue(topLevelElements.containsKey(VOID));
+
+            ElementHeader info = topLevelElements.get(INFO);
+            reader.seek(info.getDataPosition());
+            ElementHeader crc = reader.readElementHeader();
+            assertEquals("CRC-32 must be the first element", CRC_32, crc.getId());
+            long storedCrc = Long.reverseBytes(reader.readUnsigned(4)) >>> 32;
+            byte[] checkedData = reader.readBytes(info.getEndPosition() - reader.getPosition());
+            CRC32 expectedCrc = new CRC32();
+            expectedCrc.update(checkedData);
+            assertEquals("CRC-32 is wrong", expectedCrc.getValue(), storedCrc);
+            assertEquals("Carrie (1976)", readChildren(reader, info).get(TITLE));
+
+            ElementHeader tracks = topLevelElements.get(TRACKS);
+            reader.seek(tracks.getDataPosition());
+            reader.skip(reader.readElementHeader()); // First track entry
+            Map<Integer, String> secondEntry = readChildren(reader, reader.readElementHeader());
+            assertEquals("2", secondEntry.get(TRACK_NUMBER));
+            assertEquals("0", secondEntry.get(FLAG_DEFAULT));
+            assertEquals("1", secondEntry.get(FLAG_FORCED));
+            assertEquals("Spanish (Forced)", secondEntry.get(NAME));
+            assertEquals("spa", secondEntry.get(LANGUAGE));
+            assertEquals("A_DTS", secondEntry.get(CODEC_ID));
+        }
+    }
+
+    @Test
+    public void testElementTooLargeLeavesFileUntouched() throws IOException {
+        System.out.println("Testing in place Matroska header edition without enough space...");
+        writeSample(false);
+        byte[] original = Files.readAllBytes(mkvFile.toPath());
+
+        TrackEdit edit = new TrackEdit(1, true, false, "A much longer name than the original one", "eng");
+        assertFalse(new MatroskaHeaderEditor(mkvFile).edit(null, Collections.singletonList(edit)));
+        assertArrayEquals(original, Files.readAllBytes(mkvFile.toPath()));
+    }
+
+    @Test
+    public void testSizeGrowingOneByteShortOfTheVoidIsWidened() throws IOException {
+        System.out.println("Testing in place Matroska header edition leaving a single spare byte...");
+        // The segment information has a 1-byte size and grows to 127 bytes of
+        // data, which need a 2-byte size, so exactly one byte of the Void
+        // element would be left over
+        byte[] info = element(INFO, 1, string(TITLE, "Carrie"));
+        byte[] padding = element(VOID, 1, new byte[111]);
+        byte[] tracks = element(TRACKS,
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 1), uint(TRACK_TYPE, VIDEO_TRACK_TYPE), string(CODEC_ID, "V_MPEG4/ISO/AVC")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(element(EBML, string(DOC_TYPE, "matroska"), uint(DOC_TYPE_VERSION, 2)));
+        output.write(element(SEGMENT, info, padding, tracks, cluster));
+        Files.write(mkvFile.toPath(), output.toByteArray());
+        long length = mkvFile.length();
+
+        char[] title = new char[124];
+        Arrays.fill(title, 'x');
+        assertTrue(new MatroskaHeaderEditor(mkvFile).edit(new String(title), Collections.<TrackEdit>emptyList()));
+
+        assertEquals("File length has changed", length, mkvFile.length());
+        try (EbmlReader reader = EbmlReader.open(mkvFile)) {
+            reader.skip(reader.readElementHeader()); // EBML header
+            ElementHeader segment = reader.readElementHeader();
+            assertEquals(INFO, reader.readElementHeader().getId());
+            reader.seek(segment.getDataPosition());
+            Map<Integer, ElementHeader> topLevelElements = new HashMap<>();
+            while (reader.getPosition() < segment.getEndPosition()) {
+                ElementHeader element = reader.readElementHeader();
+                topLevelElements.put(element.getId(), element);
+                reader.skip(element);
+            }
+            assertEquals(segment.getEndPosition(), reader.getPosition());
+            assertTrue(topLevelElements.containsKey(TRACKS));
+            assertTrue(topLevelElements.containsKey(CLUSTER));
+            assertEquals(new String(title), readChildren(reader, topLevelElements.get(INFO)).get(TITLE));
+        }
+    }
+
+    private void writeSample(boolean hasPadding) throws IOException {
+        byte[] info = element(INFO,
+                              element(CRC_32, new byte[4]),
+                              string(TITLE, "Carrie"),
+                              string(MUXING_APP, "libebml v1.0.0 + libmatroska v1.0.0"));
+        byte[] padding = hasPadding ? element(VOID, new byte[40]) : new byte[0];
+        byte[] tracks = element(TRACKS,
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 1), uint(TRACK_TYPE, VIDEO_TRACK_TYPE), string(CODEC_ID, "V_MPEG4/ISO/AVC"),
+                                        string(NAME, "Video")),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 2), uint(TRACK_TYPE, AUDIO_TRACK_TYPE), string(CODEC_ID, "A_DTS"),
+                                        uint(FLAG_DEFAULT, 1), string(LANGUAGE, "und")));
+        byte[] segment = element(SEGMENT, info, padding, tracks, cluster);
+        byte[] header = element(EBML, string(DOC_TYPE, "matroska"), uint(DOC_TYPE_VERSION, 2));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(header);
+        output.write(segment);
+        Files.write(mkvFile.toPath(), output.toByteArray());
+    }
+
+    /**
+     * Reads the children of the given element, taking the string and
+     * unsigned integer elements as text.
+     */
+    private static Map<Integer, String> readChildren(EbmlReader reader, ElementHeader parent) throws IOException {
+        Map<Integer, String> children = new HashMap<>();
+        reader.seek(parent.getDataPosition());
+        while (reader.getPosition() < parent.getEndPosition()) {
+            ElementHeader child = reader.readElementHeader();
+            switch (child.getId()) {
+                case TRACK_NUMBER:
+                case FLAG_DEFAULT:
+                case FLAG_FORCED:
+                    children.put(child.getId(), String.valueOf(reader.readUnsigned(child.getDataSize())));
+                    break;
+                default:
+                    children.put(child.getId(), reader.readString(child.getDataSize()));
+                    break;
+            }
+            reader.seek(child.getEndPosition());
+        }
+        return children;
+    }
+}
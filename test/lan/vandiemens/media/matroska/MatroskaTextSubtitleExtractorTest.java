@@ -0,0 +1,204 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static lan.vandiemens.media.analysis.EbmlTestHelper.*;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class MatroskaTextSubtitleExtractorTest {
+
+    private static final String ASS_HEADER = "[Script Info]\r\nScriptType: v4.00+\r\n\r\n[V4+ Styles]\r\n"
+            + "Format: Name, Fontname, Fontsize\r\nStyle: Default,Arial,20\r\n\r\n[Events]\r\n"
+            + "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text";
+    private File mkvFile;
+    private File srtFile;
+    private File assFile;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        mkvFile = File.createTempFile("sample", ".mkv");
+        srtFile = File.createTempFile("sample_track2_eng", ".srt");
+        assFile = File.createTempFile("sample_track3_spa", ".ass");
+        srtFile.delete();
+        assFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mkvFile.delete();
+        srtFile.delete();
+        assFile.delete();
+    }
+
+    @Test
+    public void testExtractingTextSubtitles() throws IOException {
+        System.out.println("Testing native text subtitle extraction...");
+        writeSample(true, true);
+        assertExtracted();
+    }
+
+    @Test
+    public void testTrackNotIndexedIsReadFromEveryCluster() throws IOException {
+        System.out.println("Testing native text subtitle extraction without cues...");
+        writeSample(false, false);
+        assertExtracted();
+    }
+
+    @Test
+    public void testPartiallyIndexedTrackIsReadFromEveryCluster() throws IOException {
+        System.out.println("Testing native text subtitle extraction with sparse cues...");
+        writeSample(true, false);
+        assertExtracted();
+    }
+
+    @Test
+    public void testOnlyCuedBlocksAreRead() throws IOException {
+        System.out.println("Testing native text subtitle extraction from a large file...");
+        writeLargeSample();
+
+        Map<Integer, File> outputFiles = new LinkedHashMap<>();
+        outputFiles.put(1, srtFile);
+        MatroskaTextSubtitleExtractor extractor = new MatroskaTextSubtitleExtractor(mkvFile);
+        assertTrue(extractor.extract(outputFiles));
+
+        String srt = new String(Files.readAllBytes(srtFile.toPath()), StandardCharsets.UTF_8);
+        assertEquals("\uFEFF1\r\n00:00:05,000 --> 00:00:06,000\r\nFirst\r\n\r\n"
+                     + "2\r\n00:00:30,000 --> 00:00:31,000\r\nLast\r\n\r\n", srt);
+        assertTrue("Read " + extractor.getBytesRead() + " of " + mkvFile.length() + " bytes",
+                   extractor.getBytesRead() < mkvFile.length() / 4);
+    }
+
+    private void assertExtracted() throws IOException {
+        Map<Integer, File> outputFiles = new LinkedHashMap<>();
+        outputFiles.put(1, srtFile);
+        outputFiles.put(2, assFile);
+        assertTrue(new MatroskaTextSubtitleExtractor(mkvFile).extract(outputFiles));
+
+        String srt = new String(Files.readAllBytes(srtFile.toPath()), StandardCharsets.UTF_8);
+        assertEquals("\uFEFF1\r\n00:00:01,000 --> 00:00:02,500\r\nHello\r\nworld\r\n\r\n"
+                     + "2\r\n01:00:05,250 --> 01:00:06,000\r\nBye\r\n\r\n", srt);
+        String ass = new String(Files.readAllBytes(assFile.toPath()), StandardCharsets.UTF_8);
+        assertEquals("\uFEFF" + ASS_HEADER + "\r\n"
+                     + "Dialogue: 0,1:00:05.00,1:00:07.00,Default,,0,0,0,,Primero\r\n"
+                     + "Dialogue: 0,1:00:06.50,1:00:08.00,Default,,0,0,0,,Segundo, y \u00FAltimo\r\n", ass);
+    }
+
+    /**
+     * Writes a file with a video track and two subtitle tracks, SRT and ASS,
+     * whose blocks are spread over two clusters.
+     *
+     * @param hasSubtitleCues whether the subtitle tracks are indexed at all
+     * @param isFullyIndexed whether the last SRT block is indexed too
+     */
+    private void writeSample(boolean hasSubtitleCues, boolean isFullyIndexed) throws IOException {
+        byte[] info = element(INFO, uint(TIMECODE_SCALE, 1000000));
+        byte[] tracks = element(TRACKS,
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 1), uint(TRACK_TYPE, VIDEO_TRACK_TYPE), string(CODEC_ID, "V_MPEG4/ISO/AVC")),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 2), uint(TRACK_TYPE, SUBTITLE_TRACK_TYPE), string(CODEC_ID, "S_TEXT/UTF8")),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 3), uint(TRACK_TYPE, SUBTITLE_TRACK_TYPE), string(CODEC_ID, "S_TEXT/ASS"),
+                                        string(CODEC_PRIVATE, ASS_HEADER)));
+        byte[] video = element(SIMPLE_BLOCK, block(1, 0, new byte[100]));
+        byte[] srtBlock = element(BLOCK_GROUP, element(BLOCK, block(2, 1000, "Hello\nworld".getBytes(StandardCharsets.UTF_8))),
+                                  uint(BLOCK_DURATION, 1500));
+        byte[] firstCluster = element(CLUSTER, uint(CLUSTER_TIMECODE, 0), video, srtBlock);
+        byte[] secondCluster = element(CLUSTER, uint(CLUSTER_TIMECODE, 3600000), video,
+                                       element(BLOCK_GROUP, element(BLOCK, block(3, 6500, "1,0,Default,,0,0,0,,Segundo, y \u00FAltimo".getBytes(StandardCharsets.UTF_8))),
+                                               uint(BLOCK_DURATION, 1500)),
+                                       element(BLOCK_GROUP, element(BLOCK, block(3, 5000, "0,0,Default,,0,0,0,,Primero".getBytes(StandardCharsets.UTF_8))),
+                                               uint(BLOCK_DURATION, 2000)),
+                                       element(BLOCK_GROUP, element(BLOCK, block(2, 5250, "Bye".getBytes(StandardCharsets.UTF_8))),
+                                               uint(BLOCK_DURATION, 750)));
+
+        byte[] seekHead = element(SEEK_HEAD, element(SEEK, uint(SEEK_ID, CUES), uint(SEEK_POSITION, 0)));
+        long firstClusterPosition = seekHead.length + info.length + tracks.length;
+        long secondClusterPosition = firstClusterPosition + firstCluster.length;
+        long cuesPosition = secondClusterPosition + secondCluster.length;
+        seekHead = element(SEEK_HEAD, element(SEEK, uint(SEEK_ID, CUES), uint(SEEK_POSITION, cuesPosition)));
+        long srtBlockPosition = uint(CLUSTER_TIMECODE, 0).length + video.length; // Relative to the cluster data
+        byte[] cues;
+        if (hasSubtitleCues) {
+            cues = element(CUES,
+                           cuePoint(0, 1, firstClusterPosition, -1),
+                           cuePoint(1000, 2, firstClusterPosition, srtBlockPosition),
+                           cuePoint(3600000, 1, secondClusterPosition, -1),
+                           cuePoint(3605000, 3, secondClusterPosition, -1),
+                           isFullyIndexed ? cuePoint(3605250, 2, secondClusterPosition, -1) : new byte[0]);
+        } else {
+            cues = element(CUES, cuePoint(0, 1, firstClusterPosition, -1), cuePoint(3600000, 1, secondClusterPosition, -1));
+        }
+        byte[] segment = element(SEGMENT, seekHead, info, tracks, firstCluster, secondCluster, cues);
+        byte[] header = element(EBML, string(DOC_TYPE, "matroska"), uint(DOC_TYPE_VERSION, 2));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(header);
+        output.write(segment);
+        Files.write(mkvFile.toPath(), output.toByteArray());
+    }
+
+    /**
+     * Writes a file with a video track and an SRT track, made of 40 clusters
+     * of 100 KiB each, where only two of them hold a subtitle block, which is
+     * indexed with its relative position.
+     */
+    private void writeLargeSample() throws IOException {
+        byte[] info = element(INFO, uint(TIMECODE_SCALE, 1000000));
+        byte[] tracks = element(TRACKS,
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 1), uint(TRACK_TYPE, VIDEO_TRACK_TYPE), string(CODEC_ID, "V_MPEG4/ISO/AVC")),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 2), uint(TRACK_TYPE, SUBTITLE_TRACK_TYPE), string(CODEC_ID, "S_TEXT/UTF8")));
+        byte[] video = element(SIMPLE_BLOCK, block(1, 0, new byte[100 * 1024]));
+        byte[] seekHead = element(SEEK_HEAD, element(SEEK, uint(SEEK_ID, CUES), uint(SEEK_POSITION, 0)));
+        ByteArrayOutputStream clusters = new ByteArrayOutputStream();
+        ByteArrayOutputStream cuePoints = new ByteArrayOutputStream();
+        long clusterPosition = seekHead.length + info.length + tracks.length;
+        for (int second = 0; second < 40; second++) {
+            byte[] timecode = uint(CLUSTER_TIMECODE, second * 1000);
+            byte[] cluster;
+            if (second == 5 || second == 30) {
+                String text = (second == 5) ? "First" : "Last";
+                byte[] subtitle = element(BLOCK_GROUP, element(BLOCK, block(2, 0, text.getBytes(StandardCharsets.UTF_8))),
+                                          uint(BLOCK_DURATION, 1000));
+                cluster = element(CLUSTER, timecode, video, subtitle);
+                cuePoints.write(cuePoint(second * 1000, 2, clusterPosition, timecode.length + video.length));
+            } else {
+                cluster = element(CLUSTER, timecode, video);
+            }
+            cuePoints.write(cuePoint(second * 1000, 1, clusterPosition, -1));
+            clusters.write(cluster);
+            clusterPosition += cluster.length;
+        }
+        seekHead = element(SEEK_HEAD, element(SEEK, uint(SEEK_ID, CUES), uint(SEEK_POSITION, clusterPosition)));
+        byte[] segment = element(SEGMENT, seekHead, info, tracks, clusters.toByteArray(), element(CUES, cuePoints.toByteArray()));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(element(EBML, string(DOC_TYPE, "matroska"), uint(DOC_TYPE_VERSION, 2)));
+        output.write(segment);
+        Files.write(mkvFile.toPath(), output.toByteArray());
+    }
+
+    private static byte[] cuePoint(long time, long track, long clusterPosition, long relativePosition) throws IOException {
+        byte[] relative = (relativePosition < 0) ? new byte[0] : uint(CUE_RELATIVE_POSITION, relativePosition);
+        return element(CUE_POINT, uint(CUE_TIME, time),
+                       element(CUE_TRACK_POSITIONS, uint(CUE_TRACK, track), uint(CUE_CLUSTER_POSITION, clusterPosition), relative));
+    }
+
+    private static byte[] block(int track, int timecode, byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(0x80 | track);
+        output.write(toBytes(timecode, 2));
+        output.write(0); // No lacing
+        output.write(data);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,115 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import lan.vandiemens.media.MediaFile;
+import lan.vandiemens.media.analysis.MediaInfoException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static lan.vandiemens.media.analysis.EbmlTestHelper.*;
+import static lan.vandiemens.media.analysis.MatroskaElements.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class MkvMergeCommandTest {
+
+    private File folder;
+    private File mkvFile;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        folder = Files.createTempDirectory("mkvmerge").toFile();
+        mkvFile = new File(folder, "Carrie.1976.720p.BluRay.DTS.x264-AMIABLE.mkv");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void testArgumentsAreNotQuoted() throws IOException, MediaInfoException {
+        System.out.println("Testing mkvmerge argument vector...");
+        writeSample();
+        MediaFile mediaFile = new MediaFile(mkvFile) {
+            @Override
+            public String getFormattedTitle() {
+                return "The \"Burbs\" (1989)";
+            }
+        };
+        MkvMergeCommand command = new MkvMergeCommand(mediaFile);
+
+        List<String> arguments = command.getArguments();
+        assertEquals(Arrays.asList(
+                "-o", command.getOutputFile().getAbsolutePath(),
+                "--language", "0:und", "--track-name", "0:The \"Burbs\" (1989)", "--default-track", "0:yes", "--forced-track", "0:no",
+                "--display-dimensions", "0:1280x544",
+                "--language", "1:und", "--track-name", "1:DTS English", "--default-track", "1:yes", "--forced-track", "1:no",
+                "-d", "0", "-a", "1", "-S", "-T", "--no-global-tags", "--no-chapters", "(", mkvFile.getAbsolutePath(), ")",
+                "--track-order", "0:0,0:1", "--title", "The \"Burbs\" (1989)"), arguments);
+        List<String> commandLine = command.toList();
+        assertEquals(arguments, commandLine.subList(1, commandLine.size()));
+        assertTrue(command.toString().endsWith(" \"--title\" \"The \\\"Burbs\\\" (1989)\""));
+    }
+
+    @Test
+    public void testLongArgumentsAreWrittenToOptionFile() throws IOException, MediaInfoException {
+        System.out.println("Testing mkvmerge option file...");
+        writeSample();
+        MkvMergeCommand command = new MkvMergeCommand(new MediaFile(mkvFile));
+        System.setProperty(MkvMergeCommand.OPTION_FILE_THRESHOLD_PROPERTY, "0");
+        try {
+            List<String> commandLine = command.toList();
+            assertEquals(2, commandLine.size());
+            assertTrue(commandLine.get(1).startsWith("@"));
+            File optionFile = new File(commandLine.get(1).substring(1));
+            assertEquals(MkvMergeCommand.toJsonArray(command.getArguments()),
+                         new String(Files.readAllBytes(optionFile.toPath()), StandardCharsets.UTF_8));
+            assertEquals("Option file must be written once", commandLine, command.toList());
+
+            command.deleteOptionFile();
+            assertFalse(optionFile.exists());
+        } finally {
+            System.clearProperty(MkvMergeCommand.OPTION_FILE_THRESHOLD_PROPERTY);
+        }
+    }
+
+    private void writeSample() throws IOException {
+        byte[] info = element(INFO, uint(TIMECODE_SCALE, 1000000), element(DURATION, toBytes(Double.doubleToLongBits(5880000.0), 8)),
+                              string(MUXING_APP, "libebml v1.0.0 + libmatroska v1.0.0"), string(WRITING_APP, "mkvmerge v4.4.0"));
+        byte[] tracks = element(TRACKS,
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 1), uint(TRACK_TYPE, VIDEO_TRACK_TYPE), string(CODEC_ID, "V_MPEG4/ISO/AVC"),
+                                        string(LANGUAGE, "und"), element(VIDEO, uint(PIXEL_WIDTH, 1280), uint(PIXEL_HEIGHT, 544))),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 2), uint(TRACK_TYPE, AUDIO_TRACK_TYPE), string(CODEC_ID, "A_DTS"),
+                                        string(LANGUAGE, "eng"), element(AUDIO, uint(CHANNELS, 6))),
+                                element(TRACK_ENTRY, uint(TRACK_NUMBER, 3), uint(TRACK_TYPE, SUBTITLE_TRACK_TYPE), string(CODEC_ID, "S_TEXT/UTF8"),
+                                        string(LANGUAGE, "eng"), string(NAME, "\"Carrie\" commentary")));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(element(EBML, string(DOC_TYPE, "matroska"), uint(DOC_TYPE_VERSION, 2)));
+        output.write(element(SEGMENT, info, tracks, element(CLUSTER, new byte[16])));
+        Files.write(mkvFile.toPath(), output.toByteArray());
+    }
+
+    @Test
+    public void testToJsonArray() {
+        System.out.println("Testing mkvmerge JSON option file content...");
+        String json = MkvMergeCommand.toJsonArray(Arrays.asList(
+                "-o", "C:\\Movies\\Carrie (1976).mkv", "--title", "\"Carrie\"\tDirector's Cut", "--track-name", "0:Espa\u00F1ol"));
+        assertEquals("[\"-o\",\"C:\\\\Movies\\\\Carrie (1976).mkv\",\"--title\",\"\\\"Carrie\\\"\\tDirector's Cut\","
+                     + "\"--track-name\",\"0:Espa\u00F1ol\"]", json);
+        assertEquals("[]", MkvMergeCommand.toJsonArray(Arrays.<String>asList()));
+    }
+}
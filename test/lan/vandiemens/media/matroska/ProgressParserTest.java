@@ -0,0 +1,102 @@
+package lan.vandiemens.media.matroska;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author vmurcia
+ */
+public class ProgressParserTest {
+
+    private File inputFile;
+    private final List<ProgressEvent> events = new ArrayList<>();
+    private final ProgressListener listener = new ProgressListener() {
+        @Override
+        public void progressChanged(ProgressEvent event) {
+            events.add(event);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println(""); // Console output separator before each test case
+        inputFile = File.createTempFile("sample", ".mkv");
+        try (RandomAccessFile file = new RandomAccessFile(inputFile, "rw")) {
+            file.setLength(1000);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        inputFile.delete();
+    }
+
+    @Test
+    public void testParsingMkvMergeOutput() {
+        System.out.println("Testing mkvmerge progress parsing...");
+        ProgressParser parser = new ProgressParser(newCommand(), listener);
+        assertFalse(parser.parse("mkvmerge v6.5.0 ('Isn't she lovely') built on Oct 20 2013 22:04:39"));
+        assertFalse(parser.parse("The file 'sample.mkv' has been opened for writing."));
+        assertTrue(parser.parse("Progress: 0%"));
+        assertTrue(parser.parse("Progress: 42%"));
+        assertTrue(parser.parse("Progress: 42%"));
+        assertTrue(parser.parse("#GUI#progress 100%"));
+        assertFalse(parser.parse("Muxing took 3 minutes 12 seconds."));
+
+        assertEquals("Repeated percentages must be reported once", 3, events.size());
+        assertEquals(-1, events.get(0).getRemainingTime());
+        ProgressEvent event = events.get(1);
+        assertEquals(42, event.getPercentage());
+        assertEquals(420, event.getProcessedBytes());
+        assertFalse(event.isComplete());
+        assertTrue(events.get(2).isComplete());
+        assertEquals(1000, events.get(2).getProcessedBytes());
+        assertEquals(0, events.get(2).getRemainingTime());
+    }
+
+    @Test
+    public void testElapsedTimeExcludesTheWaitToStart() throws InterruptedException {
+        System.out.println("Testing progress elapsed time of a queued command...");
+        ProgressParser parser = new ProgressParser(newCommand(), listener);
+        Thread.sleep(500); // Waiting for a free process lane
+        parser.parse("mkvmerge v6.5.0 ('Isn't she lovely') built on Oct 20 2013 22:04:39");
+        parser.parse("Progress: 50%");
+        assertTrue(events.get(0).getElapsedTime() < 500);
+    }
+
+    @Test
+    public void testThroughputEstimation() {
+        System.out.println("Testing progress throughput estimation...");
+        ProgressEvent event = new ProgressEvent(newCommand(), 25, 2000, 250);
+        assertEquals(125.0, event.getBytesPerSecond(), 0.001);
+        assertEquals(6000, event.getRemainingTime());
+    }
+
+    private Command newCommand() {
+        return new Command() {
+            @Override
+            public File getInputFile() {
+                return inputFile;
+            }
+
+            @Override
+            public File getOutputFile() {
+                return inputFile;
+            }
+
+            @Override
+            public List<String> toList() {
+                return Collections.emptyList();
+            }
+        };
+    }
+}